@@ -0,0 +1,62 @@
+package org.cloudbus.cloudsim.core;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.fog.benchmark.Benchmark;
+
+/**
+ * The classic hold model of event set benchmarks, on each engine of the future queue : the queue
+ * holds a steady number of events, and each operation polls the earliest one and schedules a new
+ * event a random delay after it, as an entity handling an event and sending another would.
+ *
+ * The benchmark lives in the package of the queue to create its events as the simulation does.
+ */
+public class FutureQueueHoldBenchmark extends Benchmark {
+
+	/** The number of random delays drawn up front, so that the random generator is not timed. */
+	private static final int DELAYS = 1 << 16;
+
+	private FutureQueue queue;
+	private final double[] delays = new double[DELAYS];
+	private int next;
+
+	public FutureQueueHoldBenchmark() {
+		super("FutureQueue.hold");
+		addParameter("engine", FutureQueue.ENGINES);
+		addParameter("size", "1000", "100000");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) {
+		Random random = new Random(42);
+		for (int i = 0; i < DELAYS; i++) {
+			// exponential delays, with some ties as integer delays of the simulations give
+			delays[i] = i % 4 == 0 ? Math.ceil(-Math.log(1 - random.nextDouble()) * 4)
+					: -Math.log(1 - random.nextDouble());
+		}
+		queue = FutureQueue.create(params.get("engine"));
+		int size = Integer.parseInt(params.get("size"));
+		for (int i = 0; i < size; i++) {
+			queue.addEvent(new SimEvent(SimEvent.SEND, delays[next++ & (DELAYS - 1)] * 10, i, i, 0, null));
+		}
+	}
+
+	@Override
+	public long run(int operations) {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++) {
+			SimEvent event = queue.poll();
+			queue.addEvent(new SimEvent(SimEvent.SEND, event.eventTime() + delays[next++ & (DELAYS - 1)],
+					event.getDestination(), event.getSource(), event.getTag(), null));
+			checksum += event.getSource();
+		}
+		return checksum;
+	}
+
+	@Override
+	public void tearDown() {
+		queue = null;
+	}
+
+}
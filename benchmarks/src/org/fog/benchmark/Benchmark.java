@@ -0,0 +1,98 @@
+package org.fog.benchmark;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A benchmark run by {@link BenchmarkRunner}, in the manner of a JMH benchmark method with its
+ * state : the runner sets the benchmark up for each combination of its parameters, times a number
+ * of iterations of {@link #run(int)}, and reports the average time per operation.
+ *
+ * Results of the operations are returned by run so that the JIT cannot drop the work.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+	private final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Declares a parameter of the benchmark. The benchmark is run for each combination of the
+	 * values of its parameters, in the order they are declared.
+	 *
+	 * @param name the name of the parameter
+	 * @param values the default values of the parameter
+	 */
+	protected void addParameter(String name, String... values) {
+		parameters.put(name, values);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, String[]> getParameters() {
+		return Collections.unmodifiableMap(parameters);
+	}
+
+	/**
+	 * Sets the benchmark up for a combination of parameters, before its iterations are run.
+	 *
+	 * @param params the value of each parameter
+	 * @throws Exception if the benchmark cannot be set up
+	 */
+	public void setUp(Map<String, String> params) throws Exception {
+	}
+
+	/**
+	 * Sets the benchmark up before each iteration, as a JMH setup method of the iteration level.
+	 * The time it takes is not measured.
+	 *
+	 * @throws Exception if the benchmark cannot be set up
+	 */
+	public void setUpIteration() throws Exception {
+	}
+
+	/**
+	 * Runs a number of operations.
+	 *
+	 * @param operations the number of operations
+	 * @return a value depending on the work done
+	 * @throws Exception if an operation fails
+	 */
+	public abstract long run(int operations) throws Exception;
+
+	/**
+	 * Releases what the benchmark was set up with, once its iterations are run.
+	 *
+	 * @throws Exception if the benchmark cannot be torn down
+	 */
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Gets the time of the last run, when the benchmark measures it itself, for instance when the
+	 * operation runs in another JVM whose start should not be counted.
+	 *
+	 * @return the time of the last run in nanoseconds, or -1 to have the runner measure it
+	 */
+	public long getMeasuredTime() {
+		return -1;
+	}
+
+	/**
+	 * Whether each iteration runs a single operation, as JMH's SingleShotTime mode, instead of as
+	 * many operations as fit in the iteration time. Long operations such as whole simulations are
+	 * single shot.
+	 *
+	 * @return true if each iteration is a single operation
+	 */
+	public boolean isSingleShot() {
+		return false;
+	}
+
+}
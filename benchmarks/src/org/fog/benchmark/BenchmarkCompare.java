@@ -0,0 +1,100 @@
+package org.fog.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Compares two result files of {@link BenchmarkRunner}, typically of two commits : prints the
+ * ratio of the scores of each benchmark found in both, and flags the ones that got slower by more
+ * than a threshold, with confidence intervals that do not overlap. Exits with status 1 if any
+ * benchmark regressed.
+ *
+ * Usage : BenchmarkCompare base.json new.json [threshold-percent]
+ */
+public class BenchmarkCompare {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: BenchmarkCompare base.json new.json [threshold-percent]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.05;
+		Map<String, JSONObject> base = read(args[0]);
+		Map<String, JSONObject> current = read(args[1]);
+
+		int regressions = 0;
+		System.out.printf("%-70s %14s %14s %8s%n", "Benchmark", "Base", "New", "Ratio");
+		for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+			JSONObject before = base.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("%-70s %14s %14.3f %8s%n", entry.getKey(), "-", score(entry.getValue()), "new");
+				continue;
+			}
+			double ratio = score(entry.getValue()) / score(before);
+			String verdict = "";
+			if (ratio > 1 + threshold && !overlap(before, entry.getValue())) {
+				verdict = "  REGRESSION";
+				regressions++;
+			} else if (ratio < 1 - threshold && !overlap(before, entry.getValue())) {
+				verdict = "  improvement";
+			}
+			System.out.printf("%-70s %14.3f %14.3f %8.3f%s%n", entry.getKey(), score(before),
+					score(entry.getValue()), ratio, verdict);
+		}
+		for (String key : base.keySet()) {
+			if (!current.containsKey(key))
+				System.out.printf("%-70s %14.3f %14s %8s%n", key, score(base.get(key)), "-", "gone");
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed by more than " + threshold * 100 + "%");
+			System.exit(1);
+		}
+	}
+
+	/** Reads the results of a file, by benchmark and parameters. */
+	private static Map<String, JSONObject> read(String file) throws IOException, ParseException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			JSONArray results = (JSONArray) new JSONParser().parse(reader);
+			Map<String, JSONObject> byKey = new LinkedHashMap<String, JSONObject>();
+			for (Object result : results) {
+				JSONObject object = (JSONObject) result;
+				Map<?, ?> params = (Map<?, ?>) object.get("params");
+				byKey.put(object.get("benchmark") + (params != null ? " " + new TreeMap<Object, Object>(params) : ""), object);
+			}
+			return byKey;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static double score(JSONObject result) {
+		return ((Number) metric(result).get("score")).doubleValue();
+	}
+
+	/** Whether the confidence intervals of two results overlap; if either is unknown, the threshold alone decides. */
+	private static boolean overlap(JSONObject a, JSONObject b) {
+		Object errorA = metric(a).get("scoreError");
+		Object errorB = metric(b).get("scoreError");
+		if (!(errorA instanceof Number) || !(errorB instanceof Number))
+			return false;
+		double low = Math.max(score(a) - ((Number) errorA).doubleValue(), score(b) - ((Number) errorB).doubleValue());
+		double high = Math.min(score(a) + ((Number) errorA).doubleValue(), score(b) + ((Number) errorB).doubleValue());
+		return low <= high;
+	}
+
+	private static JSONObject metric(JSONObject result) {
+		return (JSONObject) result.get("primaryMetric");
+	}
+
+}
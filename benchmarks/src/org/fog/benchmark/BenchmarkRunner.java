@@ -0,0 +1,284 @@
+package org.fog.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.FutureQueueHoldBenchmark;
+import org.json.simple.JSONValue;
+
+/**
+ * Runs the benchmarks of the simulation kernel and of the fog data path, and stores their results
+ * as JSON, so that the results of two commits can be compared with {@link BenchmarkCompare}.
+ *
+ * Each benchmark is run for each combination of its parameters : its operations are run for a
+ * number of warmup iterations, then for a number of measured iterations, and the average time per
+ * operation is reported with its 99.9% confidence interval, as JMH does. The JSON file has the
+ * layout of the JMH results, with one result per line.
+ *
+ * Usage : BenchmarkRunner [options] [regexp...]
+ *
+ *   regexp         runs the benchmarks whose name matches one of the expressions
+ *   -wi N          number of warmup iterations (default 3, 1 for single shot benchmarks)
+ *   -i N           number of measured iterations (default 5, 3 for single shot benchmarks)
+ *   -r SECONDS     time of an iteration (default 1)
+ *   -p NAME=V1,V2  values of a parameter, instead of the default ones
+ *   -rf FILE       JSON file of the results (default benchmark-results.json)
+ *   -l             lists the benchmarks and their parameters
+ *
+ * The benchmarks read the dataset from the working directory, which must be the root of the
+ * repository.
+ */
+public class BenchmarkRunner {
+
+	static List<Benchmark> BENCHMARKS = Arrays.asList(
+			new FutureQueueHoldBenchmark(),
+			new CancellationBenchmark(),
+			new ClockTickBenchmark(),
+			new TupleArrivalBenchmark(),
+			new ResultantTuplesBenchmark(),
+			new RoutingBenchmark(),
+			new DetermineParentBenchmark(),
+			new TopologyBenchmark(),
+			new ScenarioBenchmark());
+
+	/** Keeps the results of the operations alive. */
+	static volatile long sink;
+
+	private static final PrintStream OUT = System.out;
+
+	private static final PrintStream SILENT = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+
+	public static void main(String[] args) throws Exception {
+		int warmupIterations = -1;
+		int iterations = -1;
+		double iterationTime = 1;
+		File resultFile = new File("benchmark-results.json");
+		Map<String, String[]> overrides = new HashMap<String, String[]>();
+		List<Pattern> filters = new ArrayList<Pattern>();
+		boolean list = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-wi"))
+				warmupIterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i"))
+				iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-r"))
+				iterationTime = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-rf"))
+				resultFile = new File(args[++i]);
+			else if (args[i].equals("-p")) {
+				String param = args[++i];
+				int equals = param.indexOf('=');
+				overrides.put(param.substring(0, equals), param.substring(equals + 1).split(","));
+			} else if (args[i].equals("-l"))
+				list = true;
+			else
+				filters.add(Pattern.compile(args[i]));
+		}
+
+		List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+		for (Benchmark benchmark : BENCHMARKS) {
+			if (!matches(benchmark.getName(), filters))
+				continue;
+			if (list) {
+				OUT.println(benchmark.getName() + " " + describe(benchmark.getParameters()));
+				continue;
+			}
+			Map<String, String[]> parameters = new LinkedHashMap<String, String[]>(benchmark.getParameters());
+			for (String name : parameters.keySet()) {
+				if (overrides.containsKey(name))
+					parameters.put(name, overrides.get(name));
+			}
+			int wi = warmupIterations >= 0 ? warmupIterations : benchmark.isSingleShot() ? 1 : 3;
+			int mi = iterations > 0 ? iterations : benchmark.isSingleShot() ? 3 : 5;
+			for (Map<String, String> params : combinations(parameters)) {
+				Map<String, Object> result = run(benchmark, params, wi, mi, (long) (iterationTime * 1e9));
+				if (result != null)
+					results.add(result);
+			}
+		}
+		if (list)
+			return;
+
+		printSummary(results);
+		write(results, resultFile);
+		OUT.println("Results written to " + resultFile);
+	}
+
+	private static boolean matches(String name, List<Pattern> filters) {
+		if (filters.isEmpty())
+			return true;
+		for (Pattern filter : filters) {
+			if (filter.matcher(name).find())
+				return true;
+		}
+		return false;
+	}
+
+	private static String describe(Map<String, String[]> parameters) {
+		StringBuilder description = new StringBuilder();
+		for (Map.Entry<String, String[]> parameter : parameters.entrySet())
+			description.append(parameter.getKey()).append('=').append(Arrays.toString(parameter.getValue())).append(' ');
+		return description.toString().trim();
+	}
+
+	private static List<Map<String, String>> combinations(Map<String, String[]> parameters) {
+		List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+		combinations.add(new LinkedHashMap<String, String>());
+		for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+			List<Map<String, String>> next = new ArrayList<Map<String, String>>();
+			for (Map<String, String> combination : combinations) {
+				for (String value : parameter.getValue()) {
+					Map<String, String> params = new LinkedHashMap<String, String>(combination);
+					params.put(parameter.getKey(), value);
+					next.add(params);
+				}
+			}
+			combinations = next;
+		}
+		return combinations;
+	}
+
+	/**
+	 * Runs a benchmark with a combination of parameters.
+	 *
+	 * @return the result, in the layout of a JMH result, or null if the benchmark failed
+	 */
+	private static Map<String, Object> run(Benchmark benchmark, Map<String, String> params, int warmupIterations,
+			int iterations, long iterationNanos) {
+		OUT.println("# " + benchmark.getName() + " " + params);
+		boolean singleShot = benchmark.isSingleShot();
+		double unit = singleShot ? 1e6 : 1e3;
+		double[] scores = new double[iterations];
+		Log.disable();
+		System.setOut(SILENT);
+		try {
+			benchmark.setUp(params);
+			try {
+				int operations = singleShot ? 1 : calibrate(benchmark, iterationNanos);
+				for (int i = 0; i < warmupIterations; i++) {
+					double score = time(benchmark, operations) / unit / operations;
+					OUT.printf("Warmup iteration %d: %.3f %s%n", i + 1, score, singleShot ? "ms/op" : "us/op");
+				}
+				for (int i = 0; i < iterations; i++) {
+					scores[i] = time(benchmark, operations) / unit / operations;
+					OUT.printf("Iteration %d: %.3f %s%n", i + 1, scores[i], singleShot ? "ms/op" : "us/op");
+				}
+			} finally {
+				benchmark.tearDown();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			System.setOut(OUT);
+		}
+
+		double mean = 0;
+		for (double score : scores)
+			mean += score;
+		mean /= iterations;
+		double error = Double.NaN;
+		if (iterations > 1) {
+			double variance = 0;
+			for (double score : scores)
+				variance += (score - mean) * (score - mean);
+			variance /= iterations - 1;
+			double t = new TDistribution(iterations - 1).inverseCumulativeProbability(0.9995);
+			error = t * Math.sqrt(variance / iterations);
+		}
+
+		List<Double> rawScores = new ArrayList<Double>();
+		for (double score : scores)
+			rawScores.add(score);
+		List<Object> rawData = new ArrayList<Object>();
+		rawData.add(rawScores);
+		Map<String, Object> metric = new LinkedHashMap<String, Object>();
+		metric.put("score", mean);
+		metric.put("scoreError", Double.isNaN(error) ? "NaN" : (Object) error);
+		metric.put("scoreConfidence", Arrays.asList(Double.isNaN(error) ? "NaN" : (Object) (mean - error),
+				Double.isNaN(error) ? "NaN" : (Object) (mean + error)));
+		metric.put("scoreUnit", singleShot ? "ms/op" : "us/op");
+		metric.put("rawData", rawData);
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("benchmark", benchmark.getName());
+		result.put("mode", singleShot ? "ss" : "avgt");
+		result.put("threads", 1);
+		result.put("warmupIterations", warmupIterations);
+		result.put("measurementIterations", iterations);
+		result.put("jvm", System.getProperty("java.home"));
+		result.put("vmVersion", System.getProperty("java.vm.version"));
+		result.put("params", params);
+		result.put("primaryMetric", metric);
+		return result;
+	}
+
+	/** Finds how many operations fill an iteration. */
+	private static int calibrate(Benchmark benchmark, long iterationNanos) throws Exception {
+		int operations = 1;
+		while (true) {
+			long elapsed = Math.max(1, time(benchmark, operations));
+			if (elapsed >= iterationNanos / 10 || operations >= Integer.MAX_VALUE / 2)
+				return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (double) operations * iterationNanos / elapsed));
+			operations *= 2;
+		}
+	}
+
+	private static long time(Benchmark benchmark, int operations) throws Exception {
+		benchmark.setUpIteration();
+		long start = System.nanoTime();
+		sink += benchmark.run(operations);
+		long elapsed = System.nanoTime() - start;
+		long measured = benchmark.getMeasuredTime();
+		return measured >= 0 ? measured : elapsed;
+	}
+
+	private static void printSummary(List<Map<String, Object>> results) {
+		OUT.println();
+		OUT.printf("%-40s %-40s %5s %4s %14s %12s  %s%n", "Benchmark", "(params)", "Mode", "Cnt", "Score", "Error", "Units");
+		for (Map<String, Object> result : results) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> metric = (Map<String, Object>) result.get("primaryMetric");
+			Object error = metric.get("scoreError");
+			OUT.printf("%-40s %-40s %5s %4d %14.3f %12s  %s%n", result.get("benchmark"), result.get("params"),
+					result.get("mode"), result.get("measurementIterations"), metric.get("score"),
+					error instanceof Double ? String.format("+- %.3f", error) : "", metric.get("scoreUnit"));
+		}
+	}
+
+	private static void write(List<Map<String, Object>> results, File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write("[\n");
+			for (int i = 0; i < results.size(); i++) {
+				writer.write(JSONValue.toJSONString(results.get(i)));
+				writer.write(i < results.size() - 1 ? ",\n" : "\n");
+			}
+			writer.write("]\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+}
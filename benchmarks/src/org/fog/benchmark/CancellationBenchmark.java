@@ -0,0 +1,128 @@
+package org.fog.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+import org.fog.utils.FogEvents;
+
+/**
+ * CloudSim.cancelAll on a synthetic topology of 1000 devices : a cloud, area gateways, and edge
+ * devices under them. Each edge device emits a tuple every TRANSMISSION_TIME, which is forwarded
+ * up to the cloud. On every tuple arrival a device does what PowerDatacenter.updateCloudletProcessing
+ * does for every FogDevice : it cancels its pending VM_DATACENTER_EVENT and schedules a new one.
+ *
+ * An operation is the whole simulation, with the (source, tag) index of the future queue or with
+ * the full scan of the queue it replaces.
+ */
+public class CancellationBenchmark extends Benchmark {
+
+	private static final int DEVICES = 1000;
+	private static final int AREAS = 10;
+	private static final double TRANSMISSION_TIME = 5;
+	private static final double UPLINK_LATENCY = 2;
+	private static final double SCHEDULING_INTERVAL = 10;
+
+	private boolean indexed;
+	private double simulationTime;
+	private List<Device> devices;
+
+	public CancellationBenchmark() {
+		super("CloudSim.cancelAll");
+		addParameter("indexed", "true", "false");
+		addParameter("time", "2000");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) {
+		indexed = Boolean.parseBoolean(params.get("indexed"));
+		simulationTime = Double.parseDouble(params.get("time"));
+	}
+
+	@Override
+	public void setUpIteration() {
+		FutureQueue queue = FutureQueue.createDefault();
+		queue.setIndexed(indexed);
+		CloudSim.init(1, null, false, queue);
+		devices = new ArrayList<Device>();
+		Device cloud = new Device("cloud", -1, false);
+		int[] areas = new int[AREAS];
+		for (int i = 0; i < AREAS; i++)
+			areas[i] = new Device("area-" + i, cloud.getId(), false).getId();
+		for (int i = 0; i < DEVICES - AREAS - 1; i++)
+			new Device("edge-" + i, areas[i % AREAS], true);
+		CloudSim.terminateSimulation(simulationTime);
+	}
+
+	@Override
+	public long run(int operations) {
+		CloudSim.startSimulation();
+		long arrivals = 0;
+		for (Device device : devices)
+			arrivals += device.arrivals;
+		return arrivals;
+	}
+
+	@Override
+	public void tearDown() {
+		devices = null;
+	}
+
+	@Override
+	public boolean isSingleShot() {
+		return true;
+	}
+
+	private class Device extends SimEntity {
+
+		private final int parentId;
+		private final boolean edge;
+		long arrivals;
+
+		Device(String name, int parentId, boolean edge) {
+			super(name);
+			this.parentId = parentId;
+			this.edge = edge;
+			devices.add(this);
+		}
+
+		@Override
+		public void startEntity() {
+			if (edge)
+				schedule(getId(), TRANSMISSION_TIME * getId() / DEVICES, FogEvents.EMIT_TUPLE);
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			switch (ev.getTag()) {
+			case FogEvents.EMIT_TUPLE:
+				schedule(getId(), TRANSMISSION_TIME, FogEvents.EMIT_TUPLE);
+				processTupleArrival();
+				break;
+			case FogEvents.TUPLE_ARRIVAL:
+				processTupleArrival();
+				break;
+			}
+		}
+
+		private void processTupleArrival() {
+			arrivals++;
+			CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+			schedule(getId(), SCHEDULING_INTERVAL, CloudSimTags.VM_DATACENTER_EVENT);
+			if (parentId >= 0)
+				schedule(parentId, UPLINK_LATENCY, FogEvents.TUPLE_ARRIVAL);
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+
+	}
+
+}
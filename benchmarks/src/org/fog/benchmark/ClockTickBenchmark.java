@@ -0,0 +1,116 @@
+package org.fog.benchmark;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
+/**
+ * One clock tick of the CloudSim kernel : moving the events of the next time from the future queue
+ * to the entities, and running the entities woken up. The entities relay each event they receive
+ * to a random entity with a random integer delay, so about a tenth of them are woken up at each
+ * tick, whatever the number of ticks run.
+ *
+ * The simulation runs in its own {@link SimulationContext}, started once and ticked by each
+ * iteration.
+ */
+public class ClockTickBenchmark extends Benchmark {
+
+	private static final int MAX_DELAY = 10;
+
+	private SimulationContext context;
+
+	public ClockTickBenchmark() {
+		super("CloudSim.runClockTick");
+		addParameter("entities", "100", "10000");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) throws Exception {
+		final int entities = Integer.parseInt(params.get("entities"));
+		context = new SimulationContext();
+		context.call(new Callable<Void>() {
+			@Override
+			public Void call() {
+				CloudSim.init(1, Calendar.getInstance(), false);
+				int first = -1;
+				for (int i = 0; i < entities; i++) {
+					Relay relay = new Relay("relay-" + i);
+					if (first < 0)
+						first = relay.getId();
+					relay.first = first;
+					relay.count = entities;
+				}
+				CloudSim.runStart();
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public long run(final int operations) throws Exception {
+		return context.call(new Callable<Long>() {
+			@Override
+			public Long call() {
+				long checksum = 0;
+				for (int i = 0; i < operations; i++) {
+					if (CloudSim.runClockTick())
+						throw new IllegalStateException("No event left");
+					checksum += (long) CloudSim.clock();
+				}
+				return checksum;
+			}
+		});
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		context.call(new Callable<Void>() {
+			@Override
+			public Void call() {
+				// the entities are not run to the end of their events
+				CloudSim.abruptallyTerminate();
+				CloudSim.finishSimulation();
+				return null;
+			}
+		});
+		context = null;
+	}
+
+	/** Relays the events it receives to random entities. */
+	private static class Relay extends SimEntity {
+
+		int first;
+		int count;
+		private long random;
+
+		Relay(String name) {
+			super(name);
+			random = getId() * 0x9E3779B97F4A7C15L + 1;
+		}
+
+		@Override
+		public void startEntity() {
+			schedule(getId(), 1 + getId() % MAX_DELAY, 0);
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			int peer = first + (int) ((random >>> 1) % count);
+			schedule(peer, 1 + (random >>> 40) % MAX_DELAY, 0);
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+package org.fog.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fog.mobilitydata.DataParser;
+import org.fog.mobilitydata.References;
+import org.fog.placement.LocationHandler;
+
+/**
+ * The parent of a device, as found from its location by the mobility scenarios. At setup time, the
+ * gateways of the edge resources dataset look for the proxy of their block; at run time, the users
+ * of the random mobility dataset look for the nearest gateway at each time of their trace.
+ */
+public class DetermineParentBenchmark extends Benchmark {
+
+	private static final int USERS = 5;
+
+	private LocationHandler locator;
+	private int[] instances;
+	private double[] times;
+	private int next;
+
+	public DetermineParentBenchmark() {
+		super("LocationHandler.determineParent");
+		addParameter("time", "setup", "runtime");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) throws Exception {
+		locator = new LocationHandler(new DataParser());
+		Map<Integer, Integer> userMobilityPattern = new HashMap<Integer, Integer>();
+		for (int id = 1; id <= USERS; id++)
+			userMobilityPattern.put(id, References.DIRECTIONAL_MOBILITY);
+		locator.parseUserInfo(userMobilityPattern, References.dataset_random);
+		locator.parseResourceInfo();
+
+		// the devices are not created, their ids only link them to the dataset
+		int instanceId = 0;
+		List<Integer> users = new ArrayList<Integer>();
+		for (String dataId : locator.getMobileUserDataId()) {
+			locator.linkDataWithInstance(instanceId, dataId);
+			users.add(instanceId++);
+		}
+		List<Integer> gateways = new ArrayList<Integer>();
+		for (String level : new String[] {"Cloud", "Proxy", "Gateway"}) {
+			for (String dataId : locator.getLevelWiseResources(locator.getLevelID(level))) {
+				locator.linkDataWithInstance(instanceId, dataId);
+				if (level.equals("Gateway"))
+					gateways.add(instanceId);
+				instanceId++;
+			}
+		}
+
+		List<Integer> instanceList = new ArrayList<Integer>();
+		List<Double> timeList = new ArrayList<Double>();
+		if (params.get("time").equals("setup")) {
+			for (int gateway : gateways) {
+				instanceList.add(gateway);
+				timeList.add(References.SETUP_TIME);
+			}
+		} else {
+			for (int user : users) {
+				for (double time : locator.getTimeSheet(user)) {
+					if (time >= References.INIT_TIME) {
+						instanceList.add(user);
+						timeList.add(time);
+					}
+				}
+			}
+		}
+		instances = new int[instanceList.size()];
+		times = new double[timeList.size()];
+		for (int i = 0; i < instances.length; i++) {
+			instances[i] = instanceList.get(i);
+			times[i] = timeList.get(i);
+		}
+		next = 0;
+	}
+
+	@Override
+	public long run(int operations) {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++) {
+			checksum += locator.determineParent(instances[next], times[next]);
+			if (++next == instances.length)
+				next = 0;
+		}
+		return checksum;
+	}
+
+	@Override
+	public void tearDown() {
+		locator = null;
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.fog.benchmark;
+
+import java.util.Map;
+
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.fog.application.AppEdge;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Tuple;
+
+/**
+ * The tuples resulting from the execution of a tuple by a module, which sends one tuple along
+ * each of its outgoing edges.
+ */
+public class ResultantTuplesBenchmark extends Benchmark {
+
+	private Application application;
+	private Tuple input;
+
+	public ResultantTuplesBenchmark() {
+		super("Application.getResultantTuples");
+		addParameter("fanOut", "1", "8");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) {
+		int fanOut = Integer.parseInt(params.get("fanOut"));
+		application = Application.createApplication("fan_out", 1);
+		application.addAppModule("source", 10);
+		application.addAppModule("worker", 10);
+		application.addAppEdge("source", "worker", 1000, 500, "IN", Tuple.UP, AppEdge.MODULE);
+		for (int i = 0; i < fanOut; i++) {
+			application.addAppModule("sink-" + i, 10);
+			application.addAppEdge("worker", "sink-" + i, 1000, 500, "OUT-" + i, Tuple.UP, AppEdge.MODULE);
+			application.addTupleMapping("worker", "IN", "OUT-" + i, new FractionalSelectivity(1.0));
+		}
+		input = new Tuple("fan_out", 1, Tuple.UP, 1000, 1, 500, 500, new UtilizationModelFull(),
+				new UtilizationModelFull(), new UtilizationModelFull());
+		input.setUserId(1);
+		input.setTupleType("IN");
+		input.setSrcModuleName("source");
+		input.setDestModuleName("worker");
+	}
+
+	@Override
+	public long run(int operations) {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++)
+			checksum += application.getResultantTuples("worker", input, 1, 1).size();
+		return checksum;
+	}
+
+	@Override
+	public void tearDown() {
+		application = null;
+		input = null;
+	}
+
+}
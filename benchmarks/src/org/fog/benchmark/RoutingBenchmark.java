@@ -0,0 +1,76 @@
+package org.fog.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.fog.entities.FogDevice;
+import org.fog.utils.FogEntityFactory;
+import org.fog.utils.ShortestPathRouting;
+import org.fog.utils.ShortestPathRoutingGenerator;
+
+/**
+ * The shortest path routes between all the devices of a tree topology, in which each device has
+ * up to ten children.
+ */
+public class RoutingBenchmark extends Benchmark {
+
+	private static final int CHILDREN = 10;
+
+	private SimulationContext context;
+	private List<FogDevice> fogDevices;
+
+	public RoutingBenchmark() {
+		super("ShortestPathRoutingGenerator.generateRouting");
+		addParameter("devices", "100", "1000");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) throws Exception {
+		final int devices = Integer.parseInt(params.get("devices"));
+		context = new SimulationContext();
+		fogDevices = context.call(new Callable<List<FogDevice>>() {
+			@Override
+			public List<FogDevice> call() {
+				CloudSim.init(1, Calendar.getInstance(), false);
+				List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+				for (int i = 0; i < devices; i++) {
+					FogDevice device = FogEntityFactory.createFogDevice("d-" + i, 2800, 10000, 10000, 0, 0.0);
+					if (i == 0) {
+						device.setParentId(-1);
+					} else {
+						FogDevice parent = fogDevices.get((i - 1) / CHILDREN);
+						double latency = 2 + i % 7;
+						device.setParentId(parent.getId());
+						device.setUplinkLatency(latency);
+						parent.getChildToLatencyMap().put(device.getId(), latency);
+						parent.getChildrenIds().add(device.getId());
+					}
+					fogDevices.add(device);
+				}
+				return fogDevices;
+			}
+		});
+	}
+
+	@Override
+	public long run(int operations) {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++) {
+			ShortestPathRouting routing = ShortestPathRoutingGenerator.generateRouting(fogDevices);
+			checksum += routing.getNextHop(fogDevices.get(fogDevices.size() - 1).getId(), fogDevices.get(1).getId());
+		}
+		return checksum;
+	}
+
+	@Override
+	public void tearDown() {
+		context = null;
+		fogDevices = null;
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.fog.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A whole case study, run at a given scale by {@link ScenarioLauncher} in its own JVM, since the
+ * controller exits when the simulation ends. The time of an operation is the EXECUTION TIME
+ * reported by the controller, which leaves out the start of the JVM.
+ *
+ * The cloudsim.* system properties of the runner, such as the future queue engine, are passed on
+ * to the case study.
+ */
+public class ScenarioBenchmark extends Benchmark {
+
+	private static final String PREFIX = "EXECUTION TIME : ";
+
+	private String scenario;
+	private String scale;
+	private long measuredTime;
+
+	public ScenarioBenchmark() {
+		super("Scenario");
+		addParameter("scenario", "VRGameFog", "DCNSFog", "MicroservicesAppSample1");
+		addParameter("scale", "1", "4");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) {
+		scenario = "org.fog.test.perfeval." + params.get("scenario");
+		scale = params.get("scale");
+	}
+
+	@Override
+	public long run(int operations) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		for (String property : System.getProperties().stringPropertyNames()) {
+			if (property.startsWith("cloudsim."))
+				command.add("-D" + property + "=" + System.getProperty(property));
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ScenarioLauncher.class.getName());
+		command.add(scenario);
+		command.add(scale);
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		long executionTime = -1;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(PREFIX))
+					executionTime = Long.parseLong(line.substring(PREFIX.length()).trim());
+			}
+		} finally {
+			reader.close();
+		}
+		process.waitFor();
+		if (executionTime < 0)
+			throw new IllegalStateException(scenario + " did not report its execution time");
+		measuredTime = executionTime * 1000000L;
+		return executionTime;
+	}
+
+	@Override
+	public long getMeasuredTime() {
+		return measuredTime;
+	}
+
+	@Override
+	public boolean isSingleShot() {
+		return true;
+	}
+
+}
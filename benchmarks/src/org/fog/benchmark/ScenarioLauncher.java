@@ -0,0 +1,43 @@
+package org.fog.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a case study at a given scale, for {@link ScenarioBenchmark}. The scale multiplies the
+ * number of areas of the topology the case study builds, which the launcher sets before calling
+ * its main method.
+ *
+ * Usage : ScenarioLauncher scenario-class scale
+ */
+public class ScenarioLauncher {
+
+	public static void main(String[] args) throws Exception {
+		Class<?> scenario = Class.forName(args[0]);
+		int scale = Integer.parseInt(args[1]);
+		String name = scenario.getSimpleName();
+		if (name.equals("VRGameFog")) {
+			set(scenario, "numOfDepts", 2 * scale);
+		} else if (name.equals("DCNSFog")) {
+			set(scenario, "numOfAreas", scale);
+		} else if (name.equals("MicroservicesAppSample1")) {
+			set(scenario, "gatewayDevices", new Integer[] {3 * scale, 3 * scale});
+			List<Integer> mobilesPerL2 = new ArrayList<Integer>();
+			for (int i = 0; i < scale; i++)
+				mobilesPerL2.addAll(Arrays.asList(3, 2, 1, 2, 3, 1));
+			set(scenario, "mobilesPerL2", mobilesPerL2.toArray(new Integer[0]));
+		} else if (scale != 1) {
+			throw new IllegalArgumentException("No scale known for " + name);
+		}
+		scenario.getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+	}
+
+	private static void set(Class<?> scenario, String name, Object value) throws Exception {
+		Field field = scenario.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(null, value);
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.fog.benchmark;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.fog.entities.MicroserviceFogDevice;
+import org.fog.utils.TopologyFile;
+import org.fog.utils.TopologyGenerator;
+import org.fog.utils.TopologySpec;
+import org.fog.utils.TopologySpec.DeviceProfile;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+/**
+ * The creation of a synthetic topology of a cloud, 10 proxies, 100 clustered gateways and mobiles
+ * under them, each mobile with a sensor and an actuator : generated from its spec, or read from its
+ * topology file. Each operation creates the whole topology in a new {@link SimulationContext}.
+ */
+public class TopologyBenchmark extends Benchmark {
+
+	private TopologySpec spec;
+	private File file;
+
+	public TopologyBenchmark() {
+		super("TopologyGenerator.generate");
+		addParameter("source", "spec", "file");
+		addParameter("mobiles", "10000", "100000");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) throws Exception {
+		int mobiles = Integer.parseInt(params.get("mobiles"));
+		spec = new TopologySpec(42);
+		spec.addLevel("cloud", 1, 0, new DeviceProfile(44800, 40000, 100, 10000, 0.01, 16 * 103, 16 * 83.25));
+		spec.addLevel("proxy-server", 10, 10, 100, 150, new DeviceProfile(2800, 4000, 10000, 10000, 0.0, 107.339, 83.4333));
+		spec.addLevel("gateway", 10, 4, new DeviceProfile(2800, 4000, 10000, 10000, 0.0, 107.339, 83.4333)
+				.setMicroserviceDevice(MicroserviceFogDevice.FON, 1250000)).setClusterLatency(2);
+		spec.addLevel("m", mobiles / 100, 2, new DeviceProfile(1000, 1000, 10000, 270, 0, 87.53, 82.44))
+				.addSensors("s", "EEG", 1, new DeterministicDistribution(5), 6)
+				.addActuators("a", "DISPLAY", 1, 1);
+		if (params.get("source").equals("file")) {
+			file = File.createTempFile("topology", ".bin");
+			TopologyFile.write(spec, file);
+		}
+	}
+
+	@Override
+	public long run(int operations) throws Exception {
+		long checksum = 0;
+		for (int i = 0; i < operations; i++) {
+			checksum += new SimulationContext().call(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					CloudSim.init(1, Calendar.getInstance(), false);
+					if (file != null)
+						return TopologyFile.read(file, 1, "app").getFogDevices().size();
+					return TopologyGenerator.generate(spec, 1, "app").getFogDevices().size();
+				}
+			});
+		}
+		return checksum;
+	}
+
+	@Override
+	public void tearDown() {
+		if (file != null && !file.delete())
+			file.deleteOnExit();
+		file = null;
+		spec = null;
+	}
+
+}
@@ -0,0 +1,176 @@
+package org.fog.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.fog.application.AppEdge;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.Tuple;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementMapping;
+import org.fog.utils.Config;
+import org.fog.utils.FogEntityFactory;
+import org.fog.utils.FogEvents;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+/**
+ * The fog data path of a tuple : its arrival at a fog device, its execution by the module it is
+ * sent to and the routing of the tuples it results in. Sensors under a gateway send tuples to a
+ * client module on the gateway, which sends them up to a server module on the cloud, whose results
+ * come back down to the client and go to a display.
+ *
+ * Each operation is the journey of one sensor tuple to the display, so its time covers the arrival
+ * of the tuples at each device they cross, their execution by the modules and the event loop of
+ * the kernel. Each iteration starts a new simulation in its own {@link SimulationContext}, since
+ * the devices keep the history of their utilization for as long as the simulation runs.
+ */
+public class TupleArrivalBenchmark extends Benchmark {
+
+	private static final double TRANSMISSION_TIME = 100;
+
+	private int sensorCount;
+	private SimulationContext context;
+	private int maxSimulationTime;
+	private Display display;
+
+	public TupleArrivalBenchmark() {
+		super("FogDevice.processTupleArrival");
+		addParameter("sensors", "10", "100");
+	}
+
+	@Override
+	public void setUp(Map<String, String> params) {
+		sensorCount = Integer.parseInt(params.get("sensors"));
+		// the controller stops the simulation at the maximum simulation time
+		maxSimulationTime = Config.MAX_SIMULATION_TIME;
+		Config.MAX_SIMULATION_TIME = Integer.MAX_VALUE;
+	}
+
+	@Override
+	public void setUpIteration() throws Exception {
+		finish();
+		context = new SimulationContext();
+		context.call(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				CloudSim.init(1, Calendar.getInstance(), false);
+				FogBroker broker = new FogBroker("broker");
+				Application application = createApplication("data_path", broker.getId());
+
+				List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+				List<Sensor> sensors = new ArrayList<Sensor>();
+				List<Actuator> actuators = new ArrayList<Actuator>();
+				FogDevice cloud = FogEntityFactory.createFogDevice("cloud", 44800, 100, 10000, 0, 0.01);
+				cloud.setParentId(-1);
+				FogDevice gateway = FogEntityFactory.createFogDevice("gateway", 44800, 10000, 10000, 0, 0.0);
+				gateway.setParentId(cloud.getId());
+				gateway.setUplinkLatency(100);
+				fogDevices.add(cloud);
+				fogDevices.add(gateway);
+				for (int i = 0; i < sensorCount; i++) {
+					Sensor sensor = new Sensor("s-" + i, "SENSOR", broker.getId(), application.getAppId(),
+							new DeterministicDistribution(TRANSMISSION_TIME));
+					sensor.setGatewayDeviceId(gateway.getId());
+					sensor.setLatency(2.0);
+					sensors.add(sensor);
+				}
+				display = new Display(broker.getId(), application.getAppId());
+				display.setGatewayDeviceId(gateway.getId());
+				display.setLatency(1.0);
+				actuators.add(display);
+
+				ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+				moduleMapping.addModuleToDevice("client", "gateway");
+				moduleMapping.addModuleToDevice("server", "cloud");
+				Controller controller = new Controller("master-controller", fogDevices, sensors, actuators);
+				controller.submitApplication(application, 0,
+						new ModulePlacementMapping(fogDevices, application, moduleMapping));
+				CloudSim.runStart();
+				return null;
+			}
+		});
+	}
+
+	private static Application createApplication(String appId, int userId) {
+		Application application = Application.createApplication(appId, userId);
+		application.setUserId(userId);
+		application.addAppModule("client", 10);
+		application.addAppModule("server", 10);
+		// light tuples, so that the devices keep up with the sensors
+		application.addAppEdge("SENSOR", "client", 10, 500, "SENSOR", Tuple.UP, AppEdge.SENSOR);
+		application.addAppEdge("client", "server", 20, 500, "DATA", Tuple.UP, AppEdge.MODULE);
+		application.addAppEdge("server", "client", 10, 500, "RESULT", Tuple.DOWN, AppEdge.MODULE);
+		application.addAppEdge("client", "DISPLAY", 10, 500, "UPDATE", Tuple.DOWN, AppEdge.ACTUATOR);
+		application.addTupleMapping("client", "SENSOR", "DATA", new FractionalSelectivity(1.0));
+		application.addTupleMapping("server", "DATA", "RESULT", new FractionalSelectivity(1.0));
+		application.addTupleMapping("client", "RESULT", "UPDATE", new FractionalSelectivity(1.0));
+		return application;
+	}
+
+	@Override
+	public long run(final int operations) throws Exception {
+		return context.call(new Callable<Long>() {
+			@Override
+			public Long call() {
+				long target = display.received + operations;
+				while (display.received < target) {
+					if (CloudSim.runClockTick())
+						throw new IllegalStateException("No event left");
+				}
+				return (long) CloudSim.clock();
+			}
+		});
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		finish();
+		Config.MAX_SIMULATION_TIME = maxSimulationTime;
+	}
+
+	private void finish() throws Exception {
+		if (context == null)
+			return;
+		context.call(new Callable<Void>() {
+			@Override
+			public Void call() {
+				// the entities are not run to the end of their events
+				CloudSim.abruptallyTerminate();
+				CloudSim.finishSimulation();
+				return null;
+			}
+		});
+		context = null;
+	}
+
+	/** Counts the tuples reaching the end of the data path. */
+	private static class Display extends Actuator {
+
+		long received;
+
+		Display(int userId, String appId) {
+			super("display", userId, appId, "DISPLAY");
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			if (ev.getTag() == FogEvents.TUPLE_ARRIVAL)
+				received++;
+			super.processEvent(ev);
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.fog.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fog.utils.Config;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * Checks that the tuples kept by the TimeKeeper do not grow with the simulated time : each case
+ * study is run in its own JVM for increasing values of Config.MAX_SIMULATION_TIME, and the tuples
+ * in flight are read when the controller ends the simulation.
+ *
+ * Tuples waiting for a CPU that cannot keep up with them are in flight for real, as in TwoApps
+ * where the mobiles are overloaded, so the check is on the tuples in flight that are not being
+ * executed : on the network, or dropped without their emission being forgotten. Their number at the longest time must stay within twice their number
+ * at the shortest one, plus a margin of 50 tuples. The exit status is 1 if a case study fails.
+ *
+ * Usage : TuplesInFlightCheck [scenario...]
+ */
+public class TuplesInFlightCheck {
+
+	private static final String PREFIX = "TUPLES IN FLIGHT : ";
+
+	private static final int[] TIMES = {10000, 20000, 40000};
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("-run")) {
+			run(args[1], Integer.parseInt(args[2]));
+			return;
+		}
+		List<String> scenarios = args.length > 0 ? Arrays.asList(args)
+				: Arrays.asList("VRGameFog", "DCNSFog", "TwoApps");
+		boolean failed = false;
+		for (String scenario : scenarios) {
+			int[] inFlight = new int[TIMES.length];
+			int[] notExecuting = new int[TIMES.length];
+			for (int i = 0; i < TIMES.length; i++) {
+				int[] counts = launch(scenario, TIMES[i]);
+				inFlight[i] = counts[0];
+				notExecuting[i] = counts[0] - counts[1];
+				System.out.println(scenario + " at " + TIMES[i] + " : " + inFlight[i] + " in flight, "
+						+ notExecuting[i] + " not being executed");
+			}
+			int last = notExecuting[TIMES.length - 1];
+			if (last > 2 * notExecuting[0] + 50) {
+				System.out.println(scenario + " FAILED : the tuples in flight grow with the simulated time");
+				failed = true;
+			}
+		}
+		if (failed)
+			System.exit(1);
+	}
+
+	/**
+	 * Runs a case study in a new JVM.
+	 *
+	 * @return the tuples in flight, and those being executed, when the simulation ended
+	 */
+	private static int[] launch(String scenario, int time) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(TuplesInFlightCheck.class.getName());
+		command.add("-run");
+		command.add("org.fog.test.perfeval." + scenario);
+		command.add(String.valueOf(time));
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		int[] counts = null;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(PREFIX)) {
+					String[] values = line.substring(PREFIX.length()).trim().split(" ");
+					counts = new int[] {Integer.parseInt(values[0]), Integer.parseInt(values[1])};
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		process.waitFor();
+		if (counts == null)
+			throw new IllegalStateException(scenario + " did not report its tuples in flight");
+		return counts;
+	}
+
+	/**
+	 * Runs a case study in this JVM. The controller exits when the simulation ends, so the
+	 * counts are printed by a shutdown hook.
+	 */
+	private static void run(String scenario, int time) throws Exception {
+		Config.MAX_SIMULATION_TIME = time;
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				TimeKeeper timeKeeper = TimeKeeper.getInstance();
+				System.out.println(PREFIX + timeKeeper.getTuplesInFlight() + " " + timeKeeper.getTuplesInFlightExecuting());
+			}
+		});
+		Class.forName(scenario).getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+	}
+
+}
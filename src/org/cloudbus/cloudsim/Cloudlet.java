@@ -147,7 +147,7 @@ public class Cloudlet {
 
 	// Data cloudlet
 	/** The required files. */
-	private List<String> requiredFiles = null;   // list of required filenames
+	private List<String> requiredFiles = null;   // list of required filenames, created on first use
 
 	/**
 	 * Allocates a new Cloudlet object. The Cloudlet length, input and output file sizes should be
@@ -192,8 +192,6 @@ public class Cloudlet {
 		vmId = -1;
 		accumulatedBwCost = 0.0;
 		costPerBw = 0.0;
-
-		requiredFiles = new LinkedList<String>();
 	}
 
 	/**
@@ -353,8 +351,6 @@ public class Cloudlet {
 		accumulatedBwCost = 0.0;
 		costPerBw = 0.0;
 
-		requiredFiles = new LinkedList<String>();
-
 		setUtilizationModelCpu(utilizationModelCpu);
 		setUtilizationModelRam(utilizationModelRam);
 		setUtilizationModelBw(utilizationModelBw);
@@ -1298,6 +1294,10 @@ public class Cloudlet {
 	 * @return the required files
 	 */
 	public List<String> getRequiredFiles() {
+		// most cloudlets require no file, so the list is only created when asked for
+		if (requiredFiles == null) {
+			requiredFiles = new LinkedList<String>();
+		}
 		return requiredFiles;
 	}
 
@@ -1347,7 +1347,7 @@ public class Cloudlet {
 	 */
 	public boolean deleteRequiredFile(final String filename) {
 		boolean result = false;
-		if (getRequiredFiles() == null) {
+		if (requiredFiles == null) {
 			return result;
 		}
 
@@ -1372,7 +1372,7 @@ public class Cloudlet {
 	 */
 	public boolean requiresFiles() {
 		boolean result = false;
-		if (getRequiredFiles() != null && getRequiredFiles().size() > 0) {
+		if (requiredFiles != null && requiredFiles.size() > 0) {
 			result = true;
 		}
 
@@ -64,10 +64,11 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
 		setCurrentMipsShare(mipsShare);
 		double timeSpam = currentTime - getPreviousTime();
+		double capacity = getCapacity(mipsShare);
 
 		for (ResCloudlet rcl : getCloudletExecList()) {
 						
-			rcl.updateCloudletFinishedSoFar((long) (getCapacity(mipsShare) * timeSpam * rcl.getNumberOfPes() * Consts.MILLION));
+			rcl.updateCloudletFinishedSoFar((long) (capacity * timeSpam * rcl.getNumberOfPes() * Consts.MILLION));
 			//System.out.println(getTotalCurrentAllocatedMipsForCloudlet(rcl, getPreviousTime()));
 			//OLA System.out.println(CloudSim.clock()+ " : Remaining length of tuple ID "+((Tuple)rcl.getCloudlet()).getActualTupleId()+" = "+rcl.getRemainingCloudletLength());
 			
@@ -92,9 +93,10 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		getCloudletExecList().removeAll(toRemove);
 
 		// estimate finish time of cloudlets
+		capacity = getCapacity(mipsShare);
 		for (ResCloudlet rcl : getCloudletExecList()) {
 			double estimatedFinishTime = currentTime
-					+ (rcl.getRemainingCloudletLength() / (getCapacity(mipsShare) * rcl.getNumberOfPes()));
+					+ (rcl.getRemainingCloudletLength() / (capacity * rcl.getNumberOfPes()));
 			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
 				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
 			}
@@ -115,6 +117,21 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	 * @return the capacity
 	 */
 	protected double getCapacity(List<Double> mipsShare) {
+		int pesInUse = 0;
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			pesInUse += rcl.getNumberOfPes();
+		}
+		return getCapacity(mipsShare, pesInUse);
+	}
+
+	/**
+	 * Gets the capacity given to each PE of the running cloudlets.
+	 * 
+	 * @param mipsShare the mips share
+	 * @param pesInUse the number of PEs of the running cloudlets
+	 * @return the capacity
+	 */
+	protected double getCapacity(List<Double> mipsShare, int pesInUse) {
 		double capacity = 0.0;
 		int cpus = 0;
 		for (Double mips : mipsShare) {
@@ -125,11 +142,6 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		}
 		currentCPUs = cpus;
 
-		int pesInUse = 0;
-		for (ResCloudlet rcl : getCloudletExecList()) {
-			pesInUse += rcl.getNumberOfPes();
-		}
-
 		if (pesInUse > currentCPUs) {
 			capacity /= pesInUse;
 		} else {
@@ -527,7 +539,7 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	@Override
 	public double getCurrentRequestedUtilizationOfRam() {
 		double ram = 0;
-		for (ResCloudlet cloudlet : cloudletExecList) {
+		for (ResCloudlet cloudlet : getCloudletExecList()) {
 			ram += cloudlet.getCloudlet().getUtilizationOfRam(CloudSim.clock());
 		}
 		return ram;
@@ -536,7 +548,7 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 	@Override
 	public double getCurrentRequestedUtilizationOfBw() {
 		double bw = 0;
-		for (ResCloudlet cloudlet : cloudletExecList) {
+		for (ResCloudlet cloudlet : getCloudletExecList()) {
 			bw += cloudlet.getCloudlet().getUtilizationOfBw(CloudSim.clock());
 		}
 		return bw;
@@ -44,6 +44,9 @@ public class Host {
 	/** The vm list. */
 	private final List<? extends Vm> vmList = new ArrayList<Vm>();
 
+	/** The number of changes made to the vm list, so that indexes of it can tell they are outdated. */
+	private int vmListVersion = 0;
+
 	/** The pe list. */
 	private List<? extends Pe> peList;
 
@@ -142,6 +145,7 @@ public class Host {
 
 			getVmsMigratingIn().add(vm);
 			getVmList().add(vm);
+			vmListVersion++;
 			updateVmsProcessing(CloudSim.clock());
 			vm.getHost().updateVmsProcessing(CloudSim.clock());
 		}
@@ -156,6 +160,7 @@ public class Host {
 		vmDeallocate(vm);
 		getVmsMigratingIn().remove(vm);
 		getVmList().remove(vm);
+		vmListVersion++;
 		getVmScheduler().getVmsMigratingIn().remove(vm.getUid());
 		vm.setInMigration(false);
 	}
@@ -167,6 +172,7 @@ public class Host {
 		for (Vm vm : getVmsMigratingIn()) {
 			if (!getVmList().contains(vm)) {
 				getVmList().add(vm);
+				vmListVersion++;
 			}
 			if (!getVmScheduler().getVmsMigratingIn().contains(vm.getUid())) {
 				getVmScheduler().getVmsMigratingIn().add(vm.getUid());
@@ -229,6 +235,7 @@ public class Host {
 
 		setStorage(getStorage() - vm.getSize());
 		getVmList().add(vm);
+		vmListVersion++;
 		vm.setHost(this);
 		return true;
 	}
@@ -244,6 +251,7 @@ public class Host {
 		if (vm != null) {
 			vmDeallocate(vm);
 			getVmList().remove(vm);
+			vmListVersion++;
 			vm.setHost(null);
 		}
 	}
@@ -261,6 +269,7 @@ public class Host {
 			setStorage(getStorage() + vm.getSize());
 		}
 		getVmList().clear();
+		vmListVersion++;
 	}
 
 	/**
@@ -530,6 +539,16 @@ public class Host {
 		return (List<T>) vmList;
 	}
 
+	/**
+	 * Gets the number of changes made to the vm list by this host. Lets indexes built over the
+	 * vm list know when to rebuild; changes made directly to the list are not counted.
+	 * 
+	 * @return the vm list version
+	 */
+	public int getVmListVersion() {
+		return vmListVersion;
+	}
+
 	/**
 	 * Sets the storage.
 	 * 
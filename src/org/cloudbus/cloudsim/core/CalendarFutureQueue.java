@@ -0,0 +1,236 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue implementing R. Brown's calendar queue (CACM 31(10), 1988). Time is divided
+ * in "days" of a fixed width and the events of a day are kept, ordered, in the bucket of that day
+ * modulo the number of buckets. When the event times are spread evenly, adding and removing events
+ * costs O(1) on average. The number of buckets and the day width are recomputed whenever the queue
+ * doubles or shrinks to a quarter of the number of buckets.
+ * <p>
+ * The day of an event is computed as <tt>floor(time / width)</tt>, which is monotone in the time,
+ * so the (time, serial) order of {@link FutureQueue} is preserved exactly.
+ *
+ * @see FutureQueue
+ */
+public class CalendarFutureQueue extends FutureQueue {
+
+	/** The minimum number of buckets. */
+	private static final int MIN_BUCKETS = 2;
+
+	/** The number of events sampled to estimate the day width. */
+	private static final int WIDTH_SAMPLE = 25;
+
+	/** The buckets; their number is always a power of two. */
+	private SortedEventList[] buckets;
+
+	/** The width of a day. */
+	private double width = 1.0;
+
+	/** The day currently being dequeued. */
+	private long currentDay = 0;
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	/** Creates a new calendar queue. */
+	public CalendarFutureQueue() {
+		buckets = newBuckets(MIN_BUCKETS);
+	}
+
+	@Override
+	protected void insert(SimEvent event) {
+		long day = dayOf(event);
+		if (size == 0 || day < currentDay) {
+			currentDay = day;
+		}
+		buckets[bucketOf(day)].add(event);
+		size++;
+		if (size > 2 * buckets.length) {
+			resize(buckets.length * 2);
+		}
+	}
+
+	@Override
+	protected SimEvent first() {
+		SortedEventList bucket = findFirst();
+		return bucket == null ? null : bucket.first();
+	}
+
+	@Override
+	protected void removeFirst() {
+		SortedEventList bucket = findFirst();
+		if (bucket == null) {
+			return;
+		}
+		bucket.removeFirst();
+		size--;
+		if (size < buckets.length / 4 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length / 2);
+		}
+	}
+
+	@Override
+	protected boolean delete(SimEvent event) {
+		if (!buckets[bucketOf(dayOf(event))].remove(event)) {
+			return false;
+		}
+		size--;
+		return true;
+	}
+
+	@Override
+	protected Iterator<SimEvent> events() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = 0;
+
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket < buckets.length && position >= buckets[bucket].size()) {
+					bucket++;
+					position = 0;
+				}
+				return bucket < buckets.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buckets[bucket].get(position++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove");
+			}
+		};
+	}
+
+	@Override
+	protected int count() {
+		return size;
+	}
+
+	@Override
+	protected void removeAllEvents() {
+		buckets = newBuckets(MIN_BUCKETS);
+		width = 1.0;
+		currentDay = 0;
+		size = 0;
+	}
+
+	/**
+	 * Finds the bucket holding the first event, moving the current day forward to its day.
+	 *
+	 * @return the bucket, or <tt>null</tt> if the queue is empty
+	 */
+	private SortedEventList findFirst() {
+		if (size == 0) {
+			return null;
+		}
+		// scan one "year" starting at the current day
+		long day = currentDay;
+		for (int i = 0; i < buckets.length; i++, day++) {
+			SortedEventList bucket = buckets[bucketOf(day)];
+			if (!bucket.isEmpty() && dayOf(bucket.first()) == day) {
+				currentDay = day;
+				return bucket;
+			}
+		}
+		// the next event is more than a year away: look for it directly
+		SortedEventList earliest = null;
+		for (SortedEventList bucket : buckets) {
+			if (!bucket.isEmpty() && (earliest == null || bucket.first().compareTo(earliest.first()) < 0)) {
+				earliest = bucket;
+			}
+		}
+		currentDay = dayOf(earliest.first());
+		return earliest;
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets and a new day width estimated from the
+	 * separation between the first events.
+	 *
+	 * @param bucketCount the new number of buckets
+	 */
+	private void resize(int bucketCount) {
+		SimEvent[] events = new SimEvent[size];
+		int n = 0;
+		for (SortedEventList bucket : buckets) {
+			n = bucket.drainTo(events, n);
+		}
+		Arrays.sort(events, 0, n);
+
+		double newWidth = estimateWidth(events, n);
+		if (newWidth > 0 && !Double.isInfinite(newWidth)) {
+			width = newWidth;
+		}
+		buckets = newBuckets(bucketCount);
+		for (int i = 0; i < n; i++) {
+			// the events are in order, so each one follows everything already in its bucket
+			buckets[bucketOf(dayOf(events[i]))].append(events[i]);
+		}
+		currentDay = n > 0 ? dayOf(events[0]) : 0;
+	}
+
+	/**
+	 * Estimates the day width as three times the average separation of the first events, ignoring
+	 * separations more than twice as large as the average.
+	 *
+	 * @param events the events, in order
+	 * @param n the number of events
+	 * @return the width, or 0 if it cannot be estimated
+	 */
+	private static double estimateWidth(SimEvent[] events, int n) {
+		int samples = Math.min(n, WIDTH_SAMPLE);
+		if (samples < 2) {
+			return 0;
+		}
+		double total = events[samples - 1].eventTime() - events[0].eventTime();
+		double average = total / (samples - 1);
+		double sum = 0;
+		int count = 0;
+		for (int i = 1; i < samples; i++) {
+			double separation = events[i].eventTime() - events[i - 1].eventTime();
+			if (separation <= 2 * average) {
+				sum += separation;
+				count++;
+			}
+		}
+		return count == 0 ? 0 : 3 * sum / count;
+	}
+
+	private long dayOf(SimEvent event) {
+		return (long) Math.floor(event.eventTime() / width);
+	}
+
+	private int bucketOf(long day) {
+		return (int) (day & (buckets.length - 1));
+	}
+
+	private static SortedEventList[] newBuckets(int count) {
+		SortedEventList[] result = new SortedEventList[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new SortedEventList();
+		}
+		return result;
+	}
+
+}
@@ -9,9 +9,9 @@
 package org.cloudbus.cloudsim.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +29,10 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  * network. Later, nodes in such file are mapped to CloudSim entities. Delay calculated from the
  * BRITE model are added to the messages send through CloudSim. Messages using the old model are
  * converted to the apropriate methods with the correct parameters.
+ * <p>
+ * The state of the simulation is held by a {@link SimulationContext}: the static methods of this
+ * class work on the context bound to the calling thread or, if there is none, on the default
+ * context, so that several simulations can run at the same time in one JVM.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -39,31 +43,8 @@ public class CloudSim {
 	/** The Constant CLOUDSIM_VERSION_STRING. */
 	private static final String CLOUDSIM_VERSION_STRING = "3.0";
 
-	/** The id of CIS entity. */
-	private static int cisId = -1;
-
-	/** The id of CloudSimShutdown entity. */
-	@SuppressWarnings("unused")
-	private static int shutdownId = -1;
-
-	/** The CIS object. */
-	private static CloudInformationService cis = null;
-
 	/** The Constant NOT_FOUND. */
 	private static final int NOT_FOUND = -1;
-
-	/** The trace flag. */
-	@SuppressWarnings("unused")
-	private static boolean traceFlag = false;
-
-	/** The calendar. */
-	private static Calendar calendar = null;
-
-	/** The termination time. */
-	private static double terminateAt = -1;
-
-	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
-	private static double minTimeBetweenEvents = 0.1;
 	
 	/**
 	 * Initialises all the common attributes.
@@ -78,21 +59,22 @@ public class CloudSim {
 	 */
 	private static void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
 			throws Exception {
+		SimulationContext c = SimulationContext.current();
 		initialize();
 		// NOTE: the order for the below 3 lines are important
-		traceFlag = _traceFlag;
+		c.traceFlag = _traceFlag;
 
 		// Set the current Wall clock time as the starting time of
 		// simulation
 		if (_calendar == null) {
-			calendar = Calendar.getInstance();
+			c.calendar = Calendar.getInstance();
 		} else {
-			calendar = _calendar;
+			c.calendar = _calendar;
 		}
 
 		// creates a CloudSimShutdown object
 		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
-		shutdownId = shutdown.getId();
+		c.shutdownId = shutdown.getId();
 	}
 
 	/**
@@ -117,14 +99,15 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag) {
+		SimulationContext c = SimulationContext.current();
 		try {
 			initCommonVariable(cal, traceFlag, numUser);
 
 			// create a GIS object
-			cis = new CloudInformationService("CloudInformationService");
+			c.cis = new CloudInformationService("CloudInformationService");
 
 			// set all the above entity IDs
-			cisId = cis.getId();
+			c.cisId = c.cis.getId();
 		} catch (IllegalArgumentException s) {
 			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
 			Log.printLine(s.getMessage());
@@ -163,7 +146,32 @@ public class CloudSim {
 	    }
 	    
 	    init(numUser, cal, traceFlag);
-	    minTimeBetweenEvents = periodBetweenEvents;
+	    SimulationContext.current().minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Initialises CloudSim parameters using the given future event queue engine. This method should
+	 * be called before creating any entities.
+	 * 
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureQueue the empty queue used to hold the future events, e.g.
+	 *            <tt>FutureQueue.create(FutureQueue.CALENDAR)</tt>
+	 * @see #init(int, Calendar, boolean)
+	 * @see FutureQueue
+	 * @pre numUser >= 0
+	 * @pre futureQueue != null
+	 * @post $none
+	 */
+	public static void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		if (futureQueue == null || futureQueue.size() > 0) {
+			throw new IllegalArgumentException("The future queue must be an empty queue.");
+		}
+
+		SimulationContext.current().futureQueueEngine = futureQueue;
+		init(numUser, cal, traceFlag);
 	}
 	
 	
@@ -183,16 +191,17 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static double startSimulation() throws NullPointerException {
+		SimulationContext c = SimulationContext.current();
 		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
 		try {
 			double clock = run();
 
-			// reset all static variables
-			cisId = -1;
-			shutdownId = -1;
-			cis = null;
-			calendar = null;
-			traceFlag = false;
+			// reset the variables of the context
+			c.cisId = -1;
+			c.shutdownId = -1;
+			c.cis = null;
+			c.calendar = null;
+			c.traceFlag = false;
 
 			return clock;
 		} catch (IllegalArgumentException e) {
@@ -229,7 +238,7 @@ public class CloudSim {
 	 * @return true, if successful; false otherwise.
 	 */
 	public static boolean terminateSimulation() {
-		running = false;
+		SimulationContext.current().running = false;
 		printMessage("Simulation: Reached termination time.");
 		return true;
 	}
@@ -241,10 +250,11 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean terminateSimulation(double time) {
-		if (time <= clock) {
+		SimulationContext c = SimulationContext.current();
+		if (time <= c.clock) {
 			return false;
 		} else {
-			terminateAt = time;
+			c.terminateAt = time;
 		}
 		return true;
 	}
@@ -255,7 +265,7 @@ public class CloudSim {
 	 * @return the minimum time between events.
 	 */
 	public static double getMinTimeBetweenEvents() {
-	    return minTimeBetweenEvents;
+	    return SimulationContext.current().minTimeBetweenEvents;
 	}
 
 	/**
@@ -268,10 +278,11 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static Calendar getSimulationCalendar() {
+		SimulationContext c = SimulationContext.current();
 		// make a new copy
-		Calendar clone = calendar;
-		if (calendar != null) {
-			clone = (Calendar) calendar.clone();
+		Calendar clone = c.calendar;
+		if (c.calendar != null) {
+			clone = (Calendar) c.calendar.clone();
 		}
 
 		return clone;
@@ -285,7 +296,7 @@ public class CloudSim {
 	 * @post $result >= -1
 	 */
 	public static int getCloudInfoServiceEntityId() {
-		return cisId;
+		return SimulationContext.current().cisId;
 	}
 
 	/**
@@ -298,59 +309,35 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static List<Integer> getCloudResourceList() {
-		if (cis == null) {
+		SimulationContext c = SimulationContext.current();
+		if (c.cis == null) {
 			return null;
 		}
 
-		return cis.getList();
+		return c.cis.getList();
 	}
 
 	// ======== SIMULATION METHODS ===============//
 
-	/** The entities. */
-	private static List<SimEntity> entities;
-
-	/** The future event queue. */
-	protected static FutureQueue future;
-
-	/** The deferred event queue. */
-	protected static DeferredQueue deferred;
-
-	/** The simulation clock. */
-	private static double clock;
-
-	/** Flag for checking if the simulation is running. */
-	private static boolean running;
-
-	/** The entities by name. */
-	private static Map<String, SimEntity> entitiesByName;
-
-	// The predicates used in entity wait methods
-	/** The wait predicates. */
-	private static Map<Integer, Predicate> waitPredicates;
-
-	/** The paused. */
-	private static boolean paused = false;
-
-	/** The pause at. */
-	private static long pauseAt = -1;
-
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
-
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
 	 * start of the simulation.
 	 */
 	protected static void initialize() {
+		SimulationContext c = SimulationContext.current();
 		Log.printLine("Initialising...");
-		entities = new ArrayList<SimEntity>();
-		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
-		deferred = new DeferredQueue();
-		waitPredicates = new HashMap<Integer, Predicate>();
-		clock = 0;
-		running = false;
+		c.entities = new ArrayList<SimEntity>();
+		c.entitiesByName = new LinkedHashMap<String, SimEntity>();
+		c.future = c.futureQueueEngine != null ? c.futureQueueEngine : FutureQueue.createDefault();
+		c.futureQueueEngine = null;
+		c.deferred = new DeferredQueue();
+		c.waitPredicates = new HashMap<Integer, Predicate>();
+		c.readyQueue = new int[64];
+		c.readySize = 0;
+		c.queued = new boolean[64];
+		c.runQueue = new int[64];
+		c.clock = 0;
+		c.running = false;
 	}
 
 	// The two standard predicates
@@ -369,7 +356,7 @@ public class CloudSim {
 	 * @return the simulation time
 	 */
 	public static double clock() {
-		return clock;
+		return SimulationContext.current().clock;
 	}
 
 	/**
@@ -378,7 +365,7 @@ public class CloudSim {
 	 * @return The number of entities
 	 */
 	public static int getNumEntities() {
-		return entities.size();
+		return SimulationContext.current().entities.size();
 	}
 
 	/**
@@ -388,7 +375,7 @@ public class CloudSim {
 	 * @return The entity, or if it could not be found
 	 */
 	public static SimEntity getEntity(int id) {
-		return entities.get(id);
+		return SimulationContext.current().entities.get(id);
 	}
 
 	/**
@@ -398,7 +385,7 @@ public class CloudSim {
 	 * @return The entity
 	 */
 	public static SimEntity getEntity(String name) {
-		return entitiesByName.get(name);
+		return SimulationContext.current().entitiesByName.get(name);
 	}
 
 	/**
@@ -408,7 +395,7 @@ public class CloudSim {
 	 * @return The entity's unique id number
 	 */
 	public static int getEntityId(String name) {
-		SimEntity obj = entitiesByName.get(name);
+		SimEntity obj = SimulationContext.current().entitiesByName.get(name);
 		if (obj == null) {
 			return NOT_FOUND;
 		} else {
@@ -458,7 +445,7 @@ public class CloudSim {
 		// create a new list to prevent the user from changing
 		// the list of entities used by Simulation
 		List<SimEntity> list = new LinkedList<SimEntity>();
-		list.addAll(entities);
+		list.addAll(SimulationContext.current().entities);
 		return list;
 	}
 
@@ -471,19 +458,23 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	public static void addEntity(SimEntity e) {
+		SimulationContext c = SimulationContext.current();
 		SimEvent evt;
-		if (running) {
+		if (c.running) {
 			// Post an event to make this entity
-			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
-			future.addEvent(evt);
+			evt = new SimEvent(SimEvent.CREATE, c.clock, 1, 0, 0, e);
+			c.future.addEvent(evt);
 		}
 		if (e.getId() == -1) { // Only add once!
 			
 			//System.out.println("From CloudSim.addEntity(): Adding SimEntity "+e.getName());
-			int id = entities.size();
+			int id = c.entities.size();
 			e.setId(id);
-			entities.add(e);
-			entitiesByName.put(e.getName(), e);
+			c.entities.add(e);
+			c.entitiesByName.put(e.getName(), e);
+			if (id >= c.queued.length) {
+				c.queued = Arrays.copyOf(c.queued, c.queued.length * 2);
+			}
 		}
 	}
 
@@ -509,53 +500,98 @@ public class CloudSim {
 	 * @return true, if successful otherwise
 	 */
 	public static boolean runClockTick() {
+		SimulationContext c = SimulationContext.current();
 		SimEntity ent;
 		boolean queue_empty;
-		
-		int entities_size = entities.size();
 
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
+		// Only the entities woken up by the previous tick can have something to do. They are run in
+		// id order, as if all the entities were scanned.
+		int ready_size = c.readySize;
+		if (ready_size > 0) {
+			if (c.runQueue.length < ready_size) {
+				c.runQueue = new int[c.readyQueue.length];
+			}
+			System.arraycopy(c.readyQueue, 0, c.runQueue, 0, ready_size);
+			c.readySize = 0;
+			Arrays.sort(c.runQueue, 0, ready_size);
+
+			for (int i = 0; i < ready_size; i++) {
+				int id = c.runQueue[i];
+				c.queued[id] = false;
+				ent = c.entities.get(id);
+				if (ent.getState() == SimEntity.RUNNABLE) {
+					ent.run();
+				}
 			}
 		}
 				
 		// If there are more future events then deal with them
-		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
+		if (c.future.size() > 0) {
 			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
-			}
 
-			future.removeAll(toRemove);
+			// Take the first event and all the next events at the same time...
+			int slabSize = pollSlab(c);
+
+			// ...and deliver them in queue order
+			for (int i = 0; i < slabSize; i++) {
+				SimEvent next = c.slab[i];
+				c.slab[i] = null;
+				processEvent(c, next);
+			}
 
 		} else {
 			queue_empty = true;
-			running = false;
+			c.running = false;
 			printMessage("Simulation: No more future events");
 		}
 
 		return queue_empty;
 	}
 
+	/**
+	 * Removes the first event of the future queue, together with all the events that have the same
+	 * time, and stores them in order at the beginning of the slab buffer of the context. The buffer
+	 * only grows when a slab is larger than any previous one, so draining a slab does not allocate.
+	 * 
+	 * @param c the context
+	 * @return the number of events in the slab
+	 */
+	private static int pollSlab(SimulationContext c) {
+		SimEvent first = c.future.poll();
+		double time = first.eventTime();
+		c.slab[0] = first;
+		int count = 1;
+
+		SimEvent next = c.future.peek();
+		while (next != null && next.eventTime() == time) {
+			if (count == c.slab.length) {
+				c.slab = Arrays.copyOf(c.slab, count * 2);
+			}
+			c.slab[count++] = c.future.poll();
+			next = c.future.peek();
+		}
+		return count;
+	}
+
+	/**
+	 * Adds an entity to the ready queue, so that it runs at the next clock tick. This is done when
+	 * an event is delivered to the entity and when it becomes runnable. Entities that are not
+	 * runnable when the tick comes are skipped, and woken up again when their state changes.
+	 * 
+	 * @param id the id of the entity
+	 */
+	static void wakeUp(int id) {
+		SimulationContext c = SimulationContext.current();
+		if (c.queued == null || c.queued[id]) {
+			return;
+		}
+		c.queued[id] = true;
+		if (c.readySize == c.readyQueue.length) {
+			c.readyQueue = Arrays.copyOf(c.readyQueue, c.readySize * 2);
+		}
+		c.readyQueue[c.readySize++] = id;
+	}
+
 	/**
 	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
 	 */
@@ -570,9 +606,10 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, c.clock + delay, src);
+		c.future.addEvent(e);
+		c.entities.get(src).setState(SimEntity.HOLDING);
 	}
 
 	/**
@@ -582,9 +619,10 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, c.clock + delay, src);
+		c.future.addEvent(e);
+		c.entities.get(src).setState(SimEntity.HOLDING);
 	}
 
 	/**
@@ -597,12 +635,48 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void send(int src, int dest, double delay, int tag, Object data) {
+		SimulationContext c = SimulationContext.current();
 		if (delay < 0) {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		SimEvent e = new SimEvent(SimEvent.SEND, c.clock + delay, src, dest, tag, data);
+		c.future.addEvent(e);
+	}
+
+	/**
+	 * Reserves serials for events that an entity schedules one at a time but wants ordered, among
+	 * the events with the same time, as if it had scheduled all of them now.
+	 * 
+	 * @param count the number of serials
+	 * @return the first reserved serial
+	 * @see #sendAt(int, int, double, int, Object, long)
+	 */
+	public static long reserveSerials(long count) {
+		return SimulationContext.current().future.reserveSerials(count);
+	}
+
+	/**
+	 * Used to send an event from one entity to another at a given time rather than after a delay,
+	 * so that the time of the event is exactly the one given, with a serial obtained from
+	 * {@link #reserveSerials(long)}.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param time the time of the event
+	 * @param tag the tag
+	 * @param data the data
+	 * @param serial the reserved serial
+	 */
+	public static void sendAt(int src, int dest, double time, int tag, Object data, long serial) {
+		SimulationContext c = SimulationContext.current();
+		if (time < c.clock) {
+			throw new IllegalArgumentException("Send time can't be in the past.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, time, src, dest, tag, data);
+		e.reserveSerial(serial);
+		c.future.addEvent(e);
 	}
 
 	/**
@@ -615,12 +689,13 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void sendFirst(int src, int dest, double delay, int tag, Object data) {
+		SimulationContext c = SimulationContext.current();
 		if (delay < 0) {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+		SimEvent e = new SimEvent(SimEvent.SEND, c.clock + delay, src, dest, tag, data);
+		c.future.addEventFirst(e);
 	}
 
 	/**
@@ -632,10 +707,11 @@ public class CloudSim {
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
-		entities.get(src).setState(SimEntity.WAITING);
+		SimulationContext c = SimulationContext.current();
+		c.entities.get(src).setState(SimEntity.WAITING);
 		if (p != SIM_ANY) {
 			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
+			c.waitPredicates.put(src, p);
 		}
 	}
 
@@ -647,16 +723,8 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		SimulationContext c = SimulationContext.current();
+		return c.deferred.count(d, p);
 	}
 
 	/**
@@ -664,19 +732,11 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if none matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		SimulationContext c = SimulationContext.current();
+		return c.deferred.select(src, p);
 	}
 
 	/**
@@ -684,18 +744,11 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if none matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		SimulationContext c = SimulationContext.current();
+		return c.deferred.findFirst(src, p);
 	}
 
 	/**
@@ -706,17 +759,8 @@ public class CloudSim {
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
-		}
-
-		return ev;
+		SimulationContext c = SimulationContext.current();
+		return c.future.cancel(src, p);
 	}
 
 	/**
@@ -728,16 +772,8 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
+		SimulationContext c = SimulationContext.current();
+		return c.future.cancelAll(src, p);
 	}
 
 	//
@@ -747,16 +783,17 @@ public class CloudSim {
 	/**
 	 * Processes an event.
 	 * 
+	 * @param c the context
 	 * @param e the e
 	 */
-	private static void processEvent(SimEvent e) {
+	private static void processEvent(SimulationContext c, SimEvent e) {
 		int dest, src;
 		SimEntity dest_ent;
 		// Update the system's clock
-		if (e.eventTime() < clock) {
+		if (e.eventTime() < c.clock) {
 			throw new IllegalArgumentException("Past event detected.");
 		}
-		clock = e.eventTime();
+		c.clock = e.eventTime();
 
 		// Ok now process it
 		switch (e.getType()) {
@@ -775,19 +812,21 @@ public class CloudSim {
 					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
 				} else {
 					int tag = e.getTag();
-					dest_ent = entities.get(dest);
+					dest_ent = c.entities.get(dest);
 					if (dest_ent.getState() == SimEntity.WAITING) {
 						Integer destObj = Integer.valueOf(dest);
-						Predicate p = waitPredicates.get(destObj);
+						Predicate p = c.waitPredicates.get(destObj);
 						if ((p == null) || (tag == 9999) || (p.match(e))) {
-							dest_ent.setEventBuffer((SimEvent) e.clone());
+							// the event has already left the future queue, so it is handed over as is
+							dest_ent.setEventBuffer(e);
 							dest_ent.setState(SimEntity.RUNNABLE);
-							waitPredicates.remove(destObj);
+							c.waitPredicates.remove(destObj);
 						} else {
-							deferred.addEvent(e);
+							c.deferred.addEvent(e);
 						}
 					} else {
-						deferred.addEvent(e);
+						c.deferred.addEvent(e);
+						wakeUp(dest);
 					}
 				}
 				break;
@@ -797,7 +836,7 @@ public class CloudSim {
 				if (src < 0) {
 					throw new IllegalArgumentException("Null entity holding.");
 				} else {
-					entities.get(src).setState(SimEntity.RUNNABLE);
+					c.entities.get(src).setState(SimEntity.RUNNABLE);
 				}
 				break;
 
@@ -811,9 +850,10 @@ public class CloudSim {
 	 * simulations.
 	 */
 	public static void runStart() {
-		running = true;
+		SimulationContext c = SimulationContext.current();
+		c.running = true;
 		// Start all the entities
-		for (SimEntity ent : entities) {
+		for (SimEntity ent : c.entities) {
 			//System.out.println("From CloudSim.runStart(): Starting SimEntity "+ent.getName());
 			ent.startEntity();
 		}
@@ -828,7 +868,7 @@ public class CloudSim {
 	 * @return if the simulation is still running, otherwise
 	 */
 	public static boolean running() {
-		return running;
+		return SimulationContext.current().running;
 	}
 
 	/**
@@ -837,8 +877,9 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation() {
-		paused = true;
-		return paused;
+		SimulationContext c = SimulationContext.current();
+		c.paused = true;
+		return c.paused;
 	}
 
 	/**
@@ -848,10 +889,11 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation(long time) {
-		if (time <= clock) {
+		SimulationContext c = SimulationContext.current();
+		if (time <= c.clock) {
 			return false;
 		} else {
-			pauseAt = time;
+			c.pauseAt = time;
 		}
 		return true;
 	}
@@ -862,13 +904,14 @@ public class CloudSim {
 	 * @return if the simulation has been restarted or or otherwise.
 	 */
 	public static boolean resumeSimulation() {
-		paused = false;
+		SimulationContext c = SimulationContext.current();
+		c.paused = false;
 
-		if (pauseAt <= clock) {
-			pauseAt = -1;
+		if (c.pauseAt <= c.clock) {
+			c.pauseAt = -1;
 		}
 
-		return !paused;
+		return !c.paused;
 	}
 
 	/**
@@ -878,29 +921,29 @@ public class CloudSim {
 	 * @return the double last clock value
 	 */
 	public static double run() {
-		if (!running) {
+		SimulationContext c = SimulationContext.current();
+		if (!c.running) {
 			runStart();
 		}
 		while (true) {
-			if (runClockTick() || abruptTerminate) {
+			if (runClockTick() || c.abruptTerminate) {
 				break;
 			}
 
 			// this block allows termination of simulation at a specific time
-			if (terminateAt > 0.0 && clock >= terminateAt) {
+			if (c.terminateAt > 0.0 && c.clock >= c.terminateAt) {
 				terminateSimulation();
-				clock = terminateAt;
+				c.clock = c.terminateAt;
 				break;
 			}
 
-			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+			if (c.pauseAt != -1
+					&& ((c.future.size() > 0 && c.clock <= c.pauseAt && c.pauseAt <= c.future.peek().eventTime()) || c.future.size() == 0 && c.pauseAt <= c.clock)) {
 				pauseSimulation();
-				clock = pauseAt;
+				c.clock = c.pauseAt;
 			}
 
-			while (paused) {
+			while (c.paused) {
 				try {
 					Thread.sleep(100);
 				} catch (InterruptedException e) {
@@ -922,39 +965,43 @@ public class CloudSim {
 	 * in user simulations.
 	 */
 	public static void finishSimulation() {
+		SimulationContext c = SimulationContext.current();
 		// Allow all entities to exit their body method
-		if (!abruptTerminate) {
-			for (SimEntity ent : entities) {
+		if (!c.abruptTerminate) {
+			for (SimEntity ent : c.entities) {
 				if (ent.getState() != SimEntity.FINISHED) {
 					ent.run();
 				}
 			}
 		}
 
-		for (SimEntity ent : entities) {
+		for (SimEntity ent : c.entities) {
 			ent.shutdownEntity();
 		}
 
-		// reset all static variables
-		// Private data members
-		entities = null;
-		entitiesByName = null;
-		future = null;
-		deferred = null;
-		clock = 0L;
-		running = false;
-
-		waitPredicates = null;
-		paused = false;
-		pauseAt = -1;
-		abruptTerminate = false;
+		// reset the variables of the context
+		c.entities = null;
+		c.entitiesByName = null;
+		c.future = null;
+		c.deferred = null;
+		c.clock = 0L;
+		c.running = false;
+
+		c.waitPredicates = null;
+		c.readyQueue = null;
+		c.readySize = 0;
+		c.queued = null;
+		c.runQueue = null;
+		c.paused = false;
+		c.pauseAt = -1;
+		c.abruptTerminate = false;
 	}
 
 	/**
 	 * Abruptally terminate.
 	 */
 	public static void abruptallyTerminate() {
-		abruptTerminate = true;
+		SimulationContext.current().abruptTerminate = true;
 	}
 
 	/**
@@ -972,7 +1019,7 @@ public class CloudSim {
 	 * @return true, if is paused
 	 */
 	public static boolean isPaused() {
-		return paused;
+		return SimulationContext.current().paused;
 	}
 
 }
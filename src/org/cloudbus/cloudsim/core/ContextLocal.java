@@ -0,0 +1,85 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A value held by each {@link SimulationContext}, as a {@link ThreadLocal} is held by each thread.
+ * This is how the state of a simulation that would otherwise be static, such as id generators,
+ * monitors and indexes, is kept apart from the state of the other simulations of the JVM:
+ *
+ * <pre>
+ * private static final ContextLocal&lt;Monitor&gt; MONITOR = new ContextLocal&lt;Monitor&gt;() {
+ * 	protected Monitor initialValue() {
+ * 		return new Monitor();
+ * 	}
+ * };
+ * </pre>
+ *
+ * @param <T> the type of the value
+ */
+public class ContextLocal<T> {
+
+	/** The index of the next context local created. */
+	private static final AtomicInteger nextIndex = new AtomicInteger();
+
+	/** The index of the value in the contexts. */
+	final int index = nextIndex.getAndIncrement();
+
+	/**
+	 * Creates the value of a context, when it is first used. Returns <tt>null</tt> by default.
+	 *
+	 * @return the initial value
+	 */
+	protected T initialValue() {
+		return null;
+	}
+
+	/**
+	 * Creates the value of a given context, when it is first used. By default, the value given by
+	 * {@link #initialValue()}; override this method when the value depends on the context, e.g. to
+	 * keep a static field as the value of the default context.
+	 *
+	 * @param context the context
+	 * @return the initial value
+	 */
+	protected T initialValue(SimulationContext context) {
+		return initialValue();
+	}
+
+	/**
+	 * Gets the value of the current context.
+	 *
+	 * @return the value
+	 */
+	public T get() {
+		return SimulationContext.current().getLocal(this);
+	}
+
+	/**
+	 * Gets the value of a given context.
+	 *
+	 * @param context the context
+	 * @return the value
+	 */
+	public T get(SimulationContext context) {
+		return context.getLocal(this);
+	}
+
+	/**
+	 * Sets the value of the current context.
+	 *
+	 * @param value the value, or <tt>null</tt> to have it created again on next use
+	 */
+	public void set(T value) {
+		SimulationContext.current().setLocal(this, value);
+	}
+
+}
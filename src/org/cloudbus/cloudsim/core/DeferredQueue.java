@@ -8,81 +8,322 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+import org.cloudbus.cloudsim.core.predicates.PredicateTags;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link CloudSim}. Each destination entity
+ * has its own mailbox, kept in an array indexed by the entity id, so looking for the events of an
+ * entity does not visit the events waiting for the other ones. Inside a mailbox, events are kept in
+ * time order and in arrival order for the same time, exactly as in the single list CloudSim used
+ * before. Each mailbox also counts its events per tag, so that an entity can tell in O(1) that no
+ * event with a given tag is waiting.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
- * @see Simulation
+ * @see CloudSim
  * @see SimEvent
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The mailboxes, by destination id. */
+	private Mailbox[] mailboxes = new Mailbox[64];
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The total number of events. */
+	private int size = 0;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		// The event has to be inserted as the last of all events
-		// with the same event_time(). Yes, this matters.
-		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
-			list.add(newEvent);
-			maxTime = eventTime;
-			return;
-		}
-
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
+		mailbox(newEvent.getDestination()).add(newEvent);
+		size++;
+	}
+
+	/**
+	 * Counts the events waiting for an entity that match a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the number of matching events
+	 */
+	public int count(int dest, Predicate p) {
+		Mailbox mailbox = find(dest);
+		if (mailbox == null || mailbox.size() == 0) {
+			return 0;
+		}
+		if (p instanceof PredicateAny) {
+			return mailbox.size();
+		}
+		int[] tags = tagsOf(p);
+		if (tags != null) {
+			return mailbox.countTags(tags);
+		}
+		int count = 0;
+		for (int i = 0; i < mailbox.size(); i++) {
+			if (p.match(mailbox.get(i))) {
+				count++;
 			}
 		}
+		return count;
+	}
 
-		list.add(newEvent);
+	/**
+	 * Finds the first event waiting for an entity that matches a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if none matches
+	 */
+	public SimEvent findFirst(int dest, Predicate p) {
+		Mailbox mailbox = find(dest);
+		int i = mailbox == null ? -1 : mailbox.indexOf(p, tagsOf(p));
+		return i < 0 ? null : mailbox.get(i);
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Removes the first event waiting for an entity that matches a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if none matches
+	 */
+	public SimEvent select(int dest, Predicate p) {
+		Mailbox mailbox = find(dest);
+		int i = mailbox == null ? -1 : mailbox.indexOf(p, tagsOf(p));
+		if (i < 0) {
+			return null;
+		}
+		size--;
+		return mailbox.remove(i);
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue, mailbox by mailbox.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int mailbox = 0;
+
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (mailbox < mailboxes.length
+						&& (mailboxes[mailbox] == null || position >= mailboxes[mailbox].size())) {
+					mailbox++;
+					position = 0;
+				}
+				return mailbox < mailboxes.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return mailboxes[mailbox].get(position++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove");
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		mailboxes = new Mailbox[64];
+		size = 0;
+	}
+
+	private Mailbox find(int dest) {
+		return dest >= 0 && dest < mailboxes.length ? mailboxes[dest] : null;
+	}
+
+	private Mailbox mailbox(int dest) {
+		if (dest >= mailboxes.length) {
+			mailboxes = Arrays.copyOf(mailboxes, Math.max(mailboxes.length * 2, dest + 1));
+		}
+		if (mailboxes[dest] == null) {
+			mailboxes[dest] = new Mailbox();
+		}
+		return mailboxes[dest];
+	}
+
+	/**
+	 * Gets the tags selected by a predicate, if it selects events by tag only.
+	 *
+	 * @param p the predicate
+	 * @return the tags, or <tt>null</tt> if the predicate is not a plain {@link PredicateType}
+	 */
+	private static int[] tagsOf(Predicate p) {
+		return PredicateTags.of(p);
+	}
+
+	/**
+	 * The events waiting for one entity, in a circular array, with their number per tag.
+	 */
+	private static final class Mailbox {
+
+		/** The events; position i of the mailbox is at (head + i) modulo the capacity. */
+		private SimEvent[] events = new SimEvent[8];
+
+		private int head = 0;
+
+		private int size = 0;
+
+		/** The tags of the events that have been waiting, and how many of each are waiting. */
+		private int[] tags = new int[4];
+
+		private int[] tagCounts = new int[4];
+
+		private int tagSize = 0;
+
+		int size() {
+			return size;
+		}
+
+		SimEvent get(int i) {
+			return events[(head + i) & (events.length - 1)];
+		}
+
+		private void set(int i, SimEvent event) {
+			events[(head + i) & (events.length - 1)] = event;
+		}
+
+		void add(SimEvent event) {
+			if (size == events.length) {
+				SimEvent[] grown = new SimEvent[size * 2];
+				for (int i = 0; i < size; i++) {
+					grown[i] = get(i);
+				}
+				events = grown;
+				head = 0;
+			}
+			// The event has to be inserted as the last of all events
+			// with the same event_time(). Yes, this matters.
+			double eventTime = event.eventTime();
+			int position = size;
+			while (position > 0 && get(position - 1).eventTime() > eventTime) {
+				set(position, get(position - 1));
+				position--;
+			}
+			set(position, event);
+			size++;
+			addTag(event.getTag(), 1);
+		}
+
+		SimEvent remove(int i) {
+			SimEvent event = get(i);
+			if (i == 0) {
+				set(0, null);
+				head = (head + 1) & (events.length - 1);
+			} else {
+				for (int j = i; j < size - 1; j++) {
+					set(j, get(j + 1));
+				}
+				set(size - 1, null);
+			}
+			size--;
+			addTag(event.getTag(), -1);
+			return event;
+		}
+
+		/**
+		 * Counts the events having any of the given tags.
+		 *
+		 * @param tags the tags, possibly repeated
+		 * @return the number of events
+		 */
+		int countTags(int[] tags) {
+			int count = 0;
+			for (int i = 0; i < tags.length; i++) {
+				if (!contains(tags, i, tags[i])) {
+					count += countTag(tags[i]);
+				}
+			}
+			return count;
+		}
+
+		private static boolean contains(int[] tags, int length, int tag) {
+			for (int i = 0; i < length; i++) {
+				if (tags[i] == tag) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int countTag(int tag) {
+			for (int i = 0; i < tagSize; i++) {
+				if (tags[i] == tag) {
+					return tagCounts[i];
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Finds the first event matching a predicate.
+		 *
+		 * @param p the predicate
+		 * @param predicateTags the tags selected by the predicate, or <tt>null</tt>
+		 * @return the position of the event, or -1 if none matches
+		 */
+		int indexOf(Predicate p, int[] predicateTags) {
+			if (size == 0) {
+				return -1;
+			}
+			if (predicateTags != null && countTags(predicateTags) == 0) {
+				return -1;
+			}
+			for (int i = 0; i < size; i++) {
+				if (p.match(get(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void addTag(int tag, int delta) {
+			for (int i = 0; i < tagSize; i++) {
+				if (tags[i] == tag) {
+					tagCounts[i] += delta;
+					return;
+				}
+			}
+			if (tagSize == tags.length) {
+				tags = Arrays.copyOf(tags, tagSize * 2);
+				tagCounts = Arrays.copyOf(tagCounts, tagSize * 2);
+			}
+			tags[tagSize] = tag;
+			tagCounts[tagSize++] = delta;
+		}
 	}
 
-}
\ No newline at end of file
+}
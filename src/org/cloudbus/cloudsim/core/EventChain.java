@@ -0,0 +1,63 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+/**
+ * The pending events sent by one entity with one tag, linked through the events themselves in the
+ * order they were scheduled. Linking and unlinking an event costs O(1) and allocates nothing.
+ *
+ * @see SourceTagIndex
+ */
+final class EventChain {
+
+	/** The tag of the events of the chain. */
+	final int tag;
+
+	/** The first and last events of the chain. */
+	SimEvent head, tail;
+
+	EventChain(int tag) {
+		this.tag = tag;
+	}
+
+	boolean isEmpty() {
+		return head == null;
+	}
+
+	void append(SimEvent event) {
+		event.setChain(this);
+		event.setChainPrev(tail);
+		event.setChainNext(null);
+		if (tail == null) {
+			head = event;
+		} else {
+			tail.setChainNext(event);
+		}
+		tail = event;
+	}
+
+	void unlink(SimEvent event) {
+		SimEvent prev = event.getChainPrev();
+		SimEvent next = event.getChainNext();
+		if (prev == null) {
+			head = next;
+		} else {
+			prev.setChainNext(next);
+		}
+		if (next == null) {
+			tail = prev;
+		} else {
+			next.setChainPrev(prev);
+		}
+		event.setChain(null);
+		event.setChainPrev(null);
+		event.setChainNext(null);
+	}
+
+}
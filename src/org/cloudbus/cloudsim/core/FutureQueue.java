@@ -10,90 +10,486 @@ package org.cloudbus.cloudsim.core;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateTags;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
- * 
+ * This class defines the future event queue used by {@link CloudSim}. Events are always delivered
+ * in (time, serial) order, where the serial is assigned by the queue when the event is added, so
+ * events with the same time are delivered in the order they were scheduled. Concrete engines only
+ * decide how that order is maintained:
+ * <ul>
+ * <li>{@link SortedSetFutureQueue} - the original red-black tree;
+ * <li>{@link HeapFutureQueue} - an implicit binary or 4-ary heap;
+ * <li>{@link CalendarFutureQueue} - a calendar queue with O(1) expected hold time;
+ * <li>{@link LadderFutureQueue} - a ladder queue, robust to skewed time distributions.
+ * </ul>
+ * <p>
+ * Removed and cancelled events are only flagged, and dropped when they reach the head of the queue.
+ * Cancelling all the events an entity sent with a given tag, as done by every datacenter when it
+ * updates its cloudlet processing, uses an index of the pending events by (source, tag) instead of
+ * scanning the whole queue.
+ * <p>
+ * The engine is chosen with {@link CloudSim#init(int, java.util.Calendar, boolean, FutureQueue)} or,
+ * when the plain <tt>init</tt> methods are used, with the <tt>cloudsim.futurequeue</tt> system
+ * property (see {@link #create(String)}).
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
- * @see Simulation
- * @see java.util.TreeSet
+ * @see CloudSim
  */
-public class FutureQueue {
+public abstract class FutureQueue {
+
+	/** The name of the system property used to select the default engine. */
+	public static final String ENGINE_PROPERTY = "cloudsim.futurequeue";
+
+	/** Name of the {@link SortedSetFutureQueue} engine. */
+	public static final String TREE_SET = "treeset";
+
+	/** Name of the binary {@link HeapFutureQueue} engine. */
+	public static final String BINARY_HEAP = "binaryheap";
+
+	/** Name of the 4-ary {@link HeapFutureQueue} engine. */
+	public static final String QUATERNARY_HEAP = "4aryheap";
 
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	/** Name of the {@link CalendarFutureQueue} engine. */
+	public static final String CALENDAR = "calendar";
+
+	/** Name of the {@link LadderFutureQueue} engine. */
+	public static final String LADDER = "ladder";
+
+	/** The names of all the available engines. */
+	public static final String[] ENGINES = { TREE_SET, BINARY_HEAP, QUATERNARY_HEAP, CALENDAR, LADDER };
+
+	/** Purges cancelled events once there are this many and they outnumber the live ones. */
+	private static final int PURGE_THRESHOLD = 1024;
 
 	/** The serial. */
 	private long serial = 0;
 
+	/** The serial given to events added to the head of the queue. */
+	private long firstSerial = Long.MIN_VALUE;
+
+	/** The index of the pending events by (source, tag). */
+	private final SourceTagIndex index = new SourceTagIndex();
+
+	/** Whether {@link #cancel(int, Predicate)} and {@link #cancelAll(int, Predicate)} use the index. */
+	private boolean indexed = true;
+
+	/** The number of cancelled events still held by the engine. */
+	private int cancelledCount = 0;
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		if (!newEvent.isSerialReserved()) {
+			newEvent.setSerial(serial++);
+		}
+		enqueue(newEvent);
+	}
+
+	/**
+	 * Reserves serials for events to be added later, which will be placed among the events with the
+	 * same time as if they had been added now.
+	 *
+	 * @param count the number of serials
+	 * @return the first reserved serial
+	 */
+	public long reserveSerials(long count) {
+		long first = serial;
+		serial += count;
+		return first;
 	}
 
 	/**
-	 * Add a new event to the head of the queue.
-	 * 
+	 * Add a new event to the head of the queue. Among the events with the same time, it is placed
+	 * after the events previously added to the head and before all the other ones.
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEventFirst(SimEvent newEvent) {
-		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		newEvent.setSerial(firstSerial++);
+		enqueue(newEvent);
+	}
+
+	private void enqueue(SimEvent event) {
+		event.setQueued(true);
+		event.setCancelled(false);
+		index.add(event);
+		insert(event);
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent peek() {
+		SimEvent event = first();
+		while (event != null && event.isCancelled()) {
+			// a cancelled event reached the head: it can be dropped cheaply now
+			removeFirst();
+			event.setQueued(false);
+			cancelledCount--;
+			event = first();
+		}
+		return event;
 	}
 
 	/**
-	 * Returns an iterator to the queue.
-	 * 
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent poll() {
+		SimEvent event = peek();
+		if (event != null) {
+			removeFirst();
+			event.setQueued(false);
+			index.unlink(event);
+		}
+		return event;
+	}
+
+	/**
+	 * Returns an iterator to the queue. Only {@link SortedSetFutureQueue} iterates the events in
+	 * time order. Removing an event through the iterator cancels it.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
+		final Iterator<SimEvent> events = events();
+		return new Iterator<SimEvent>() {
+
+			private SimEvent next = advance();
+
+			private SimEvent last = null;
+
+			private SimEvent advance() {
+				while (events.hasNext()) {
+					SimEvent event = events.next();
+					if (!event.isCancelled()) {
+						return event;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = advance();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null || last.isCancelled()) {
+					throw new IllegalStateException();
+				}
+				// cancelling only flags the event, so the engine is not modified while iterating
+				markCancelled(last);
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the size
 	 */
 	public int size() {
-		return sortedSet.size();
+		return count() - cancelledCount;
 	}
 
 	/**
-	 * Removes the event from the queue.
-	 * 
+	 * Removes the event from the queue. The event is flagged as cancelled and discarded when it
+	 * reaches the head of the queue, which costs O(1) whatever the engine.
+	 *
 	 * @param event the event
 	 * @return true, if successful
 	 */
 	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
+		if (!event.isQueued() || event.isCancelled()) {
+			return false;
+		}
+		markCancelled(event);
+		purgeIfNeeded();
+		return true;
 	}
 
 	/**
 	 * Removes all the events from the queue.
-	 * 
+	 *
 	 * @param events the events
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean changed = false;
+		for (SimEvent event : events) {
+			changed |= remove(event);
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes the first event sent by an entity that matches a predicate.
+	 *
+	 * @param src the id of the entity that sent the event
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if none matches
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		SimEvent earliest = null;
+		if (!indexed || src < 0) {
+			Iterator<SimEvent> it = iterator();
+			while (it.hasNext()) {
+				earliest = earliest(earliest, it.next(), src, p);
+			}
+		} else {
+			int[] tags = tagsOf(p);
+			if (tags != null) {
+				for (int tag : tags) {
+					EventChain chain = index.find(src, tag);
+					for (SimEvent e = chain == null ? null : chain.head; e != null; e = e.getChainNext()) {
+						earliest = earliest(earliest, e, src, p);
+					}
+				}
+			} else {
+				for (int i = 0; i < index.chainCount(src); i++) {
+					for (SimEvent e = index.get(src, i).head; e != null; e = e.getChainNext()) {
+						earliest = earliest(earliest, e, src, p);
+					}
+				}
+			}
+		}
+		if (earliest != null) {
+			remove(earliest);
+		}
+		return earliest;
+	}
+
+	/**
+	 * Removes all the events sent by an entity that match a predicate. With the index, cancelling
+	 * the events selected by a {@link PredicateType} costs O(1) per cancelled event, and other
+	 * predicates only visit the events sent by <tt>src</tt>.
+	 *
+	 * @param src the id of the entity that sent the events
+	 * @param p the predicate
+	 * @return true, if at least one event was removed
+	 */
+	public boolean cancelAll(int src, Predicate p) {
+		int previousCount = cancelledCount;
+		if (!indexed || src < 0) {
+			Iterator<SimEvent> it = iterator();
+			while (it.hasNext()) {
+				SimEvent e = it.next();
+				if (e.getSource() == src && p.match(e)) {
+					markCancelled(e);
+				}
+			}
+		} else {
+			int[] tags = tagsOf(p);
+			if (tags != null) {
+				for (int tag : tags) {
+					EventChain chain = index.find(src, tag);
+					while (chain != null && !chain.isEmpty()) {
+						markCancelled(chain.head);
+					}
+				}
+			} else {
+				for (int i = 0; i < index.chainCount(src); i++) {
+					SimEvent e = index.get(src, i).head;
+					while (e != null) {
+						SimEvent next = e.getChainNext();
+						if (p.match(e)) {
+							markCancelled(e);
+						}
+						e = next;
+					}
+				}
+			}
+		}
+		boolean changed = cancelledCount > previousCount;
+		purgeIfNeeded();
+		return changed;
+	}
+
+	/**
+	 * Sets whether cancellations use the (source, tag) index, or scan the whole queue as CloudSim
+	 * originally did. The index is used by default.
+	 *
+	 * @param indexed true to use the index
+	 */
+	public void setIndexed(boolean indexed) {
+		this.indexed = indexed;
+	}
+
+	/**
+	 * Checks whether cancellations use the (source, tag) index.
+	 *
+	 * @return true, if the index is used
+	 */
+	public boolean isIndexed() {
+		return indexed;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		sortedSet.clear();
+		Iterator<SimEvent> it = events();
+		while (it.hasNext()) {
+			SimEvent event = it.next();
+			event.setQueued(false);
+			index.unlink(event);
+		}
+		removeAllEvents();
+		index.clear();
+		cancelledCount = 0;
+	}
+
+	private void markCancelled(SimEvent event) {
+		event.setCancelled(true);
+		index.unlink(event);
+		cancelledCount++;
+	}
+
+	/**
+	 * Physically removes the cancelled events once they make up most of the engine, so that events
+	 * cancelled far in the future do not accumulate.
+	 */
+	private void purgeIfNeeded() {
+		if (cancelledCount < PURGE_THRESHOLD || cancelledCount * 2 < count()) {
+			return;
+		}
+		SimEvent[] cancelled = new SimEvent[cancelledCount];
+		int n = 0;
+		Iterator<SimEvent> it = events();
+		while (it.hasNext()) {
+			SimEvent event = it.next();
+			if (event.isCancelled()) {
+				cancelled[n++] = event;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			delete(cancelled[i]);
+			cancelled[i].setQueued(false);
+		}
+		cancelledCount -= n;
+	}
+
+	private static SimEvent earliest(SimEvent earliest, SimEvent e, int src, Predicate p) {
+		if (e.getSource() == src && p.match(e) && (earliest == null || e.compareTo(earliest) < 0)) {
+			return e;
+		}
+		return earliest;
+	}
+
+	/**
+	 * Gets the tags selected by a predicate, if it selects events by tag only.
+	 *
+	 * @param p the predicate
+	 * @return the tags, or <tt>null</tt> if the predicate is not a plain {@link PredicateType}
+	 */
+	private static int[] tagsOf(Predicate p) {
+		return PredicateTags.of(p);
+	}
+
+	// Engine operations. Engines hold cancelled events like any other event.
+
+	/**
+	 * Inserts an event whose serial has already been set.
+	 *
+	 * @param event the event
+	 */
+	protected abstract void insert(SimEvent event);
+
+	/**
+	 * Returns the first event held by the engine.
+	 *
+	 * @return the first event, or <tt>null</tt> if the engine is empty
+	 */
+	protected abstract SimEvent first();
+
+	/**
+	 * Removes the first event held by the engine.
+	 */
+	protected abstract void removeFirst();
+
+	/**
+	 * Removes an event held by the engine.
+	 *
+	 * @param event the event
+	 * @return true, if the event was found
+	 */
+	protected abstract boolean delete(SimEvent event);
+
+	/**
+	 * Returns an iterator over the events held by the engine, in any order.
+	 *
+	 * @return the iterator
+	 */
+	protected abstract Iterator<SimEvent> events();
+
+	/**
+	 * Returns the number of events held by the engine.
+	 *
+	 * @return the number of events
+	 */
+	protected abstract int count();
+
+	/**
+	 * Removes all the events held by the engine.
+	 */
+	protected abstract void removeAllEvents();
+
+	/**
+	 * Creates the engine with the given name.
+	 *
+	 * @param name one of {@link #ENGINES}, case insensitive
+	 * @return the new future queue
+	 * @throws IllegalArgumentException if there is no engine with that name
+	 */
+	public static FutureQueue create(String name) {
+		String engine = name.trim().toLowerCase();
+		if (engine.equals(TREE_SET)) {
+			return new SortedSetFutureQueue();
+		} else if (engine.equals(BINARY_HEAP)) {
+			return new HeapFutureQueue(2);
+		} else if (engine.equals(QUATERNARY_HEAP)) {
+			return new HeapFutureQueue(4);
+		} else if (engine.equals(CALENDAR)) {
+			return new CalendarFutureQueue();
+		} else if (engine.equals(LADDER)) {
+			return new LadderFutureQueue();
+		}
+		throw new IllegalArgumentException("Unknown future queue engine: " + name);
+	}
+
+	/**
+	 * Creates the engine named by the <tt>cloudsim.futurequeue</tt> system property, or a 4-ary
+	 * heap if the property is not set.
+	 *
+	 * @return the new future queue
+	 */
+	public static FutureQueue createDefault() {
+		return create(System.getProperty(ENGINE_PROPERTY, QUATERNARY_HEAP));
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,190 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue backed by an implicit d-ary heap stored in an array. Adding and removing
+ * events costs O(log n) without allocating, and each event keeps its position in the heap so that
+ * arbitrary events can be cancelled in O(log n) as well. A 4-ary heap is shallower than a binary
+ * one and its children share cache lines, which usually makes it the faster of the two.
+ *
+ * @see FutureQueue
+ */
+public class HeapFutureQueue extends FutureQueue {
+
+	/** The initial capacity of the heap. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The number of children of each node. */
+	private final int arity;
+
+	/** The heap. */
+	private SimEvent[] heap = new SimEvent[INITIAL_CAPACITY];
+
+	/** The number of events in the heap. */
+	private int size = 0;
+
+	/**
+	 * Creates a new heap.
+	 *
+	 * @param arity the number of children of each node, at least 2
+	 */
+	public HeapFutureQueue(int arity) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("The heap arity must be at least 2, but is: " + arity);
+		}
+		this.arity = arity;
+	}
+
+	@Override
+	protected void insert(SimEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		siftUp(size++, event);
+	}
+
+	@Override
+	protected SimEvent first() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	protected void removeFirst() {
+		if (size > 0) {
+			removeAt(0);
+		}
+	}
+
+	@Override
+	protected boolean delete(SimEvent event) {
+		int index = event.getQueueIndex();
+		if (index < 0 || index >= size || heap[index] != event) {
+			return false;
+		}
+		removeAt(index);
+		return true;
+	}
+
+	@Override
+	protected Iterator<SimEvent> events() {
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return heap[next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove");
+			}
+		};
+	}
+
+	@Override
+	protected int count() {
+		return size;
+	}
+
+	@Override
+	protected void removeAllEvents() {
+		for (int i = 0; i < size; i++) {
+			heap[i].setQueueIndex(-1);
+			heap[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Removes the event at the given position of the heap.
+	 *
+	 * @param index the position
+	 */
+	private void removeAt(int index) {
+		SimEvent removed = heap[index];
+		removed.setQueueIndex(-1);
+		SimEvent last = heap[--size];
+		heap[size] = null;
+		if (index == size) {
+			return;
+		}
+		siftDown(index, last);
+		if (heap[index] == last) {
+			siftUp(index, last);
+		}
+	}
+
+	/**
+	 * Moves an event up from the given position until its parent precedes it.
+	 *
+	 * @param index the starting position
+	 * @param event the event to place
+	 */
+	private void siftUp(int index, SimEvent event) {
+		while (index > 0) {
+			int parent = (index - 1) / arity;
+			SimEvent parentEvent = heap[parent];
+			if (parentEvent.compareTo(event) <= 0) {
+				break;
+			}
+			place(index, parentEvent);
+			index = parent;
+		}
+		place(index, event);
+	}
+
+	/**
+	 * Moves an event down from the given position until it precedes all its children.
+	 *
+	 * @param index the starting position
+	 * @param event the event to place
+	 */
+	private void siftDown(int index, SimEvent event) {
+		while (true) {
+			int firstChild = index * arity + 1;
+			if (firstChild >= size) {
+				break;
+			}
+			int lastChild = Math.min(firstChild + arity, size);
+			int smallest = firstChild;
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (heap[child].compareTo(heap[smallest]) < 0) {
+					smallest = child;
+				}
+			}
+			if (event.compareTo(heap[smallest]) <= 0) {
+				break;
+			}
+			place(index, heap[smallest]);
+			index = smallest;
+		}
+		place(index, event);
+	}
+
+	private void place(int index, SimEvent event) {
+		heap[index] = event;
+		event.setQueueIndex(index);
+	}
+
+}
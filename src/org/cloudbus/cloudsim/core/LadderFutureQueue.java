@@ -0,0 +1,307 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A future event queue implementing the ladder queue of Tang, Goh and Thng (ACM TOMACS 15(3),
+ * 2005). Far-future events are appended unsorted to the <i>top</i>; when the events close to the
+ * current time run out, the top is spread over the buckets of a <i>rung</i>, and crowded buckets
+ * are spread again over finer rungs, until a bucket is small enough to be sorted into the
+ * <i>bottom</i> list, from which events are dequeued. Unlike the calendar queue it does not need to
+ * estimate a bucket width up front, so it copes well with skewed time distributions.
+ * <p>
+ * Every structure covers a range of times that does not overlap the others, and events with the
+ * same time always end up in the same bucket, so the (time, serial) order of {@link FutureQueue} is
+ * preserved exactly.
+ *
+ * @see FutureQueue
+ */
+public class LadderFutureQueue extends FutureQueue {
+
+	/** Buckets with at most this many events are sorted into the bottom instead of being spread. */
+	private static final int THRESHOLD = 50;
+
+	/** The maximum number of rungs. */
+	private static final int MAX_RUNGS = 8;
+
+	/** The unsorted far-future events. */
+	private final List<SimEvent> top = new ArrayList<SimEvent>();
+
+	/** Events with a time greater than this one belong to the top. */
+	private double topStart = Double.NEGATIVE_INFINITY;
+
+	/** The rungs; the last one is the finest. */
+	private final Rung[] rungs = new Rung[MAX_RUNGS];
+
+	/** The number of rungs in use. */
+	private int rungCount = 0;
+
+	/** The sorted events dequeued next. */
+	private final SortedEventList bottom = new SortedEventList();
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	@Override
+	protected void insert(SimEvent event) {
+		size++;
+		double time = event.eventTime();
+		if (time > topStart) {
+			top.add(event);
+			return;
+		}
+		for (int i = 0; i < rungCount; i++) {
+			Rung rung = rungs[i];
+			int bucket = rung.bucketOf(time);
+			if (bucket >= rung.current) {
+				rung.add(bucket, event);
+				return;
+			}
+		}
+		bottom.add(event);
+	}
+
+	@Override
+	protected SimEvent first() {
+		if (bottom.isEmpty() && !refillBottom()) {
+			return null;
+		}
+		return bottom.first();
+	}
+
+	@Override
+	protected void removeFirst() {
+		if (bottom.isEmpty() && !refillBottom()) {
+			return;
+		}
+		size--;
+		bottom.removeFirst();
+	}
+
+	@Override
+	protected boolean delete(SimEvent event) {
+		if (removeFrom(event)) {
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected Iterator<SimEvent> events() {
+		List<SimEvent> events = new ArrayList<SimEvent>(size);
+		for (int i = 0; i < bottom.size(); i++) {
+			events.add(bottom.get(i));
+		}
+		for (int r = 0; r < rungCount; r++) {
+			for (List<SimEvent> bucket : rungs[r].buckets) {
+				if (bucket != null) {
+					events.addAll(bucket);
+				}
+			}
+		}
+		events.addAll(top);
+		final Iterator<SimEvent> it = events.iterator();
+		return new Iterator<SimEvent>() {
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				return it.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove");
+			}
+		};
+	}
+
+	@Override
+	protected int count() {
+		return size;
+	}
+
+	@Override
+	protected void removeAllEvents() {
+		top.clear();
+		topStart = Double.NEGATIVE_INFINITY;
+		Arrays.fill(rungs, null);
+		rungCount = 0;
+		bottom.clear();
+		size = 0;
+	}
+
+	/**
+	 * Removes an event from the structure its time maps to.
+	 *
+	 * @param event the event
+	 * @return true, if the event was found
+	 */
+	private boolean removeFrom(SimEvent event) {
+		double time = event.eventTime();
+		if (time > topStart) {
+			return top.remove(event);
+		}
+		for (int i = 0; i < rungCount; i++) {
+			Rung rung = rungs[i];
+			int bucket = rung.bucketOf(time);
+			if (bucket >= rung.current) {
+				return rung.remove(bucket, event);
+			}
+		}
+		return bottom.remove(event);
+	}
+
+	/**
+	 * Moves the next group of events into the empty bottom list.
+	 *
+	 * @return false if the queue is empty
+	 */
+	private boolean refillBottom() {
+		while (true) {
+			if (rungCount == 0) {
+				if (top.isEmpty()) {
+					return false;
+				}
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (SimEvent event : top) {
+					min = Math.min(min, event.eventTime());
+					max = Math.max(max, event.eventTime());
+				}
+				topStart = max;
+				if (top.size() <= THRESHOLD || min == max) {
+					sortIntoBottom(top);
+					return true;
+				}
+				rungs[rungCount++] = new Rung(top, min, max);
+				top.clear();
+				continue;
+			}
+
+			Rung rung = rungs[rungCount - 1];
+			List<SimEvent> bucket = rung.nextBucket();
+			if (bucket == null) {
+				// the finest rung is exhausted: resume the coarser one
+				rungs[--rungCount] = null;
+				continue;
+			}
+
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (SimEvent event : bucket) {
+				min = Math.min(min, event.eventTime());
+				max = Math.max(max, event.eventTime());
+			}
+			if (bucket.size() <= THRESHOLD || min == max || rungCount == MAX_RUNGS) {
+				sortIntoBottom(bucket);
+				return true;
+			}
+			rungs[rungCount++] = new Rung(bucket, min, max);
+		}
+	}
+
+	private void sortIntoBottom(List<SimEvent> events) {
+		SimEvent[] sorted = events.toArray(new SimEvent[events.size()]);
+		Arrays.sort(sorted);
+		for (SimEvent event : sorted) {
+			bottom.append(event);
+		}
+		events.clear();
+	}
+
+	/**
+	 * A rung of the ladder: a set of buckets of equal width covering a range of times.
+	 */
+	private static final class Rung {
+
+		/** The time at which the first bucket starts. */
+		private final double start;
+
+		/** The width of each bucket. */
+		private final double width;
+
+		/** The buckets, allocated on demand. */
+		private final List<SimEvent>[] buckets;
+
+		/** The index of the next bucket to dequeue; earlier buckets have been moved down. */
+		private int current = 0;
+
+		Rung(List<SimEvent> events, double min, double max) {
+			int count = events.size();
+			start = min;
+			width = (max - min) / count;
+			buckets = newBuckets(count);
+			for (SimEvent event : events) {
+				add(bucketOf(event.eventTime()), event);
+			}
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static List<SimEvent>[] newBuckets(int count) {
+			return new List[count];
+		}
+
+		/**
+		 * Maps a time to a bucket. Times beyond the range of the rung are clamped to its first or
+		 * last bucket, which keeps the mapping monotone.
+		 *
+		 * @param time the time
+		 * @return the bucket index
+		 */
+		int bucketOf(double time) {
+			double offset = Math.floor((time - start) / width);
+			if (offset <= 0) {
+				return 0;
+			}
+			if (offset >= buckets.length - 1) {
+				return buckets.length - 1;
+			}
+			return (int) offset;
+		}
+
+		void add(int bucket, SimEvent event) {
+			if (buckets[bucket] == null) {
+				buckets[bucket] = new ArrayList<SimEvent>();
+			}
+			buckets[bucket].add(event);
+		}
+
+		boolean remove(int bucket, SimEvent event) {
+			return buckets[bucket] != null && buckets[bucket].remove(event);
+		}
+
+		/**
+		 * Detaches the next non-empty bucket.
+		 *
+		 * @return the bucket, or <tt>null</tt> if the rung is exhausted
+		 */
+		List<SimEvent> nextBucket() {
+			while (current < buckets.length) {
+				List<SimEvent> bucket = buckets[current];
+				buckets[current++] = null;
+				if (bucket != null && !bucket.isEmpty()) {
+					return bucket;
+				}
+			}
+			return null;
+		}
+	}
+
+}
@@ -481,6 +481,9 @@ public abstract class SimEntity implements Cloneable {
 	 */
 	protected void setState(int state) {
 		this.state = state;
+		if (state == RUNNABLE && id >= 0) {
+			CloudSim.wakeUp(id);
+		}
 	}
 
 	/**
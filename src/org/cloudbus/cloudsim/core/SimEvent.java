@@ -40,6 +40,24 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	private long serial = -1;
 
+	/** whether the serial was reserved by the sender, and must be kept by the future queue **/
+	private boolean serialReserved;
+
+	/** position of the event inside a heap-based future queue, or -1 when not queued **/
+	private int queueIndex = -1;
+
+	/** whether the event is held by a future queue, possibly as a cancelled event **/
+	private boolean queued;
+
+	/** whether the event has been cancelled while waiting in the future queue **/
+	private boolean cancelled;
+
+	/** the chain of events with the same source and tag this event belongs to, if any **/
+	private EventChain chain;
+
+	/** neighbours of the event in its chain **/
+	private SimEvent chainPrev, chainNext;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -86,6 +104,79 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	/**
+	 * Gets the serial number assigned by the future queue. Events with the same time are ordered by
+	 * this number.
+	 * 
+	 * @return the serial number
+	 */
+	protected long getSerial() {
+		return serial;
+	}
+
+	boolean isSerialReserved() {
+		return serialReserved;
+	}
+
+	void reserveSerial(long serial) {
+		this.serial = serial;
+		serialReserved = true;
+	}
+
+	int getQueueIndex() {
+		return queueIndex;
+	}
+
+	void setQueueIndex(int queueIndex) {
+		this.queueIndex = queueIndex;
+	}
+
+	boolean isQueued() {
+		return queued;
+	}
+
+	void setQueued(boolean queued) {
+		this.queued = queued;
+	}
+
+	/**
+	 * Checks whether the event has been cancelled. Cancelled events are left in the future queue and
+	 * discarded when they reach its head.
+	 * 
+	 * @return true, if the event has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	EventChain getChain() {
+		return chain;
+	}
+
+	void setChain(EventChain chain) {
+		this.chain = chain;
+	}
+
+	SimEvent getChainPrev() {
+		return chainPrev;
+	}
+
+	void setChainPrev(SimEvent chainPrev) {
+		this.chainPrev = chainPrev;
+	}
+
+	SimEvent getChainNext() {
+		return chainNext;
+	}
+
+	void setChainNext(SimEvent chainNext) {
+		this.chainNext = chainNext;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
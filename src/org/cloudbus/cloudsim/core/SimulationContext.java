@@ -0,0 +1,273 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The state of one simulation: its entities, clock and event queues, and the {@link ContextLocal}
+ * values of the layers built on top of the kernel. The static methods of {@link CloudSim} work on
+ * the <i>current</i> context, which is the default context unless another one is bound to the
+ * calling thread, so simulations written against the static API run unchanged in the default
+ * context, and several simulations can run at the same time in one JVM, each one in its own
+ * context:
+ *
+ * <pre>
+ * final SimulationContext context = new SimulationContext();
+ * executor.submit(new Runnable() {
+ * 	public void run() {
+ * 		context.run(scenario); // CloudSim.init(...), entities, CloudSim.startSimulation()
+ * 	}
+ * });
+ * </pre>
+ *
+ * A context is bound to a single thread at a time.
+ * State kept in static fields by the code of a scenario itself, and the {@link
+ * org.cloudbus.cloudsim.Log} output, are not covered and are shared by the simulations.
+ *
+ * @see ContextLocal
+ */
+public final class SimulationContext {
+
+	/** The context used by threads to which no context is bound. */
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	/** The context bound to the current thread. */
+	private static final ThreadLocal<SimulationContext> CURRENT = new ThreadLocal<SimulationContext>();
+
+	/**
+	 * Whether a context has ever been bound to a thread. Until then, every thread uses the default
+	 * context without looking up the thread local. Only the thread binding a context needs to see
+	 * the flag set, as the others keep using the default context anyway.
+	 */
+	private static boolean bound = false;
+
+	// The state of the simulation, managed by CloudSim
+
+	/** The id of CIS entity. */
+	int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	int shutdownId = -1;
+
+	/** The CIS object. */
+	CloudInformationService cis = null;
+
+	/** The trace flag. */
+	boolean traceFlag = false;
+
+	/** The calendar. */
+	Calendar calendar = null;
+
+	/** The termination time. */
+	double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	double minTimeBetweenEvents = 0.1;
+
+	/** The entities. */
+	List<SimEntity> entities;
+
+	/** The future event queue. */
+	FutureQueue future;
+
+	/** The ids of the entities that have been woken up since the last tick, in no particular order. */
+	int[] readyQueue;
+
+	/** The number of entities in the ready queue. */
+	int readySize;
+
+	/** Whether each entity, by id, is in the ready queue. */
+	boolean[] queued;
+
+	/** The buffer reused to run the entities of the ready queue in id order. */
+	int[] runQueue;
+
+	/** The buffer reused to hold the events delivered at each clock tick. */
+	SimEvent[] slab = new SimEvent[64];
+
+	/** The future event queue to be used by the next initialisation, if not the default one. */
+	FutureQueue futureQueueEngine = null;
+
+	/** The deferred event queue. */
+	DeferredQueue deferred;
+
+	/** The simulation clock. */
+	double clock;
+
+	/** Flag for checking if the simulation is running. */
+	boolean running;
+
+	/** The entities by name. */
+	Map<String, SimEntity> entitiesByName;
+
+	/** The wait predicates. */
+	Map<Integer, Predicate> waitPredicates;
+
+	/** The paused. */
+	boolean paused = false;
+
+	/** The pause at. */
+	long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	boolean abruptTerminate = false;
+
+	/** The values of the context locals, by index. */
+	private Object[] locals = new Object[8];
+
+	/**
+	 * Creates a new context. CloudSim has to be initialised in it, as in the default context,
+	 * before entities are created.
+	 */
+	public SimulationContext() {
+	}
+
+	/**
+	 * Gets the context used by the threads to which no context is bound.
+	 *
+	 * @return the default context
+	 */
+	public static SimulationContext getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Gets the context of the simulation run by the current thread.
+	 *
+	 * @return the context bound to the current thread, or the default context
+	 */
+	public static SimulationContext current() {
+		if (!bound) {
+			return DEFAULT;
+		}
+		SimulationContext context = CURRENT.get();
+		return context != null ? context : DEFAULT;
+	}
+
+	/**
+	 * Checks whether this is the default context.
+	 *
+	 * @return true if this is the context used when none is bound
+	 */
+	public boolean isDefault() {
+		return this == DEFAULT;
+	}
+
+	/**
+	 * Runs a task with this context bound to the current thread, so that the simulation it runs
+	 * through the static methods of {@link CloudSim} is the one of this context. The context
+	 * previously bound to the thread is restored afterwards.
+	 *
+	 * @param task the task
+	 */
+	public void run(Runnable task) {
+		SimulationContext previous = enter(this);
+		try {
+			task.run();
+		} finally {
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Calls a task with this context bound to the current thread.
+	 *
+	 * @param task the task
+	 * @return the result of the task
+	 * @throws Exception the exception thrown by the task
+	 * @see #run(Runnable)
+	 */
+	public <V> V call(Callable<V> task) throws Exception {
+		SimulationContext previous = enter(this);
+		try {
+			return task.call();
+		} finally {
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Binds a context to the current thread. Binding the default context to a thread that has
+	 * none does nothing, so that the threads of a simulation run in the default context do not
+	 * make the other ones look their context up.
+	 *
+	 * @param context the context
+	 * @return the context bound before, to give to {@link #exit(SimulationContext)}
+	 */
+	static SimulationContext enter(SimulationContext context) {
+		SimulationContext previous = bound ? CURRENT.get() : null;
+		if (previous != null || context != DEFAULT) {
+			bound = true;
+			CURRENT.set(context);
+		}
+		return previous;
+	}
+
+	/**
+	 * Restores the context bound to the current thread before {@link #enter(SimulationContext)}.
+	 *
+	 * @param previous the context returned by enter
+	 */
+	static void exit(SimulationContext previous) {
+		if (previous != null) {
+			CURRENT.set(previous);
+		} else if (bound) {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Gets the value of a context local, creating it on first use.
+	 *
+	 * @param local the context local
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T getLocal(ContextLocal<T> local) {
+		Object[] values = locals;
+		int index = local.index;
+		if (index < values.length) {
+			Object value = values[index];
+			if (value != null) {
+				return (T) value;
+			}
+		}
+		synchronized (this) {
+			if (index >= locals.length || locals[index] == null) {
+				T value = local.initialValue(this);
+				if (value == null) {
+					return null;
+				}
+				setLocal(local, value);
+			}
+			return (T) locals[index];
+		}
+	}
+
+	/**
+	 * Sets the value of a context local.
+	 *
+	 * @param local the context local
+	 * @param value the value, or <tt>null</tt> to have it created again on next use
+	 */
+	synchronized <T> void setLocal(ContextLocal<T> local, T value) {
+		if (local.index >= locals.length) {
+			locals = Arrays.copyOf(locals, Math.max(local.index + 1, locals.length * 2));
+		}
+		locals[local.index] = value;
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+
+/**
+ * An array of events kept in (time, serial) order, used as the buckets of the calendar and ladder
+ * queues. The first event is removed by moving a head index, and since new events usually carry
+ * the largest serial of their time, inserting them is typically an append.
+ *
+ * @see CalendarFutureQueue
+ * @see LadderFutureQueue
+ */
+final class SortedEventList {
+
+	/** The events; only positions [head, tail) are used. */
+	private SimEvent[] events;
+
+	/** The position of the first event. */
+	private int head = 0;
+
+	/** The position after the last event. */
+	private int tail = 0;
+
+	SortedEventList() {
+		events = new SimEvent[4];
+	}
+
+	int size() {
+		return tail - head;
+	}
+
+	boolean isEmpty() {
+		return head == tail;
+	}
+
+	SimEvent first() {
+		return head == tail ? null : events[head];
+	}
+
+	SimEvent get(int i) {
+		return events[head + i];
+	}
+
+	SimEvent removeFirst() {
+		if (head == tail) {
+			return null;
+		}
+		SimEvent first = events[head];
+		events[head++] = null;
+		if (head == tail) {
+			head = tail = 0;
+		}
+		return first;
+	}
+
+	void add(SimEvent event) {
+		ensureTailRoom();
+		if (head == tail || events[tail - 1].compareTo(event) < 0) {
+			events[tail++] = event;
+			return;
+		}
+		int low = head;
+		int high = tail;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (events[mid].compareTo(event) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		System.arraycopy(events, low, events, low + 1, tail - low);
+		events[low] = event;
+		tail++;
+	}
+
+	/**
+	 * Appends an event that is known to follow every event in the list.
+	 *
+	 * @param event the event
+	 */
+	void append(SimEvent event) {
+		ensureTailRoom();
+		events[tail++] = event;
+	}
+
+	boolean remove(SimEvent event) {
+		for (int i = head; i < tail; i++) {
+			if (events[i] == event) {
+				System.arraycopy(events, i + 1, events, i, tail - i - 1);
+				events[--tail] = null;
+				if (head == tail) {
+					head = tail = 0;
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies the events into an array, in order, starting at the given position.
+	 *
+	 * @param dest the destination array
+	 * @param offset the starting position
+	 * @return the position after the last copied event
+	 */
+	int drainTo(SimEvent[] dest, int offset) {
+		int n = tail - head;
+		System.arraycopy(events, head, dest, offset, n);
+		clear();
+		return offset + n;
+	}
+
+	void clear() {
+		Arrays.fill(events, head, tail, null);
+		head = tail = 0;
+	}
+
+	private void ensureTailRoom() {
+		if (tail < events.length) {
+			return;
+		}
+		int n = tail - head;
+		if (head > 0 && n < events.length / 2) {
+			System.arraycopy(events, head, events, 0, n);
+			Arrays.fill(events, n, tail, null);
+		} else {
+			SimEvent[] grown = new SimEvent[events.length * 2];
+			System.arraycopy(events, head, grown, 0, n);
+			events = grown;
+		}
+		head = 0;
+		tail = n;
+	}
+
+}
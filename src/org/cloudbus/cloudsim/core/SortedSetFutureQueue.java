@@ -0,0 +1,71 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A future event queue that uses a {@link TreeSet} in order to store the events. This is the
+ * original CloudSim implementation; every operation costs O(log n) and one tree node allocation.
+ *
+ * @author Marcos Dias de Assuncao
+ * @since CloudSim Toolkit 1.0
+ * @see FutureQueue
+ * @see java.util.TreeSet
+ */
+public class SortedSetFutureQueue extends FutureQueue {
+
+	/** The sorted set. */
+	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+
+	@Override
+	protected void insert(SimEvent event) {
+		sortedSet.add(event);
+	}
+
+	@Override
+	protected SimEvent first() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	@Override
+	protected void removeFirst() {
+		if (!sortedSet.isEmpty()) {
+			sortedSet.remove(sortedSet.first());
+		}
+	}
+
+	@Override
+	protected boolean delete(SimEvent event) {
+		return sortedSet.remove(event);
+	}
+
+	/**
+	 * Returns an iterator over the events, in time order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	protected Iterator<SimEvent> events() {
+		return sortedSet.iterator();
+	}
+
+	@Override
+	protected int count() {
+		return sortedSet.size();
+	}
+
+	@Override
+	protected void removeAllEvents() {
+		sortedSet.clear();
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+
+/**
+ * A secondary index of the future queue keyed by (source entity, tag). The chains of a source are
+ * kept in an array indexed by the source id; an entity only uses a handful of tags, so the chain of
+ * a tag is found with a short linear search. Events sent by negative ids are not indexed.
+ *
+ * @see FutureQueue#cancelAll(int, org.cloudbus.cloudsim.core.predicates.Predicate)
+ */
+final class SourceTagIndex {
+
+	/** The chains of each source, by source id. */
+	private EventChain[][] chains = new EventChain[64][];
+
+	/** The number of chains of each source, by source id. */
+	private int[] chainCounts = new int[64];
+
+	void add(SimEvent event) {
+		int src = event.getSource();
+		if (src < 0) {
+			return;
+		}
+		EventChain chain = find(src, event.getTag());
+		if (chain == null) {
+			chain = create(src, event.getTag());
+		}
+		chain.append(event);
+	}
+
+	void unlink(SimEvent event) {
+		EventChain chain = event.getChain();
+		if (chain != null) {
+			chain.unlink(event);
+		}
+	}
+
+	/**
+	 * Gets the chain of events sent by a source with a tag.
+	 *
+	 * @param src the source id
+	 * @param tag the tag
+	 * @return the chain, or <tt>null</tt> if the source never sent an event with that tag
+	 */
+	EventChain find(int src, int tag) {
+		if (src < 0 || src >= chains.length || chains[src] == null) {
+			return null;
+		}
+		EventChain[] sourceChains = chains[src];
+		for (int i = 0; i < chainCounts[src]; i++) {
+			if (sourceChains[i].tag == tag) {
+				return sourceChains[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the number of chains of a source, which can be visited with {@link #get(int, int)}.
+	 *
+	 * @param src the source id
+	 * @return the number of chains
+	 */
+	int chainCount(int src) {
+		return src >= 0 && src < chainCounts.length ? chainCounts[src] : 0;
+	}
+
+	EventChain get(int src, int i) {
+		return chains[src][i];
+	}
+
+	void clear() {
+		chains = new EventChain[64][];
+		chainCounts = new int[64];
+	}
+
+	private EventChain create(int src, int tag) {
+		if (src >= chains.length) {
+			int length = Math.max(chains.length * 2, src + 1);
+			chains = Arrays.copyOf(chains, length);
+			chainCounts = Arrays.copyOf(chainCounts, length);
+		}
+		if (chains[src] == null) {
+			chains[src] = new EventChain[4];
+		} else if (chainCounts[src] == chains[src].length) {
+			chains[src] = Arrays.copyOf(chains[src], chainCounts[src] * 2);
+		}
+		EventChain chain = new EventChain(tag);
+		chains[src][chainCounts[src]++] = chain;
+		return chain;
+	}
+
+}
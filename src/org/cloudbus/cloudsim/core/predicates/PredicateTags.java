@@ -0,0 +1,36 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core.predicates;
+
+/**
+ * Gives the simulation kernel read access to the tags of a {@link PredicateType} without the
+ * copy made by {@link PredicateType#getTags()}. The event queues call this on every
+ * <code>cancelAll</code> and predicate lookup, so it must not allocate. Not meant to be used by
+ * simulation entities.
+ * 
+ * @see PredicateType
+ */
+public final class PredicateTags {
+
+	private PredicateTags() {
+	}
+
+	/**
+	 * Gets the tags selected by a plain {@link PredicateType}. Subclasses may override
+	 * <code>match</code>, so they are treated like any other predicate.
+	 * 
+	 * @param p the predicate
+	 * @return the predicate's own tag array, which must not be modified, or <tt>null</tt> if
+	 *         the predicate is not a plain {@link PredicateType}
+	 */
+	public static int[] of(Predicate p) {
+		return p.getClass() == PredicateType.class ? ((PredicateType) p).tags() : null;
+	}
+
+}
@@ -41,6 +41,26 @@ public class PredicateType extends Predicate {
 		this.tags = tags.clone();
 	}
 
+	/**
+	 * Gets the tags selected by this predicate.
+	 * 
+	 * @return a copy of the tags
+	 */
+	public int[] getTags() {
+		return tags.clone();
+	}
+
+	/**
+	 * Gets the tags selected by this predicate without copying them. Used by
+	 * {@link PredicateTags} on the event queue lookup paths; the returned array
+	 * must not be modified.
+	 * 
+	 * @return the tags
+	 */
+	int[] tags() {
+		return tags;
+	}
+
 	/**
 	 * The match function called by <code>Sim_system</code>, not used directly by the user.
 	 * 
@@ -1,12 +1,12 @@
 package org.fog.application;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
 import org.fog.scheduler.TupleScheduler;
@@ -45,6 +45,12 @@ public class Application {
 
 	protected DAG dag;
 
+	/**
+	 * Routing table compiled from the modules, edges and tuple mappings, used to find the
+	 * resultant tuples of a module without scanning all edges. Rebuilt when they change.
+	 */
+	private RoutingTable routingTable;
+
 	/**
 	 * Creates a plain vanilla application with no modules and edges.
 	 * @param appId
@@ -178,13 +184,38 @@ public class Application {
 	 * @return
 	 */
 	public AppModule getModuleByName(String name){
-		for(AppModule module : modules){
-			if(module.getName().equals(name))
-				return module;
+		AppModule module = getRoutingTable().moduleByName(name);
+		if(module != null && module.getName().equals(name))
+			return module;
+		for(AppModule candidate : modules){
+			if(candidate.getName().equals(name)){
+				// a module has been renamed since the table was built
+				routingTable = null;
+				return candidate;
+			}
 		}
 		return null;
 	}
 	
+	/**
+	 * Returns the routing table, compiling it again if modules, edges or tuple mappings have
+	 * been added since it was compiled.
+	 */
+	private RoutingTable getRoutingTable(){
+		if(routingTable == null || routingTable.isStale(modules, edges))
+			routingTable = new RoutingTable(modules, edges);
+		return routingTable;
+	}
+	
+	/**
+	 * Discards the routing table, so that it is compiled again. Modules, edges and tuple
+	 * mappings added through this class are noticed anyway ; this is only needed after
+	 * changing existing edges or module names directly.
+	 */
+	public void invalidateRoutingTable(){
+		routingTable = null;
+	}
+	
 	/**
 	 * Get the tuples generated upon execution of incoming tuple <i>inputTuple</i> by module named <i>moduleName</i>
 	 * @param moduleName name of the module performing execution of incoming tuple and emitting resultant tuples
@@ -193,42 +224,19 @@ public class Application {
 	 * @return
 	 */
 	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
-		List<Tuple> tuples = new ArrayList<Tuple>();
-		AppModule module = getModuleByName(moduleName);
-		for(AppEdge edge : getEdges()){
-			if(edge.getSource().equals(moduleName)){
-				Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-				
-				if(module.getSelectivityMap().get(pair)==null)
-					continue;
-				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
+		RoutingTable.Route[] routes = getRoutingTable().routesOf(moduleName, inputTuple.getTupleType());
+		if(routes == null)
+			return Collections.emptyList();
+		List<Tuple> tuples = new ArrayList<Tuple>(routes.length);
+		for(RoutingTable.Route route : routes){
+			AppEdge edge = route.edge;
+			SelectivityModel selectivityModel = route.selectivityMap.get(route.key);
+			if(selectivityModel == null)
+				continue;
+			if(selectivityModel.canSelect()){
+				//TODO check if the edge is ACTUATOR, then create multiple tuples
+				if(edge.getEdgeType() == AppEdge.ACTUATOR){
+					//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
 						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 								(long) (edge.getTupleCpuLength()),
 								inputTuple.getNumberOfPes(),
@@ -243,13 +251,35 @@ public class Application {
 						tuple.setAppId(inputTuple.getAppId());
 						tuple.setDestModuleName(edge.getDestination());
 						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
+						tuple.setDirection(Tuple.ACTUATOR);
 						tuple.setTupleType(edge.getTupleType());
+						tuple.setSourceDeviceId(sourceDeviceId);
 						tuple.setSourceModuleId(sourceModuleId);
-						tuple.setTraversedMicroservices(inputTuple.getTraversed());
-
+						//tuple.setActuatorId(actuatorId);
+						
 						tuples.add(tuple);
-					}
+					//}
+				}else{
+					Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+							(long) (edge.getTupleCpuLength()),
+							inputTuple.getNumberOfPes(),
+							(long) (edge.getTupleNwLength()),
+							inputTuple.getCloudletOutputSize(),
+							inputTuple.getUtilizationModelCpu(),
+							inputTuple.getUtilizationModelRam(),
+							inputTuple.getUtilizationModelBw()
+							);
+					tuple.setActualTupleId(inputTuple.getActualTupleId());
+					tuple.setUserId(inputTuple.getUserId());
+					tuple.setAppId(inputTuple.getAppId());
+					tuple.setDestModuleName(edge.getDestination());
+					tuple.setSrcModuleName(edge.getSource());
+					tuple.setDirection(edge.getDirection());
+					tuple.setTupleType(edge.getTupleType());
+					tuple.setSourceModuleId(sourceModuleId);
+					tuple.setTraversedMicroservices(inputTuple.getTraversed());
+
+					tuples.add(tuple);
 				}
 			}
 		}
@@ -271,9 +301,9 @@ public class Application {
 						1,
 						(long) (edge.getTupleNwLength()),
 						100,
-						new UtilizationModelFull(), 
-						new UtilizationModelFull(), 
-						new UtilizationModelFull()
+						Tuple.FULL_UTILIZATION, 
+						Tuple.FULL_UTILIZATION, 
+						Tuple.FULL_UTILIZATION
 						);
 				tuple.setUserId(getUserId());
 				tuple.setAppId(getAppId());
@@ -293,9 +323,9 @@ public class Application {
 					1,
 					(long) (edge.getTupleNwLength()),
 					100,
-					new UtilizationModelFull(), 
-					new UtilizationModelFull(), 
-					new UtilizationModelFull()
+					Tuple.FULL_UTILIZATION, 
+					Tuple.FULL_UTILIZATION, 
+					Tuple.FULL_UTILIZATION
 					);
 			//tuple.setActualTupleId(inputTuple.getActualTupleId());
 			tuple.setUserId(getUserId());
@@ -397,4 +427,127 @@ public class Application {
 	public DAG getDAG() {
 		return dag;
 	}
+
+	/**
+	 * Routing table of an application : for each module and each type of tuple it receives,
+	 * the output edges along which it may emit tuples, in the order of the edge list. Module
+	 * names and tuple types are interned to int ids, so routing a tuple costs two lookups and
+	 * a walk over the routes of its module, instead of a walk over all the edges.
+	 * 
+	 * The selectivity models themselves are looked up at routing time with keys built once,
+	 * so replacing a model needs no recompilation. The table notices modules and edges being
+	 * added, and mappings being added to a module.
+	 */
+	private static class RoutingTable {
+
+		/**
+		 * An output edge of a module for an input tuple type, with the key of its selectivity model.
+		 */
+		static class Route {
+			final AppEdge edge;
+			final Pair<String, String> key;
+			final Map<Pair<String, String>, SelectivityModel> selectivityMap;
+
+			Route(AppEdge edge, Pair<String, String> key, Map<Pair<String, String>, SelectivityModel> selectivityMap){
+				this.edge = edge;
+				this.key = key;
+				this.selectivityMap = selectivityMap;
+			}
+		}
+
+		private final List<AppModule> modules;
+		private final int moduleCount;
+		private final List<AppEdge> edges;
+		private final int edgeCount;
+
+		private final Map<String, Integer> moduleIds = new HashMap<String, Integer>();
+		private final Map<String, Integer> tupleTypeIds = new HashMap<String, Integer>();
+		private final AppModule[] moduleById;
+		/** Selectivity map of each module, and its size, when its routes were compiled. */
+		private final Map<?, ?>[] compiledMaps;
+		private final int[] compiledMapSizes;
+		/** Routes by module id and input tuple type id ; null when there is none. */
+		private final Route[][][] routes;
+
+		RoutingTable(List<AppModule> modules, List<AppEdge> edges){
+			this.modules = modules;
+			this.moduleCount = modules.size();
+			this.edges = edges;
+			this.edgeCount = edges.size();
+			moduleById = new AppModule[moduleCount];
+			for(AppModule module : modules){
+				if(!moduleIds.containsKey(module.getName())){
+					moduleById[moduleIds.size()] = module;
+					moduleIds.put(module.getName(), moduleIds.size());
+				}
+			}
+			compiledMaps = new Map<?, ?>[moduleIds.size()];
+			compiledMapSizes = new int[moduleIds.size()];
+			routes = new Route[moduleIds.size()][][];
+		}
+
+		boolean isStale(List<AppModule> modules, List<AppEdge> edges){
+			return modules != this.modules || modules.size() != moduleCount
+					|| edges != this.edges || edges.size() != edgeCount;
+		}
+
+		AppModule moduleByName(String name){
+			Integer id = moduleIds.get(name);
+			return id == null ? null : moduleById[id];
+		}
+
+		/**
+		 * Returns the routes of a module for an input tuple type.
+		 * @return the routes, or null if there is none
+		 */
+		Route[] routesOf(String moduleName, String inputTupleType){
+			Integer moduleId = moduleIds.get(moduleName);
+			if(moduleId == null)
+				return null;
+			Map<Pair<String, String>, SelectivityModel> selectivityMap = moduleById[moduleId].getSelectivityMap();
+			if(routes[moduleId] == null || compiledMaps[moduleId] != selectivityMap
+					|| compiledMapSizes[moduleId] != selectivityMap.size())
+				compile(moduleId);
+			Integer typeId = tupleTypeIds.get(inputTupleType);
+			if(typeId == null || typeId >= routes[moduleId].length)
+				return null;
+			return routes[moduleId][typeId];
+		}
+
+		private int tupleTypeId(String tupleType){
+			Integer id = tupleTypeIds.get(tupleType);
+			if(id == null){
+				id = tupleTypeIds.size();
+				tupleTypeIds.put(tupleType, id);
+			}
+			return id;
+		}
+
+		/**
+		 * Compiles the routes of a module from its tuple mappings, keeping the edges in list order.
+		 */
+		private void compile(int moduleId){
+			AppModule module = moduleById[moduleId];
+			Map<Pair<String, String>, SelectivityModel> selectivityMap = module.getSelectivityMap();
+			Map<Integer, List<Route>> byInputType = new HashMap<Integer, List<Route>>();
+			for(AppEdge edge : edges){
+				if(!edge.getSource().equals(module.getName()))
+					continue;
+				for(Pair<String, String> key : selectivityMap.keySet()){
+					if(!key.getSecond().equals(edge.getTupleType()))
+						continue;
+					int typeId = tupleTypeId(key.getFirst());
+					if(!byInputType.containsKey(typeId))
+						byInputType.put(typeId, new ArrayList<Route>());
+					byInputType.get(typeId).add(new Route(edge, key, selectivityMap));
+				}
+			}
+			Route[][] moduleRoutes = new Route[tupleTypeIds.size()][];
+			for(Map.Entry<Integer, List<Route>> entry : byInputType.entrySet())
+				moduleRoutes[entry.getKey()] = entry.getValue().toArray(new Route[0]);
+			routes[moduleId] = moduleRoutes;
+			compiledMaps[moduleId] = selectivityMap;
+			compiledMapSizes[moduleId] = selectivityMap.size();
+		}
+	}
 }
@@ -0,0 +1,258 @@
+package org.fog.entities;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.ContextLocal;
+import org.cloudbus.cloudsim.core.SimEntity;
+
+/**
+ * Euler tour labeling of the fog device tree, used to find the child of a device through which
+ * another device is reached without walking the subtree of each child.
+ * <p>
+ * Each device gets an interval of labels holding the labels of all its descendants, so a device
+ * is below another one when its label falls in the interval of the other one. The children of a
+ * device are kept sorted by label, and the child leading to a device is found by a binary search.
+ * Every interval keeps some unused labels at its end, so that a leaf device moving to a new parent,
+ * as done on mobility, is labeled again without relabeling the tree. The tree is labeled again
+ * when the free labels run out, when a device that has children moves, or when devices are
+ * created.
+ * <p>
+ * The tree is read from the children lists of the devices when first needed. Changes made later
+ * through {@link FogDevice#addChild(int)} and {@link FogDevice#removeChild(int)} are tracked; the
+ * index gives no answer for a device it does not know, and {@link FogDevice} then walks the tree.
+ */
+final class DescendantIndex {
+
+    /** The minimum number of free labels kept at the end of an interval. */
+    private static final int MIN_FREE_LABELS = 4;
+
+    private static final ContextLocal<DescendantIndex> INSTANCE = new ContextLocal<DescendantIndex>() {
+        @Override
+        protected DescendantIndex initialValue() {
+            return new DescendantIndex();
+        }
+    };
+
+    static DescendantIndex getInstance() {
+        return INSTANCE.get();
+    }
+
+    /** Whether the labels have to be computed again. */
+    private boolean stale = true;
+
+    /** Whether the children lists do not form a forest, in which case the index is not used. */
+    private boolean unusable;
+
+    /** By device id : the first and the last label of the interval of the device, -1 if unknown. */
+    private int[] first = new int[0];
+    private int[] last = new int[0];
+
+    /** By device id : the next free label at the end of the interval of the device. */
+    private int[] nextFree = new int[0];
+
+    /** By device id : the parent under which the device is labeled, or -1. */
+    private int[] labeledParent = new int[0];
+
+    /** By device id : the labeled children of the device, sorted by label. */
+    private int[][] children = new int[0][];
+    private int[] childCount = new int[0];
+
+    private DescendantIndex() {
+    }
+
+    /**
+     * Forgets the labels, so that the tree is read again when next needed.
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Gets the child of a device whose subtree contains another device.
+     *
+     * @param deviceId the id of the device
+     * @param targetDeviceId the id of the device to reach
+     * @return the id of the child, -1 if the target is not below the device, or -2 if the index
+     *         does not know one of the devices
+     */
+    int getChildIdWithRouteTo(int deviceId, int targetDeviceId) {
+        if (stale)
+            label();
+        if (unusable || !isLabeled(deviceId) || !isLabeled(targetDeviceId))
+            return -2;
+        int label = first[targetDeviceId];
+        if (label <= first[deviceId] || label > last[deviceId])
+            return -1;
+        int[] ids = children[deviceId];
+        int low = 0;
+        int high = childCount[deviceId] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (first[ids[middle]] <= label)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        if (high < 0 || last[ids[high]] < label)
+            return -1;
+        return ids[high];
+    }
+
+    /**
+     * Records that a device has become the child of another one.
+     *
+     * @param parentId the id of the parent
+     * @param childId the id of the child
+     */
+    void childAdded(int parentId, int childId) {
+        if (stale || unusable)
+            return;
+        if (childId >= first.length || !isLabeled(parentId)
+                || (isLabeled(childId) && childCount[childId] > 0) || nextFree[parentId] > last[parentId]) {
+            stale = true;
+            return;
+        }
+        if (isLabeled(childId)) {
+            if (labeledParent[childId] == parentId)
+                return;
+            // the old parent may only be told later, but its children must stay sorted by label
+            if (labeledParent[childId] >= 0)
+                removeChild(labeledParent[childId], childId);
+        }
+        int label = nextFree[parentId]++;
+        first[childId] = label;
+        last[childId] = label;
+        nextFree[childId] = label + 1;
+        labeledParent[childId] = parentId;
+        // the free labels of a parent follow the labels of its children, so the new child is last
+        insertChild(parentId, childId);
+    }
+
+    /**
+     * Records that a device is no longer the child of another one.
+     *
+     * @param parentId the id of the parent
+     * @param childId the id of the child
+     */
+    void childRemoved(int parentId, int childId) {
+        if (stale || unusable || !isLabeled(parentId))
+            return;
+        removeChild(parentId, childId);
+        if (isLabeled(childId) && labeledParent[childId] == parentId) {
+            if (childCount[childId] > 0) {
+                stale = true;
+                return;
+            }
+            first[childId] = -1;
+            last[childId] = -1;
+            labeledParent[childId] = -1;
+        }
+    }
+
+    private boolean isLabeled(int deviceId) {
+        return deviceId >= 0 && deviceId < first.length && first[deviceId] >= 0;
+    }
+
+    private void insertChild(int parentId, int childId) {
+        int[] ids = children[parentId];
+        if (ids == null || childCount[parentId] == ids.length)
+            children[parentId] = ids = Arrays.copyOf(ids == null ? new int[0] : ids, Math.max(4, childCount[parentId] * 2));
+        ids[childCount[parentId]++] = childId;
+    }
+
+    private void removeChild(int parentId, int childId) {
+        int[] ids = children[parentId];
+        int count = childCount[parentId];
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == childId) {
+                System.arraycopy(ids, i + 1, ids, i, count - i - 1);
+                childCount[parentId] = count - 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Labels the whole tree, visiting the children of each device in the order of its children
+     * list, from the devices that are nobody's child.
+     */
+    private void label() {
+        List<SimEntity> entities = CloudSim.getEntityList();
+        int size = entities.size();
+        first = new int[size];
+        last = new int[size];
+        nextFree = new int[size];
+        labeledParent = new int[size];
+        children = new int[size][];
+        childCount = new int[size];
+        Arrays.fill(first, -1);
+        Arrays.fill(last, -1);
+        Arrays.fill(labeledParent, -1);
+        stale = false;
+        unusable = false;
+
+        boolean[] isChild = new boolean[size];
+        for (SimEntity entity : entities) {
+            if (entity instanceof FogDevice) {
+                for (int childId : ((FogDevice) entity).getChildrenIds()) {
+                    if (childId < 0 || childId >= size) {
+                        unusable = true;
+                        return;
+                    }
+                    isChild[childId] = true;
+                }
+            }
+        }
+
+        // iterative depth first traversal; a device is labeled when entered and its interval is
+        // closed when left
+        int[] stack = new int[size];
+        int[] position = new int[size];
+        int nextLabel = 0;
+        for (SimEntity entity : entities) {
+            if (!(entity instanceof FogDevice) || isChild[entity.getId()])
+                continue;
+            int depth = 0;
+            stack[0] = entity.getId();
+            position[0] = 0;
+            first[entity.getId()] = nextLabel++;
+            while (depth >= 0) {
+                int deviceId = stack[depth];
+                List<Integer> childrenIds = childrenOf(entities.get(deviceId));
+                if (position[depth] < childrenIds.size()) {
+                    int childId = childrenIds.get(position[depth]++);
+                    if (first[childId] >= 0) {
+                        // reachable twice : not a tree
+                        unusable = true;
+                        return;
+                    }
+                    first[childId] = nextLabel++;
+                    labeledParent[childId] = deviceId;
+                    insertChild(deviceId, childId);
+                    stack[++depth] = childId;
+                    position[depth] = 0;
+                } else {
+                    nextFree[deviceId] = nextLabel;
+                    nextLabel += Math.max(MIN_FREE_LABELS, childrenIds.size());
+                    last[deviceId] = nextLabel - 1;
+                    depth--;
+                }
+            }
+        }
+        // devices on a cycle are nobody's child yet unreachable
+        for (SimEntity entity : entities) {
+            if (entity instanceof FogDevice && first[entity.getId()] < 0) {
+                unusable = true;
+                return;
+            }
+        }
+    }
+
+    private static List<Integer> childrenOf(SimEntity entity) {
+        return entity instanceof FogDevice ? ((FogDevice) entity).getChildrenIds() : Collections.<Integer>emptyList();
+    }
+
+}
@@ -89,6 +89,38 @@ public class FogDevice extends PowerDatacenter {
     protected boolean isClusterLinkBusy; //Flag denoting whether the link connecting to cluster from this FogDevice is busy
     protected double clusterLinkBandwidth;
 
+    /**
+     * Whether this device is the cloud, resolved once from its name instead of on every tuple.
+     */
+    protected final boolean isCloud = "cloud".equals(getName());
+
+    /**
+     * Index of the VMs of the host by module name : the first and the last VM of each module in
+     * the host VM list, rebuilt when the host reports a change of its VM list.
+     */
+    private Map<String, AppModule> firstVmOfModule = new HashMap<String, AppModule>();
+    private Map<String, AppModule> lastVmOfModule = new HashMap<String, AppModule>();
+    private Host indexedHost;
+    private int indexedVmListVersion;
+
+    /**
+     * The MIPS shares requested for the VMs of the host : all the host MIPS for a running VM,
+     * none for an idle one. They are never modified, so every allocation shares them.
+     */
+    private static final List<Double> IDLE_MIPS_SHARE = Collections.singletonList(0.0);
+    private List<Double> fullMipsShare;
+
+    /**
+     * The last allocation made by {@link #updateAllocatedMips(String)} : the VMs of the host in
+     * order, whether each one was running, and the shares the scheduler allocated to them. The
+     * time shared schedulers create new shares whenever they allocate anything, so finding the
+     * same share objects means nobody has changed the allocation since.
+     */
+    private Vm[] allocatedVms = new Vm[0];
+    private boolean[] allocatedRunning = new boolean[0];
+    private List<?>[] allocatedShares = new List<?>[0];
+    private List<Double> allocatedFullMipsShare;
+
 
     public FogDevice(
             String name,
@@ -250,6 +282,7 @@ public class FogDevice extends PowerDatacenter {
         switch (ev.getTag()) {
             case FogEvents.TUPLE_ARRIVAL:
                 processTupleArrival(ev);
+                TimeKeeper.getInstance().tupleReceived((Tuple) ev.getData());
                 break;
             case FogEvents.LAUNCH_MODULE:
                 processModuleArrival(ev);
@@ -327,6 +360,8 @@ public class FogDevice extends PowerDatacenter {
         System.out.println(getName() + " is receiving " + appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
+        if (EventTrace.ENABLED)
+            EventTrace.moduleMigrated(getId(), appModule, ev.getSource(), (double) object.get("delay"));
 
         sendNow(getId(), FogEvents.APP_SUBMIT, app);
         sendNow(getId(), FogEvents.LAUNCH_MODULE, appModule);
@@ -357,14 +392,46 @@ public class FogDevice extends PowerDatacenter {
     }
 
     private AppModule getModuleByName(String moduleName) {
-        AppModule module = null;
-        for (Vm vm : getHost().getVmList()) {
-            if (((AppModule) vm).getName().equals(moduleName)) {
-                module = (AppModule) vm;
-                break;
-            }
+        indexVms();
+        return firstVmOfModule.get(moduleName);
+    }
+
+    /**
+     * Rebuilds the index of the VMs of the host by module name if the VM list has changed.
+     */
+    private void indexVms() {
+        Host host = getHost();
+        if (host == indexedHost && host.getVmListVersion() == indexedVmListVersion)
+            return;
+        firstVmOfModule.clear();
+        lastVmOfModule.clear();
+        for (Vm vm : host.getVmList()) {
+            AppModule module = (AppModule) vm;
+            if (!firstVmOfModule.containsKey(module.getName()))
+                firstVmOfModule.put(module.getName(), module);
+            lastVmOfModule.put(module.getName(), module);
         }
-        return module;
+        indexedHost = host;
+        indexedVmListVersion = host.getVmListVersion();
+    }
+
+    /**
+     * Gets the VM that should execute a tuple on this device : the VM of its destination module,
+     * unless the tuple has already been handled by another instance of that module. If several
+     * VMs of the module run on the host, the last one in the host VM list is chosen.
+     *
+     * @param tuple the tuple
+     * @return the id of the VM, or -1 if no VM of this device should execute the tuple
+     */
+    protected int getTargetVmId(Tuple tuple) {
+        indexVms();
+        AppModule module = lastVmOfModule.get(tuple.getDestModuleName());
+        if (module == null)
+            return -1;
+        Integer instance = tuple.getModuleCopyMap().get(tuple.getDestModuleName());
+        if (instance != null && instance != module.getId())
+            return -1;
+        return module.getId();
     }
 
     /**
@@ -433,18 +500,22 @@ public class FogDevice extends PowerDatacenter {
                 minTime = time;
             }
 
-            Log.formatLine(
-                    "%.2f: [Host #%d] utilization is %.2f%%",
-                    currentTime,
-                    host.getId(),
-                    host.getUtilizationOfCpu() * 100);
+            // the arguments of formatLine are boxed even when the log is disabled
+            if (!Log.isDisabled())
+                Log.formatLine(
+                        "%.2f: [Host #%d] utilization is %.2f%%",
+                        currentTime,
+                        host.getId(),
+                        host.getUtilizationOfCpu() * 100);
         }
 
         if (timeDiff > 0) {
-            Log.formatLine(
-                    "\nEnergy consumption for the last time frame from %.2f to %.2f:",
-                    getLastProcessTime(),
-                    currentTime);
+            boolean log = !Log.isDisabled();
+            if (log)
+                Log.formatLine(
+                        "\nEnergy consumption for the last time frame from %.2f to %.2f:",
+                        getLastProcessTime(),
+                        currentTime);
 
             for (PowerHost host : this.<PowerHost>getHostList()) {
                 double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
@@ -455,6 +526,8 @@ public class FogDevice extends PowerDatacenter {
                         timeDiff);
                 timeFrameDatacenterEnergy += timeFrameHostEnergy;
 
+                if (!log)
+                    continue;
                 Log.printLine();
                 Log.formatLine(
                         "%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
@@ -470,10 +543,11 @@ public class FogDevice extends PowerDatacenter {
                         timeFrameHostEnergy);
             }
 
-            Log.formatLine(
-                    "\n%.2f: Data center's energy is %.2f W*sec\n",
-                    currentTime,
-                    timeFrameDatacenterEnergy);
+            if (log)
+                Log.formatLine(
+                        "\n%.2f: Data center's energy is %.2f W*sec\n",
+                        currentTime,
+                        timeFrameDatacenterEnergy);
         }
 
         setPower(getPower() + timeFrameDatacenterEnergy);
@@ -511,16 +585,20 @@ public class FogDevice extends PowerDatacenter {
 
                         cloudletCompleted = true;
                         Tuple tuple = (Tuple) cl;
-                        TimeKeeper.getInstance().tupleEndedExecution(tuple);
                         Application application = getApplicationMap().get(tuple.getAppId());
-                        Logger.debug(getName(), "Completed execution of tuple " + tuple.getCloudletId() + "on " + tuple.getDestModuleName());
+                        if (Logger.ENABLED)
+                            Logger.debug(getName(), "Completed execution of tuple " + tuple.getCloudletId() + "on " + tuple.getDestModuleName());
+                        if (EventTrace.ENABLED)
+                            EventTrace.tupleExecuted(getId(), tuple, vm.getId());
                         List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), vm.getId());
                         for (Tuple resTuple : resultantTuples) {
-                            resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
+                            resTuple.setModuleCopyMap(new SmallMap<String, Integer>(tuple.getModuleCopyMap()));
                             resTuple.getModuleCopyMap().put(((AppModule) vm).getName(), vm.getId());
                             updateTimingsOnSending(resTuple);
                             sendToSelf(resTuple);
                         }
+                        // after the resultant tuples are sent, which may carry on the loop of the tuple
+                        TimeKeeper.getInstance().tupleEndedExecution(tuple);
                         sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
                     }
                 }
@@ -539,10 +617,7 @@ public class FogDevice extends PowerDatacenter {
             if (loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)) {
                 int tupleId = TimeKeeper.getInstance().getUniqueId();
                 resTuple.setActualTupleId(tupleId);
-                if (!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-                    TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-                TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-                TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
+                TimeKeeper.getInstance().tupleEmitted(loop.getLoopId(), tupleId);
 
                 //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
 
@@ -550,11 +625,22 @@ public class FogDevice extends PowerDatacenter {
         }
     }
 
+    /**
+     * Gets the child of this device through which a device below it is reached.
+     *
+     * @param targetDeviceId the id of the device to reach
+     * @return the id of the child, or -1 if the device is not below this one
+     */
     protected int getChildIdWithRouteTo(int targetDeviceId) {
+        int childId = DescendantIndex.getInstance().getChildIdWithRouteTo(getId(), targetDeviceId);
+        return childId != -2 ? childId : findChildIdWithRouteTo(targetDeviceId);
+    }
+
+    private int findChildIdWithRouteTo(int targetDeviceId) {
         for (Integer childId : getChildrenIds()) {
             if (targetDeviceId == childId)
                 return childId;
-            if (((FogDevice) CloudSim.getEntity(childId)).getChildIdWithRouteTo(targetDeviceId) != -1)
+            if (((FogDevice) CloudSim.getEntity(childId)).findChildIdWithRouteTo(targetDeviceId) != -1)
                 return childId;
         }
         return -1;
@@ -568,32 +654,84 @@ public class FogDevice extends PowerDatacenter {
         return -1;
     }
 
+    /**
+     * Allocates all the host MIPS to the VMs running a tuple or about to, and none to the others,
+     * then accounts for the energy and cost up to now. The allocation is rebuilt only if the
+     * running state of a VM, the VM list or the allocation itself has changed since the last one.
+     *
+     * @param incomingOperator the module about to run a tuple, or <tt>null</tt>
+     */
     protected void updateAllocatedMips(String incomingOperator) {
-        getHost().getVmScheduler().deallocatePesForAllVms();
-        for (final Vm vm : getHost().getVmList()) {
-            if (vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator)) {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
-            } else {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add(0.0);
-                    }
-                });
-            }
+        List<Vm> vms = getHost().getVmList();
+        boolean[] running = allocatedRunning.length == vms.size() ? null : new boolean[vms.size()];
+        boolean changed = running != null || getFullMipsShare() != allocatedFullMipsShare;
+        for (int i = 0; i < vms.size() && !changed; i++) {
+            Vm vm = vms.get(i);
+            changed = vm != allocatedVms[i] || vm.isInMigration()
+                    || isRunning(vm, incomingOperator) != allocatedRunning[i]
+                    || getHost().getVmScheduler().getAllocatedMipsForVm(vm) != allocatedShares[i];
+        }
+        if (changed) {
+            if (running == null)
+                running = allocatedRunning;
+            for (int i = 0; i < vms.size(); i++)
+                running[i] = isRunning(vms.get(i), incomingOperator);
+            reallocateMips(vms, running);
         }
 
         updateEnergyConsumption();
 
     }
 
+    /**
+     * Gives all the host MIPS to a VM, on top of the allocation made by
+     * {@link #updateAllocatedMips(String)}, which will then be rebuilt on its next call.
+     *
+     * @param vm the VM
+     */
+    protected void allocateFullMips(Vm vm) {
+        getHost().getVmScheduler().deallocatePesForVm(vm);
+        getHost().getVmScheduler().allocatePesForVm(vm, getFullMipsShare());
+        allocatedFullMipsShare = null;
+    }
+
+    private boolean isRunning(Vm vm, String incomingOperator) {
+        return vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator);
+    }
+
+    private List<Double> getFullMipsShare() {
+        double totalMips = getHost().getTotalMips();
+        if (fullMipsShare == null || fullMipsShare.get(0) != totalMips)
+            fullMipsShare = Collections.singletonList(totalMips);
+        return fullMipsShare;
+    }
+
+    /**
+     * Rebuilds the allocation of the host MIPS and records it. Time shared schedulers spread the
+     * MIPS over all the VMs whenever one of them changes, so the whole allocation is rebuilt in
+     * host VM list order, as a single change would not be cheaper and could end up different.
+     *
+     * @param vms the VMs of the host
+     * @param running whether each VM is running
+     */
+    private void reallocateMips(List<Vm> vms, boolean[] running) {
+        VmScheduler scheduler = getHost().getVmScheduler();
+        scheduler.deallocatePesForAllVms();
+        for (int i = 0; i < vms.size(); i++)
+            scheduler.allocatePesForVm(vms.get(i), running[i] ? getFullMipsShare() : IDLE_MIPS_SHARE);
+
+        if (allocatedVms.length != vms.size()) {
+            allocatedVms = new Vm[vms.size()];
+            allocatedShares = new List<?>[vms.size()];
+        }
+        for (int i = 0; i < vms.size(); i++) {
+            allocatedVms[i] = vms.get(i);
+            allocatedShares[i] = scheduler.getAllocatedMipsForVm(vms.get(i));
+        }
+        allocatedRunning = running;
+        allocatedFullMipsShare = getFullMipsShare();
+    }
+
     private void updateEnergyConsumption() {
         double totalMipsAllocated = 0;
         for (final Vm vm : getHost().getVmList()) {
@@ -607,6 +745,8 @@ public class FogDevice extends PowerDatacenter {
         double currentEnergyConsumption = getEnergyConsumption();
         double newEnergyConsumption = currentEnergyConsumption + (timeNow - lastUtilizationUpdateTime) * getHost().getPowerModel().getPower(lastUtilization);
         setEnergyConsumption(newEnergyConsumption);
+        if (EventTrace.ENABLED)
+            EventTrace.energyConsumed(getId(), newEnergyConsumption - currentEnergyConsumption);
 	
 		/*if(getName().equals("d-0")){
 			System.out.println("------------------------");
@@ -631,8 +771,10 @@ public class FogDevice extends PowerDatacenter {
     public void addChild(int childId) {
         if (CloudSim.getEntityName(childId).toLowerCase().contains("sensor"))
             return;
-        if (!getChildrenIds().contains(childId) && childId != getId())
+        if (!getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().add(childId);
+            DescendantIndex.getInstance().childAdded(getId(), childId);
+        }
         if (!getChildToOperatorsMap().containsKey(childId))
             getChildToOperatorsMap().put(childId, new ArrayList<String>());
     }
@@ -663,6 +805,7 @@ public class FogDevice extends PowerDatacenter {
             String actuatorType = ((Actuator) CloudSim.getEntity(actuatorId)).getActuatorType();
             if (tuple.getDestModuleName().equals(actuatorType)) {
                 send(actuatorId, delay, FogEvents.TUPLE_ARRIVAL, tuple);
+                TimeKeeper.getInstance().tupleSent(tuple);
                 return;
             }
         }
@@ -676,15 +819,18 @@ public class FogDevice extends PowerDatacenter {
     protected void processTupleArrival(SimEvent ev) {
         Tuple tuple = (Tuple) ev.getData();
 
-        if (getName().equals("cloud")) {
+        if (isCloud) {
             updateCloudTraffic();
         }
 		
 		/*if(getName().equals("d-0") && tuple.getTupleType().equals("_SENSOR")){
 			System.out.println(++numClients);
 		}*/
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-                CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (Logger.ENABLED)
+            Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
+                    CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (EventTrace.ENABLED)
+            EventTrace.tupleReceived(getId(), tuple, ev.getSource());
 		
 		/*if(CloudSim.getEntityName(ev.getSource()).equals("drone_0")||CloudSim.getEntityName(ev.getDestination()).equals("drone_0"))
 			System.out.println(CloudSim.clock()+" "+getName()+" Received tuple "+tuple.getCloudletId()+" with tupleType = "+tuple.getTupleType()+"\t| Source : "+
@@ -692,7 +838,7 @@ public class FogDevice extends PowerDatacenter {
 
         send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 
-        if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
+        if (FogUtils.getAppIdToGeoCoverageMap().containsKey(tuple.getAppId())) {
         }
 
         if (tuple.getDirection() == Tuple.ACTUATOR) {
@@ -701,34 +847,21 @@ public class FogDevice extends PowerDatacenter {
         }
 
         if (getHost().getVmList().size() > 0) {
-            final AppModule operator = (AppModule) getHost().getVmList().get(0);
+            AppModule operator = (AppModule) getHost().getVmList().get(0);
             if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
+                allocateFullMips(operator);
             }
         }
 
 
-        if (getName().equals("cloud") && tuple.getDestModuleName() == null) {
+        if (isCloud && tuple.getDestModuleName() == null) {
             sendNow(getControllerId(), FogEvents.TUPLE_FINISHED, null);
         }
 
         if (appToModulesMap.containsKey(tuple.getAppId())) {
             if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                int vmId = -1;
-                for (Vm vm : getHost().getVmList()) {
-                    if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                        vmId = vm.getId();
-                }
-                if (vmId < 0
-                        || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                        tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
+                int vmId = getTargetVmId(tuple);
+                if (vmId < 0) {
                     return;
                 }
                 tuple.setVmId(vmId);
@@ -764,20 +897,7 @@ public class FogDevice extends PowerDatacenter {
         List<AppLoop> loops = app.getLoops();
         for (AppLoop loop : loops) {
             if (loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)) {
-                Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                if (startTime == null)
-                    break;
-                if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
-                    TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-                    TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-                }
-                double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-                int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-                double delay = CloudSim.clock() - TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-                double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
-                TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-                TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
+                TimeKeeper.getInstance().tupleReachedEndOfLoop(loop.getLoopId(), tuple.getActualTupleId());
                 break;
             }
         }
@@ -788,7 +908,8 @@ public class FogDevice extends PowerDatacenter {
     }
 
     protected void executeTuple(SimEvent ev, String moduleName) {
-        Logger.debug(getName(), "Executing tuple on module " + moduleName);
+        if (Logger.ENABLED)
+            Logger.debug(getName(), "Executing tuple on module " + moduleName);
         Tuple tuple = (Tuple) ev.getData();
 
         AppModule module = getModuleByName(moduleName);
@@ -868,6 +989,8 @@ public class FogDevice extends PowerDatacenter {
         send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
         send(parentId, networkDelay + getUplinkLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(getUplinkLatency(), tuple.getCloudletFileSize());
+        if (EventTrace.ENABLED)
+            EventTrace.tupleSent(getId(), tuple, parentId);
     }
 
     protected void sendUp(Tuple tuple) {
@@ -877,6 +1000,7 @@ public class FogDevice extends PowerDatacenter {
             } else {
                 northTupleQueue.add(tuple);
             }
+            TimeKeeper.getInstance().tupleSent(tuple);
         }
     }
 
@@ -899,6 +1023,8 @@ public class FogDevice extends PowerDatacenter {
         send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
         send(childId, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+        if (EventTrace.ENABLED)
+            EventTrace.tupleSent(getId(), tuple, childId);
     }
 
     protected void sendDown(Tuple tuple, int childId) {
@@ -908,12 +1034,14 @@ public class FogDevice extends PowerDatacenter {
             } else {
                 southTupleQueue.add(new Pair<Tuple, Integer>(tuple, childId));
             }
+            TimeKeeper.getInstance().tupleSent(tuple);
         }
     }
 
 
     protected void sendToSelf(Tuple tuple) {
         send(getId(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ARRIVAL, tuple);
+        TimeKeeper.getInstance().tupleSent(tuple);
     }
 
     public PowerHost getHost() {
@@ -934,6 +1062,7 @@ public class FogDevice extends PowerDatacenter {
 
     public void setChildrenIds(List<Integer> childrenIds) {
         this.childrenIds = childrenIds;
+        DescendantIndex.getInstance().invalidate();
     }
 
     public double getUplinkBandwidth() {
@@ -1089,8 +1218,10 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         @SuppressWarnings("deprecation")
         Integer childIDobject = new Integer(childId);
-        if (getChildrenIds().contains(childId) && childId != getId())
+        if (getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().remove(childIDobject);
+            DescendantIndex.getInstance().childRemoved(getId(), childId);
+        }
         if (getChildToOperatorsMap().containsKey(childId)) {
             List<String> operatorName = getChildToOperatorsMap().get(childId);
             getChildToOperatorsMap().remove(childId, operatorName);
@@ -1154,6 +1285,7 @@ public class FogDevice extends PowerDatacenter {
             } else {
                 clusterTupleQueue.add(new Pair<Tuple, Integer>(tuple, clusterNodeID));
             }
+            TimeKeeper.getInstance().tupleSent(tuple);
         }
     }
 
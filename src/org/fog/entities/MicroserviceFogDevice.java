@@ -2,7 +2,6 @@ package org.fog.entities;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.Storage;
-import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEvent;
@@ -27,6 +26,10 @@ public class MicroserviceFogDevice extends FogDevice {
      * thus for security resons client devices are not used for that)
      */
     protected String deviceType = null;
+    /**
+     * Whether the device type is CLOUD, resolved when the type is set instead of on every tuple.
+     */
+    protected boolean isCloudDevice = false;
     public static final String CLIENT = "client";
     public static final String FCN = "fcn"; // fog computation node
     public static final String FON = "fon"; // fog orchestration node
@@ -134,9 +137,10 @@ public class MicroserviceFogDevice extends FogDevice {
 
     protected void setDeviceType(String deviceType) {
         if (deviceType.equals(MicroserviceFogDevice.CLIENT) || deviceType.equals(MicroserviceFogDevice.FCN) ||
-                deviceType.equals(MicroserviceFogDevice.FON) || deviceType.equals(MicroserviceFogDevice.CLOUD))
+                deviceType.equals(MicroserviceFogDevice.FON) || deviceType.equals(MicroserviceFogDevice.CLOUD)) {
             this.deviceType = deviceType;
-        else
+            isCloudDevice = deviceType.equals(MicroserviceFogDevice.CLOUD);
+        } else
             Logger.error("Incompatible Device Type", "Device type not included in device type enums in MicroserviceFogDevice class");
     }
 
@@ -156,16 +160,19 @@ public class MicroserviceFogDevice extends FogDevice {
 
         Tuple tuple = (Tuple) ev.getData();
 
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-                CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (Logger.ENABLED)
+            Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
+                    CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (EventTrace.ENABLED)
+            EventTrace.tupleReceived(getId(), tuple, ev.getSource());
 
-        if (deviceType.equals(MicroserviceFogDevice.CLOUD)) {
+        if (isCloudDevice) {
             updateCloudTraffic();
         }
 
         send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 
-        if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
+        if (FogUtils.getAppIdToGeoCoverageMap().containsKey(tuple.getAppId())) {
         }
 
         if (tuple.getDirection() == Tuple.ACTUATOR) {
@@ -174,20 +181,13 @@ public class MicroserviceFogDevice extends FogDevice {
         }
 
         if (getHost().getVmList().size() > 0) {
-            final AppModule operator = (AppModule) getHost().getVmList().get(0);
+            AppModule operator = (AppModule) getHost().getVmList().get(0);
             if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
+                allocateFullMips(operator);
             }
         }
 
-        if (deviceType.equals(MicroserviceFogDevice.CLOUD) && tuple.getDestModuleName() == null) {
+        if (isCloudDevice && tuple.getDestModuleName() == null) {
             sendNow(getControllerId(), FogEvents.TUPLE_FINISHED, null);
         }
 
@@ -210,14 +210,8 @@ public class MicroserviceFogDevice extends FogDevice {
         }
 
         if (tuple.getDestinationDeviceId() == getId()) {
-            int vmId = -1;
-            for (Vm vm : getHost().getVmList()) {
-                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                    vmId = vm.getId();
-            }
-            if (vmId < 0
-                    || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                    tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
+            int vmId = getTargetVmId(tuple);
+            if (vmId < 0) {
                 return;
             }
             tuple.setVmId(vmId);
@@ -243,14 +237,8 @@ public class MicroserviceFogDevice extends FogDevice {
                 if (tuple.getDirection() == Tuple.DOWN) {
                     if (appToModulesMap.containsKey(tuple.getAppId())) {
                         if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                            int vmId = -1;
-                            for (Vm vm : getHost().getVmList()) {
-                                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                                    vmId = vm.getId();
-                            }
-                            if (vmId < 0
-                                    || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                                    tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
+                            int vmId = getTargetVmId(tuple);
+                            if (vmId < 0) {
                                 return;
                             }
                             tuple.setVmId(vmId);
@@ -453,7 +441,8 @@ public class MicroserviceFogDevice extends FogDevice {
                         .getAllocatedMipsForVm(module));
 
                 System.out.println("Module " + module.getName() + "created on " + getName() + " under Launch module");
-                Logger.debug("Module deploy success", "Module " + module.getName() + " placement on " + getName() + " successful. vm id : " + module.getId());
+                if (Logger.ENABLED)
+                    Logger.debug("Module deploy success", "Module " + module.getName() + " placement on " + getName() + " successful. vm id : " + module.getId());
             } else {
                 Logger.error("Module deploy error", "Module " + module.getName() + " placement on " + getName() + " failed");
                 System.out.println("Module " + module.getName() + " placement on " + getName() + " failed");
@@ -477,6 +466,8 @@ public class MicroserviceFogDevice extends FogDevice {
 
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
+        if (EventTrace.ENABLED)
+            EventTrace.moduleMigrated(getId(), appModule, ev.getSource(), (double) object.get("delay"));
     }
 
 
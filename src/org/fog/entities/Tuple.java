@@ -1,10 +1,11 @@
 package org.fog.entities;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.fog.utils.SmallMap;
 
 public class Tuple extends Cloudlet{
 
@@ -12,6 +13,12 @@ public class Tuple extends Cloudlet{
 	public static final int DOWN = 2;
 	public static final int ACTUATOR = 3;
 	
+	/**
+	 * Utilization model of tuples using their full share of resources. It has no state,
+	 * so all tuples share it instead of creating three models each.
+	 */
+	public static final UtilizationModel FULL_UTILIZATION = new UtilizationModelFull();
+	
 	private String appId;
 	
 	private String tupleType;
@@ -35,7 +42,7 @@ public class Tuple extends Cloudlet{
 	protected int destinationDeviceId;
 	/* keep track of traversed microservices by tuples of type UP in microservices architecture UP -> tuple travelling towards service
 	 DOWN -> tuple travelling from service to client microservice.*/
-	protected Map<String, Integer> traversedMicroservices = new HashMap<>();
+	protected Map<String, Integer> traversedMicroservices = new SmallMap<>();
 	
 	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
 			long cloudletFileSize, long cloudletOutputSize,
@@ -48,7 +55,7 @@ public class Tuple extends Cloudlet{
 		setAppId(appId);
 		setDirection(direction);
 		setSourceDeviceId(-1);
-		setModuleCopyMap(new HashMap<String, Integer>());
+		setModuleCopyMap(new SmallMap<String, Integer>());
 		setDestinationDeviceId(-1);
 	}
 
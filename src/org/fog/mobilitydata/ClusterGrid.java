@@ -0,0 +1,269 @@
+package org.fog.mobilitydata;
+
+import org.fog.placement.LocationHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The clusters of the children of one parent, found with a uniform latitude / longitude grid
+ * whose cells are as large as the communication range, so that a node is only compared with the
+ * siblings of the few cells around it.
+ *
+ * All the clusters are computed at once, when the grid is built, and kept up to date as children
+ * join or leave the parent. The members of a node are the siblings within range of it, in the
+ * order of the children list of the parent, as {@link Clustering} always listed them.
+ *
+ * @author Mohammad Goudarzi
+ */
+class ClusterGrid {
+
+    /** Radius of the earth in kilometers, as used by the range check. */
+    private static final double R = 6371;
+
+    /** Widening of the search area, so that rounding can never leave a sibling in range out. */
+    private static final double MARGIN = 1e-6;
+
+    /** Beyond this number of cells per row, a row is scanned as a whole. */
+    private static final int MAX_COLUMNS = 64;
+
+    private final LocationHandler locator;
+    private final double range;
+
+    /** Size of a cell in degrees, and the angle covered by the range in radians. */
+    private final double cellSize;
+    private final double rangeAngle;
+
+    /** The children of the parent, in order, and the position of each one. */
+    private List<Integer> siblings = new ArrayList<>();
+    private Map<Integer, Integer> positions = new HashMap<>();
+
+    /** Nodes by cell, the cell of each node, and the rows of the grid with the nodes in them. */
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    private final Map<Integer, Long> cellOfNode = new HashMap<>();
+    private final Map<Integer, Set<Long>> rows = new HashMap<>();
+
+    /** The cluster members of each node. */
+    private final Map<Integer, List<Integer>> members = new HashMap<>();
+
+    ClusterGrid(LocationHandler locator, double range) {
+        this.locator = locator;
+        this.range = range;
+        rangeAngle = Math.max(range / 1000 / R, 0) * (1 + MARGIN) + MARGIN * MARGIN;
+        cellSize = Math.max(Math.toDegrees(rangeAngle), 1e-9);
+    }
+
+    boolean isFor(LocationHandler locator, double range) {
+        return this.locator == locator && this.range == range;
+    }
+
+    /**
+     * Gets the cluster members of a child.
+     *
+     * @param nodeId the id of the child
+     * @return the members, in children list order
+     */
+    List<Integer> getMembers(int nodeId) {
+        List<Integer> list = members.get(nodeId);
+        return list == null ? Collections.<Integer>emptyList() : list;
+    }
+
+    boolean contains(int nodeId) {
+        return positions.containsKey(nodeId);
+    }
+
+    /**
+     * Brings the clusters up to date with the children of the parent.
+     *
+     * @param children the children list of the parent
+     * @return false if the children list holds a child twice, which the grid does not handle
+     */
+    boolean update(List<Integer> children) {
+        if (children.equals(siblings))
+            return true;
+        Set<Integer> current = new HashSet<>(children);
+        if (current.size() != children.size())
+            return false;
+        List<Integer> left = new ArrayList<>();
+        List<Integer> kept = new ArrayList<>();
+        for (int nodeId : siblings) {
+            if (current.contains(nodeId))
+                kept.add(nodeId);
+            else
+                left.add(nodeId);
+        }
+        siblings = new ArrayList<>(children);
+        positions = new HashMap<>();
+        for (int i = 0; i < siblings.size(); i++)
+            positions.put(siblings.get(i), i);
+
+        for (int nodeId : left)
+            remove(nodeId);
+        if (!kept.equals(retained(siblings))) {
+            // children were moved within the list : the members follow the new order
+            for (List<Integer> list : members.values())
+                Collections.sort(list, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        return Integer.compare(positions.get(a), positions.get(b));
+                    }
+                });
+        }
+        List<Integer> joined = new ArrayList<>();
+        for (int nodeId : siblings) {
+            if (!cellOfNode.containsKey(nodeId)) {
+                insert(nodeId);
+                joined.add(nodeId);
+            }
+        }
+        for (int nodeId : joined)
+            members.put(nodeId, search(nodeId));
+        Set<Integer> joinedSet = new HashSet<>(joined);
+        for (int nodeId : joined) {
+            for (int siblingId : candidates(location(nodeId))) {
+                // each node checks the range from its own location
+                if (joinedSet.contains(siblingId) || !inRange(location(siblingId), location(nodeId)))
+                    continue;
+                List<Integer> list = members.get(siblingId);
+                int index = Collections.binarySearch(positionsOf(list), positions.get(nodeId));
+                list.add(-index - 1, nodeId);
+            }
+        }
+        return true;
+    }
+
+    /** The children that were already in the grid, in children list order. */
+    private List<Integer> retained(List<Integer> children) {
+        List<Integer> list = new ArrayList<>();
+        for (int nodeId : children) {
+            if (cellOfNode.containsKey(nodeId))
+                list.add(nodeId);
+        }
+        return list;
+    }
+
+    private List<Integer> positionsOf(List<Integer> nodeIds) {
+        List<Integer> list = new ArrayList<>(nodeIds.size());
+        for (int nodeId : nodeIds)
+            list.add(positions.get(nodeId));
+        return list;
+    }
+
+    private Location location(int nodeId) {
+        return locator.dataObject.resourceLocationData.get(locator.instanceToDataId.get(nodeId));
+    }
+
+    private long cell(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    private int row(Location location) {
+        return (int) Math.floor(location.latitude / cellSize);
+    }
+
+    private int column(Location location) {
+        return (int) Math.floor(location.longitude / cellSize);
+    }
+
+    private void insert(int nodeId) {
+        Location location = location(nodeId);
+        int row = row(location);
+        long cell = cell(row, column(location));
+        if (!cells.containsKey(cell))
+            cells.put(cell, new ArrayList<Integer>());
+        cells.get(cell).add(nodeId);
+        cellOfNode.put(nodeId, cell);
+        if (!rows.containsKey(row))
+            rows.put(row, new HashSet<Long>());
+        rows.get(row).add(cell);
+    }
+
+    private void remove(int nodeId) {
+        for (int siblingId : candidates(location(nodeId))) {
+            List<Integer> list = members.get(siblingId);
+            if (list != null)
+                list.remove(Integer.valueOf(nodeId));
+        }
+        members.remove(nodeId);
+        Long cell = cellOfNode.remove(nodeId);
+        List<Integer> nodes = cells.get(cell);
+        nodes.remove(Integer.valueOf(nodeId));
+        if (nodes.isEmpty()) {
+            cells.remove(cell);
+            int row = (int) (cell >> 32);
+            rows.get(row).remove(cell);
+            if (rows.get(row).isEmpty())
+                rows.remove(row);
+        }
+    }
+
+    /**
+     * Finds the siblings in range of a node.
+     *
+     * @param nodeId the id of the node
+     * @return the siblings in range, in children list order
+     */
+    private List<Integer> search(int nodeId) {
+        Location location = location(nodeId);
+        List<Integer> candidates = candidates(location);
+        int[] order = new int[candidates.size()];
+        int count = 0;
+        for (int candidate : candidates) {
+            if (candidate != nodeId && inRange(location, location(candidate)))
+                order[count++] = positions.get(candidate);
+        }
+        Arrays.sort(order, 0, count);
+        List<Integer> inRange = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            inRange.add(siblings.get(order[i]));
+        return inRange;
+    }
+
+    /**
+     * Gets the nodes of the cells around a location, which include all the nodes in range of it.
+     *
+     * @param location the location
+     * @return the nodes
+     */
+    private List<Integer> candidates(Location location) {
+        double latitude = Math.toRadians(location.latitude);
+        int firstRow = (int) Math.floor(Math.toDegrees(latitude - rangeAngle) / cellSize);
+        int lastRow = (int) Math.floor(Math.toDegrees(latitude + rangeAngle) / cellSize);
+        // hav(d) >= cos(lat1) cos(lat2) hav(dLon) bounds the longitude difference of a node in range
+        double cosMin = Math.cos(Math.min(Math.PI / 2, Math.abs(latitude) + rangeAngle));
+        double sinHalf = Math.sin(Math.min(Math.PI / 2, rangeAngle / 2)) / cosMin;
+        double lonAngle = sinHalf >= 1 || cosMin <= 0 ? Math.PI : 2 * Math.asin(sinHalf) * (1 + MARGIN) + MARGIN * MARGIN;
+        int firstColumn = (int) Math.floor(Math.toDegrees(Math.toRadians(location.longitude) - lonAngle) / cellSize);
+        int lastColumn = (int) Math.floor(Math.toDegrees(Math.toRadians(location.longitude) + lonAngle) / cellSize);
+        boolean wraps = Math.toDegrees(lonAngle) + Math.abs(location.longitude) >= 180;
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            Set<Long> rowCells = rows.get(row);
+            if (rowCells == null)
+                continue;
+            if (wraps || lastColumn - firstColumn >= MAX_COLUMNS) {
+                for (long cell : rowCells)
+                    candidates.addAll(cells.get(cell));
+            } else {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    List<Integer> nodes = cells.get(cell(row, column));
+                    if (nodes != null)
+                        candidates.addAll(nodes);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private boolean inRange(Location from, Location to) {
+        return Clustering.calculateInRange(from, to, range);
+    }
+}
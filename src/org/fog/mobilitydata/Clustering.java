@@ -1,6 +1,7 @@
 package org.fog.mobilitydata;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.ContextLocal;
 import org.fog.entities.FogDevice;
 import org.fog.placement.LocationHandler;
 import org.fog.utils.Config;
@@ -16,9 +17,20 @@ import java.util.Map;
  * @author Mohammad Goudarzi
  */
 public class Clustering {
+
+    /**
+     * The clusters of the children of each parent, computed all at once for the first child that
+     * asks and kept up to date as children join or leave.
+     */
+    private static final ContextLocal<Map<Integer, ClusterGrid>> gridsByParent = new ContextLocal<Map<Integer, ClusterGrid>>() {
+        @Override
+        protected Map<Integer, ClusterGrid> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
     public void createClusterMembers(int parentId, int nodeId, JSONObject locatorObject) {
         List<Integer> SiblingListIDs = new ArrayList<>();
-        List<FogDevice> SiblingsList = new ArrayList<FogDevice>();
         List<Integer> clusterMemberList = new ArrayList<>();
         int fogId = nodeId;
         LocationHandler locatorTemp = new LocationHandler();
@@ -33,37 +45,16 @@ public class Clustering {
             return;
         }
 
-        for (int i = 0; i < SiblingListIDs.size(); i++) {
-            int tempId = SiblingListIDs.get(i);
-            FogDevice tempNode = (FogDevice) CloudSim.getEntity(tempId);
-            SiblingsList.add(tempNode);
+        Map<Integer, ClusterGrid> grids = gridsByParent.get();
+        ClusterGrid grid = grids.get(parentId);
+        if (grid == null || !grid.isFor(locatorTemp, Config.Node_Communication_RANGE)) {
+            grid = new ClusterGrid(locatorTemp, Config.Node_Communication_RANGE);
+            grids.put(parentId, grid);
         }
-
-        double fogNodePositionX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).latitude;
-        double fogNodePositionY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).longitude;
-        Location L1 = new Location(fogNodePositionX, fogNodePositionY, 0);
-        for (FogDevice fogdevice : SiblingsList) {
-
-            if (fogId == fogdevice.getId()) {
-                continue;
-            }
-            // To check all siblings except itself
-            double tempX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).latitude;
-            double tempY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogdevice.getId())).longitude;
-
-            Location L2 = new Location(tempX, tempY, 0);
-
-            boolean clusterCheck = calculateInRange(L1, L2, Config.Node_Communication_RANGE);
-
-            //Clustering Policy
-            //double x = Math.pow((fogNodePositionX - tempX), 2) + Math.pow((fogNodePositionY - tempY), 2);
-
-            /*if (Math.sqrt(x) <= Config.Node_Communication_RANGE / 1000) {
-                clusterMemberList.add(fogdevice.getId());
-            */
-            if (clusterCheck == true) {
-                clusterMemberList.add(fogdevice.getId());
-            }
+        if (grid.update(SiblingListIDs) && grid.contains(fogId)) {
+            clusterMemberList = new ArrayList<>(grid.getMembers(fogId));
+        } else {
+            clusterMemberList = scanSiblings(SiblingListIDs, fogId, locatorTemp);
         }
         // Clustering Policy
 
@@ -87,7 +78,28 @@ public class Clustering {
         return;
     }
 
-    private static boolean calculateInRange(Location loc1, Location loc2, double fogRange) {
+    /**
+     * Finds the siblings in range of a node by checking each one of them.
+     */
+    private static List<Integer> scanSiblings(List<Integer> SiblingListIDs, int fogId, LocationHandler locatorTemp) {
+        List<Integer> clusterMemberList = new ArrayList<>();
+        double fogNodePositionX = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).latitude;
+        double fogNodePositionY = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(fogId)).longitude;
+        Location L1 = new Location(fogNodePositionX, fogNodePositionY, 0);
+        for (int tempId : SiblingListIDs) {
+            if (fogId == tempId) {
+                continue;
+            }
+            // To check all siblings except itself
+            Location L2 = locatorTemp.dataObject.resourceLocationData.get(locatorTemp.instanceToDataId.get(tempId));
+            if (calculateInRange(L1, L2, Config.Node_Communication_RANGE)) {
+                clusterMemberList.add(tempId);
+            }
+        }
+        return clusterMemberList;
+    }
+
+    static boolean calculateInRange(Location loc1, Location loc2, double fogRange) {
 
         final int R = 6371; // Radius of the earth in Kilometers
 
@@ -6,10 +6,15 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
+import java.util.Set;
 
 
 public class DataParser {
@@ -19,9 +24,16 @@ public class DataParser {
     public Map<String, Integer> resourceAndUserToLevel = new HashMap<String, Integer>();
     public Map<String, Map<Double, Location>> usersLocation = new HashMap<String, Map<Double, Location>>();
 
+    /** Traces of the users loaded from a trace file, in place of usersLocation, or null. */
+    private MobilityTraceStore userTraces;
+    private final List<String> loadedTraceUsers = new ArrayList<String>();
+
+    /** The event times of the users of usersLocation, sorted, built when first needed. */
+    private final Map<String, double[]> sortedEventTimes = new HashMap<String, double[]>();
+
 
     public DataParser() {
-        File configFile = new File(".\\dataset\\config.properties");
+        File configFile = new File(References.dataset_config);
         try {
             FileReader reader = new FileReader(configFile);
             Properties props = new Properties();
@@ -63,33 +75,185 @@ public class DataParser {
 
         for (int userID : userMobilityPattern.keySet()) {
 
-            Map<Double, Location> tempUserLocationInfo = new HashMap<Double, Location>();
-            BufferedReader csvReader = new BufferedReader(new FileReader(datasetReference + userID + ".csv"));
-            System.out.println("The Mobility dataset used in this simulation for user: " + userID + " is: " + datasetReference + userID + ".csv");
-            String row;
-            double eventTime = References.INIT_TIME;
-            while ((row = csvReader.readLine()) != null) {
-                String[] data = row.split(",");
-                try {
-                    Location rl = new Location(Double.parseDouble(data[0]), Double.parseDouble(data[1]), References.NOT_SET);
-                    if (!tempUserLocationInfo.containsKey(eventTime))
-                        tempUserLocationInfo.put(eventTime, rl);
-                    else {
-                        eventTime = nextMobilisationEvent(eventTime, userMobilityPattern.get(userID));
-                        tempUserLocationInfo.put(eventTime, rl);
-                    }
-
-                } catch (NumberFormatException ex) {
-                    //System.out.println("Given String is not parsable to double");
+            Map<Double, Location> tempUserLocationInfo = readUserData(userID, userMobilityPattern.get(userID), datasetReference);
+            usersLocation.put("usr_" + userID, tempUserLocationInfo);
+            resourceAndUserToLevel.put("usr_" + userID, levelID.get("User"));
+
+        }
+
+    }
+
+    private Map<Double, Location> readUserData(int userID, int mobilityPattern, String datasetReference) throws IOException {
+        Map<Double, Location> tempUserLocationInfo = new HashMap<Double, Location>();
+        BufferedReader csvReader = new BufferedReader(new FileReader(datasetReference + userID + ".csv"));
+        System.out.println("The Mobility dataset used in this simulation for user: " + userID + " is: " + datasetReference + userID + ".csv");
+        String row;
+        double eventTime = References.INIT_TIME;
+        while ((row = csvReader.readLine()) != null) {
+            String[] data = row.split(",");
+            try {
+                Location rl = new Location(Double.parseDouble(data[0]), Double.parseDouble(data[1]), References.NOT_SET);
+                if (!tempUserLocationInfo.containsKey(eventTime))
+                    tempUserLocationInfo.put(eventTime, rl);
+                else {
+                    eventTime = nextMobilisationEvent(eventTime, mobilityPattern);
+                    tempUserLocationInfo.put(eventTime, rl);
                 }
+
+            } catch (NumberFormatException ex) {
+                //System.out.println("Given String is not parsable to double");
             }
+        }
 
-            csvReader.close();
-            usersLocation.put("usr_" + userID, tempUserLocationInfo);
+        csvReader.close();
+        return tempUserLocationInfo;
+    }
+
+    /**
+     * Converts the CSV traces of the users to a trace file, to be loaded later with
+     * {@link #parseUserTraces(Map, File)}. The event times of the samples are drawn as by
+     * {@link #parseUserData(Map, String)}, once, and stored in the file.
+     *
+     * @param userMobilityPattern the mobility pattern of each user
+     * @param datasetReference the prefix of the CSV files, as given to parseUserData
+     * @param traceFile the trace file to write
+     * @throws IOException if a CSV file cannot be read or the trace file cannot be written
+     */
+    public void convertUserData(Map<Integer, Integer> userMobilityPattern, String datasetReference, File traceFile) throws IOException {
+        List<Integer> userIDs = new ArrayList<Integer>(userMobilityPattern.keySet());
+        Collections.sort(userIDs);
+        try (MobilityTraceStore.Writer writer = new MobilityTraceStore.Writer(traceFile)) {
+            for (int userID : userIDs) {
+                Map<Double, Location> userLocationInfo = readUserData(userID, userMobilityPattern.get(userID), datasetReference);
+                List<Double> eventTimes = new ArrayList<Double>(userLocationInfo.keySet());
+                Collections.sort(eventTimes);
+                double[] times = new double[eventTimes.size()];
+                double[] latitudes = new double[times.length];
+                double[] longitudes = new double[times.length];
+                for (int i = 0; i < times.length; i++) {
+                    times[i] = eventTimes.get(i);
+                    latitudes[i] = userLocationInfo.get(times[i]).latitude;
+                    longitudes[i] = userLocationInfo.get(times[i]).longitude;
+                }
+                writer.addUser(userID, times, latitudes, longitudes);
+            }
+        }
+    }
+
+    /**
+     * Loads the traces of the users from a trace file written by
+     * {@link #convertUserData(Map, String, File)}. The file is memory-mapped and the traces are
+     * read from it on demand, instead of being held in usersLocation.
+     *
+     * @param userMobilityPattern the mobility pattern of each user, of which only the users are used
+     * @param traceFile the trace file
+     * @throws IOException if the file cannot be read, or has no trace for one of the users
+     */
+    public void parseUserTraces(Map<Integer, Integer> userMobilityPattern, File traceFile) throws IOException {
+        userTraces = MobilityTraceStore.open(traceFile);
+        System.out.println("The Mobility dataset used in this simulation is: " + traceFile);
+        for (int userID : userMobilityPattern.keySet()) {
+            if (userTraces.getUserIndex(userID) < 0)
+                throw new IOException(traceFile + " has no trace for user " + userID);
             resourceAndUserToLevel.put("usr_" + userID, levelID.get("User"));
+            loadedTraceUsers.add("usr_" + userID);
+        }
+    }
+
+    /**
+     * Gets the location of a user at a time.
+     *
+     * @param dataId the data id of the user
+     * @param time the time
+     * @return the location, or null if the user has none at that time
+     */
+    public Location getUserLocation(String dataId, double time) {
+        Map<Double, Location> userLocationInfo = usersLocation.get(dataId);
+        if (userLocationInfo != null || userTraces == null)
+            return userLocationInfo == null ? null : userLocationInfo.get(time);
+        int sample = userTraces.getSampleAt(traceUserIndex(dataId), time);
+        if (sample < 0)
+            return null;
+        return new Location(userTraces.getLatitude(sample), userTraces.getLongitude(sample), References.NOT_SET);
+    }
 
+    /**
+     * Gets the times at which the location of a user changes.
+     *
+     * @param dataId the data id of the user
+     * @return the times
+     */
+    public List<Double> getUserEventTimes(String dataId) {
+        Map<Double, Location> userLocationInfo = usersLocation.get(dataId);
+        if (userLocationInfo != null || userTraces == null)
+            return new ArrayList<Double>(userLocationInfo.keySet());
+        int userIndex = traceUserIndex(dataId);
+        List<Double> eventTimes = new ArrayList<Double>();
+        for (int sample = userTraces.getFirstSample(userIndex); sample < userTraces.getEndSample(userIndex); sample++)
+            eventTimes.add(userTraces.getTime(sample));
+        return eventTimes;
+    }
+
+    public int getUserEventCount(String dataId) {
+        Map<Double, Location> userLocationInfo = usersLocation.get(dataId);
+        if (userLocationInfo != null || userTraces == null)
+            return userLocationInfo == null ? 0 : userLocationInfo.size();
+        int userIndex = traceUserIndex(dataId);
+        return userTraces.getEndSample(userIndex) - userTraces.getFirstSample(userIndex);
+    }
+
+    /**
+     * Gets the first event time of a user after a time.
+     *
+     * @param dataId the data id of the user
+     * @param time the time
+     * @return the event time, or NaN if the user has no event after the time
+     */
+    public double getNextUserEventTime(String dataId, double time) {
+        Map<Double, Location> userLocationInfo = usersLocation.get(dataId);
+        if (userLocationInfo != null || userTraces == null) {
+            if (userLocationInfo == null)
+                return Double.NaN;
+            double[] eventTimes = sortedEventTimes.get(dataId);
+            if (eventTimes == null || eventTimes.length != userLocationInfo.size()) {
+                eventTimes = new double[userLocationInfo.size()];
+                int i = 0;
+                for (double eventTime : userLocationInfo.keySet())
+                    eventTimes[i++] = eventTime;
+                Arrays.sort(eventTimes);
+                sortedEventTimes.put(dataId, eventTimes);
+            }
+            int low = 0;
+            int high = eventTimes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (eventTimes[middle] <= time)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low < eventTimes.length ? eventTimes[low] : Double.NaN;
         }
+        int userIndex = traceUserIndex(dataId);
+        int sample = userTraces.getSampleAt(userIndex, time) + 1;
+        if (sample == 0)
+            sample = userTraces.getFirstSample(userIndex);
+        return sample < userTraces.getEndSample(userIndex) ? userTraces.getTime(sample) : Double.NaN;
+    }
+
+    /**
+     * Gets the data ids of the users, whether parsed from CSV files or loaded from a trace file.
+     */
+    public List<String> getUserDataIds() {
+        if (loadedTraceUsers.isEmpty())
+            return new ArrayList<String>(usersLocation.keySet());
+        Set<String> dataIds = new HashSet<String>(usersLocation.keySet());
+        dataIds.addAll(loadedTraceUsers);
+        return new ArrayList<String>(dataIds);
+    }
 
+    private int traceUserIndex(String dataId) {
+        return userTraces.getUserIndex(Integer.parseInt(dataId.substring("usr_".length())));
     }
 
     @SuppressWarnings("unchecked")
@@ -102,7 +266,7 @@ public class DataParser {
             resouresOnLevels[i] = new ArrayList<String>();
 
 
-        BufferedReader csvReader = new BufferedReader(new FileReader(".\\dataset\\edgeResources-melbCBD.csv"));
+        BufferedReader csvReader = new BufferedReader(new FileReader(References.dataset_resources));
         String row;
         while ((row = csvReader.readLine()) != null) {
             String[] data = row.split(",");
@@ -0,0 +1,203 @@
+package org.fog.mobilitydata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index over the locations of a list of resources, answering nearest resource and same
+ * block queries without visiting every resource.
+ *
+ * Locations are placed on the unit sphere and kept in a 3-d tree. The straight line distance
+ * between two points of the sphere grows with the great circle distance, so the nearest point in
+ * the tree is the nearest resource. The distances of the few resources that are as near, up to
+ * rounding, are then compared with the given distance function, and ties go to the resource that
+ * comes first in the list, exactly as a scan of the list would decide.
+ */
+public class LocationIndex {
+
+	/** Relative margin covering rounding differences between the two distances. */
+	private static final double MARGIN = 1e-9;
+
+	/** Distance between two locations, as used to compare resources. */
+	public interface Distance {
+		double between(Location from, Location to);
+	}
+
+	private final List<String> dataIds;
+	private final Location[] locations;
+	private final Distance distance;
+
+	/** The coordinates of the locations on the unit sphere, by position in the list. */
+	private final double[][] points;
+
+	/** The positions of the locations, arranged as an implicit 3-d tree. */
+	private final int[] tree;
+
+	/** The positions of the resources of each block, in list order. */
+	private final Map<Integer, List<Integer>> blocks = new HashMap<Integer, List<Integer>>();
+
+	public LocationIndex(List<String> dataIds, Map<String, Location> resourceLocations, Distance distance) {
+		this.dataIds = new ArrayList<String>(dataIds);
+		this.distance = distance;
+		int size = dataIds.size();
+		locations = new Location[size];
+		points = new double[size][];
+		tree = new int[size];
+		for(int i=0;i<size;i++){
+			Location location = resourceLocations.get(dataIds.get(i));
+			locations[i] = location;
+			double latitude = Math.toRadians(location.latitude);
+			double longitude = Math.toRadians(location.longitude);
+			points[i] = new double[]{Math.cos(latitude)*Math.cos(longitude), Math.cos(latitude)*Math.sin(longitude), Math.sin(latitude)};
+			tree[i] = i;
+			if(!blocks.containsKey(location.block))
+				blocks.put(location.block, new ArrayList<Integer>());
+			blocks.get(location.block).add(i);
+		}
+		build(0, size, 0);
+	}
+
+	public int size() {
+		return dataIds.size();
+	}
+
+	public String getDataId(int position) {
+		return dataIds.get(position);
+	}
+
+	/**
+	 * Gets the positions of the resources located in a block.
+	 *
+	 * @param block the block
+	 * @return the positions, in list order
+	 */
+	public List<Integer> getPositionsInBlock(int block) {
+		List<Integer> positions = blocks.get(block);
+		return positions == null ? new ArrayList<Integer>() : positions;
+	}
+
+	/**
+	 * Finds the resource nearest to a location.
+	 *
+	 * @param location the location
+	 * @return the position of the resource, or -1 if there is none
+	 */
+	public int nearest(Location location) {
+		if(tree.length == 0)
+			return -1;
+		double latitude = Math.toRadians(location.latitude);
+		double longitude = Math.toRadians(location.longitude);
+		double[] point = {Math.cos(latitude)*Math.cos(longitude), Math.cos(latitude)*Math.sin(longitude), Math.sin(latitude)};
+
+		double[] best = {Double.POSITIVE_INFINITY};
+		searchNearest(point, 0, tree.length, 0, best);
+		double radius = Math.sqrt(best[0])*(1+MARGIN) + MARGIN;
+		List<Integer> candidates = new ArrayList<Integer>();
+		searchWithin(point, radius*radius, 0, tree.length, 0, candidates);
+
+		int nearest = -1;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for(int position : sorted(candidates)){
+			double d = distance.between(location, locations[position]);
+			if(d < nearestDistance || nearest < 0){
+				nearest = position;
+				nearestDistance = d;
+			}
+		}
+		return nearest;
+	}
+
+	private static int[] sorted(List<Integer> positions) {
+		int[] sorted = new int[positions.size()];
+		for(int i=0;i<sorted.length;i++)
+			sorted[i] = positions.get(i);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Arranges tree[from, to) so that its middle element splits the others along an axis, and the
+	 * two halves recursively along the next axis.
+	 */
+	private void build(int from, int to, int axis) {
+		if(to - from <= 1)
+			return;
+		int middle = (from + to) >>> 1;
+		select(from, to - 1, middle, axis);
+		build(from, middle, (axis + 1) % 3);
+		build(middle + 1, to, (axis + 1) % 3);
+	}
+
+	/** Quickselect of the element of rank k within tree[low, high] along an axis. */
+	private void select(int low, int high, int k, int axis) {
+		while(low < high){
+			double pivot = points[tree[(low + high) >>> 1]][axis];
+			int i = low;
+			int j = high;
+			while(i <= j){
+				while(points[tree[i]][axis] < pivot)
+					i++;
+				while(points[tree[j]][axis] > pivot)
+					j--;
+				if(i <= j){
+					int swap = tree[i];
+					tree[i++] = tree[j];
+					tree[j--] = swap;
+				}
+			}
+			if(k <= j)
+				high = j;
+			else if(k >= i)
+				low = i;
+			else
+				return;
+		}
+	}
+
+	private static double squaredDistance(double[] a, double[] b) {
+		double dx = a[0] - b[0];
+		double dy = a[1] - b[1];
+		double dz = a[2] - b[2];
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	private void searchNearest(double[] point, int from, int to, int axis, double[] best) {
+		if(from >= to)
+			return;
+		int middle = (from + to) >>> 1;
+		double[] split = points[tree[middle]];
+		double d = squaredDistance(point, split);
+		if(d < best[0])
+			best[0] = d;
+		double offset = point[axis] - split[axis];
+		int next = (axis + 1) % 3;
+		if(offset < 0){
+			searchNearest(point, from, middle, next, best);
+			if(offset*offset <= best[0])
+				searchNearest(point, middle + 1, to, next, best);
+		}
+		else{
+			searchNearest(point, middle + 1, to, next, best);
+			if(offset*offset <= best[0])
+				searchNearest(point, from, middle, next, best);
+		}
+	}
+
+	private void searchWithin(double[] point, double squaredRadius, int from, int to, int axis, List<Integer> found) {
+		if(from >= to)
+			return;
+		int middle = (from + to) >>> 1;
+		double[] split = points[tree[middle]];
+		if(squaredDistance(point, split) <= squaredRadius)
+			found.add(tree[middle]);
+		double offset = point[axis] - split[axis];
+		int next = (axis + 1) % 3;
+		if(offset <= 0 || offset*offset <= squaredRadius)
+			searchWithin(point, squaredRadius, from, middle, next, found);
+		if(offset >= 0 || offset*offset <= squaredRadius)
+			searchWithin(point, squaredRadius, middle + 1, to, next, found);
+	}
+}
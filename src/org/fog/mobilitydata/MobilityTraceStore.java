@@ -0,0 +1,263 @@
+package org.fog.mobilitydata;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read only store of the mobility traces of the users, kept in a binary columnar file that is
+ * memory-mapped, so that the traces take no heap and are paged in by the operating system.
+ * <p>
+ * The file holds, after a header, the sorted user ids, the index of the first sample of each user,
+ * then three columns with the time, latitude and longitude of all the samples, grouped by user and
+ * sorted by time within a user. Each part is mapped on its own, so a column may hold up to 2^28
+ * samples. Files are written once from the CSV traces with {@link DataParser#convertUserData}.
+ * <p>
+ * Lookups are binary searches over the mapped columns and allocate nothing.
+ *
+ * @author Mohammad Goudarzi
+ */
+public class MobilityTraceStore {
+
+    /** "MTRC" */
+    private static final int MAGIC = 0x4D545243;
+    private static final int VERSION = 1;
+
+    /** Size in bytes of the header : magic, version, user count, sample count, padded to 8 bytes. */
+    private static final int HEADER_SIZE = 24;
+
+    private final IntBuffer userIds;
+    private final LongBuffer firstSamples;
+    private final DoubleBuffer times;
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+
+    private MobilityTraceStore(IntBuffer userIds, LongBuffer firstSamples, DoubleBuffer times, DoubleBuffer latitudes, DoubleBuffer longitudes) {
+        this.userIds = userIds;
+        this.firstSamples = firstSamples;
+        this.times = times;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    /**
+     * Maps a trace file. The file stays mapped until the store is garbage collected.
+     *
+     * @param file the trace file
+     * @return the store
+     * @throws IOException if the file cannot be read or is not a trace file
+     */
+    public static MobilityTraceStore open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(file + " is not a mobility trace file");
+            int userCount = header.getInt();
+            long sampleCount = header.getLong();
+            if (userCount < 0 || sampleCount < 0 || sampleCount > Integer.MAX_VALUE / 8)
+                throw new IOException(file + " is corrupted");
+
+            long position = HEADER_SIZE;
+            IntBuffer userIds = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * userCount).asIntBuffer();
+            position += align(4L * userCount);
+            LongBuffer firstSamples = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * (userCount + 1)).asLongBuffer();
+            position += 8L * (userCount + 1);
+            DoubleBuffer[] columns = new DoubleBuffer[3];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, 8 * sampleCount).asDoubleBuffer();
+                position += 8 * sampleCount;
+            }
+            if (position != channel.size() || firstSamples.get(userCount) != sampleCount)
+                throw new IOException(file + " is corrupted");
+            return new MobilityTraceStore(userIds, firstSamples, columns[0], columns[1], columns[2]);
+        }
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    public int getUserCount() {
+        return userIds.capacity();
+    }
+
+    /**
+     * Gets the id of a user of the store.
+     *
+     * @param userIndex the index of the user, between 0 and the user count
+     * @return the id of the user
+     */
+    public int getUserId(int userIndex) {
+        return userIds.get(userIndex);
+    }
+
+    /**
+     * Finds a user.
+     *
+     * @param userId the id of the user
+     * @return the index of the user, or -1 if the store has no trace for it
+     */
+    public int getUserIndex(int userId) {
+        int low = 0;
+        int high = userIds.capacity() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = userIds.get(middle);
+            if (id < userId)
+                low = middle + 1;
+            else if (id > userId)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    /** The index of the first sample of a user. */
+    public int getFirstSample(int userIndex) {
+        return (int) firstSamples.get(userIndex);
+    }
+
+    /** The index following the last sample of a user. */
+    public int getEndSample(int userIndex) {
+        return (int) firstSamples.get(userIndex + 1);
+    }
+
+    /**
+     * Finds the sample giving the location of a user at a time, that is its last sample taken at
+     * or before the time.
+     *
+     * @param userIndex the index of the user
+     * @param time the time
+     * @return the index of the sample, or -1 if the trace of the user starts after the time
+     */
+    public int getSampleAt(int userIndex, double time) {
+        int low = getFirstSample(userIndex);
+        int high = getEndSample(userIndex) - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (times.get(middle) <= time) {
+                found = middle;
+                low = middle + 1;
+            } else
+                high = middle - 1;
+        }
+        return found;
+    }
+
+    public double getTime(int sample) {
+        return times.get(sample);
+    }
+
+    public double getLatitude(int sample) {
+        return latitudes.get(sample);
+    }
+
+    public double getLongitude(int sample) {
+        return longitudes.get(sample);
+    }
+
+    /**
+     * Writes a trace file, one user at a time in increasing id order. The columns are spooled to
+     * temporary files next to the trace file, so only the user index is held in memory.
+     */
+    public static class Writer implements Closeable {
+
+        private final File file;
+        private final File[] columnFiles = new File[3];
+        private final DataOutputStream[] columns = new DataOutputStream[3];
+        private final List<Integer> userIds = new ArrayList<Integer>();
+        private final List<Long> firstSamples = new ArrayList<Long>();
+        private long sampleCount;
+        private boolean closed;
+
+        public Writer(File file) throws IOException {
+            this.file = file;
+            File directory = file.getAbsoluteFile().getParentFile();
+            for (int i = 0; i < columns.length; i++) {
+                columnFiles[i] = File.createTempFile(file.getName(), ".column", directory);
+                columns[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFiles[i])));
+            }
+        }
+
+        /**
+         * Adds the trace of a user.
+         *
+         * @param userId the id of the user, greater than the ids of the users added before
+         * @param times the times of the samples, in increasing order
+         * @param latitudes the latitudes of the samples
+         * @param longitudes the longitudes of the samples
+         * @throws IOException if a column cannot be written
+         */
+        public void addUser(int userId, double[] times, double[] latitudes, double[] longitudes) throws IOException {
+            if (!userIds.isEmpty() && userId <= userIds.get(userIds.size() - 1))
+                throw new IllegalArgumentException("Users must be added in increasing id order : " + userId);
+            if (times.length != latitudes.length || times.length != longitudes.length)
+                throw new IllegalArgumentException("Columns of different lengths for user " + userId);
+            for (int i = 1; i < times.length; i++) {
+                if (!(times[i - 1] < times[i]))
+                    throw new IllegalArgumentException("Times not in increasing order for user " + userId);
+            }
+            userIds.add(userId);
+            firstSamples.add(sampleCount);
+            for (int i = 0; i < times.length; i++) {
+                columns[0].writeDouble(times[i]);
+                columns[1].writeDouble(latitudes[i]);
+                columns[2].writeDouble(longitudes[i]);
+            }
+            sampleCount += times.length;
+        }
+
+        /**
+         * Writes the header and the user index, followed by the columns, to the trace file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                for (DataOutputStream column : columns)
+                    column.close();
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(userIds.size());
+                    out.writeLong(sampleCount);
+                    out.writeInt(0);
+                    for (int userId : userIds)
+                        out.writeInt(userId);
+                    for (long i = 4L * userIds.size(); i < align(4L * userIds.size()); i++)
+                        out.writeByte(0);
+                    for (long first : firstSamples)
+                        out.writeLong(first);
+                    out.writeLong(sampleCount);
+                    byte[] buffer = new byte[1 << 16];
+                    for (File columnFile : columnFiles) {
+                        try (FileInputStream in = new FileInputStream(columnFile)) {
+                            int read;
+                            while ((read = in.read(buffer)) > 0)
+                                out.write(buffer, 0, read);
+                        }
+                    }
+                }
+            } finally {
+                for (File columnFile : columnFiles)
+                    columnFile.delete();
+            }
+        }
+    }
+}
@@ -14,10 +14,13 @@ public class References {
 	public static final double long_reference = 144.952370512958;
 
 	// Reference dataset filename to store and retrieve users positions
-	// ".\\dataset\\usersLocation-melbCBD_"
-	// ".\\dataset\\usersLocation-melbCBD-random_
-	public static final String dataset_reference = ".\\dataset\\usersLocation-melbCBD_";
-	public static final String dataset_random = ".\\dataset\\random_usersLocation-melbCBD_";
+	// "./dataset/usersLocation-melbCBD_"
+	// "./dataset/usersLocation-melbCBD-random_
+	// Forward slashes are accepted as separators on every platform
+	public static final String dataset_reference = "./dataset/usersLocation-melbCBD_";
+	public static final String dataset_random = "./dataset/random_usersLocation-melbCBD_";
+	public static final String dataset_config = "./dataset/config.properties";
+	public static final String dataset_resources = "./dataset/edgeResources-melbCBD.csv";
 	public static final int random_walk_mobility_model = 1;
 	public static final int random_waypoint_mobility_model = 2;
 	public static double MinMobilitySpeed = 1; //
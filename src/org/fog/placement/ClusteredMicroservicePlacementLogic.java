@@ -7,9 +7,9 @@ import org.fog.application.Application;
 import org.fog.entities.FogDevice;
 import org.fog.entities.Tuple;
 import org.fog.entities.ControllerComponent;
-import org.fog.entities.MicroserviceFogDevice;
 import org.fog.entities.PlacementRequest;
 import org.fog.utils.Logger;
+import org.fog.utils.MicroservicePlacementConfig;
 import org.fog.utils.ModuleLaunchConfig;
 
 import java.util.*;
@@ -27,6 +27,8 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
     private Map<String, Application> applicationInfo = new HashMap<>();
     private Map<String, String> moduleToApp = new HashMap<>();
 
+    private Map<Integer, FogDevice> devicesById = new HashMap<>();
+
     int fonID;
 
     protected Map<Integer, Double> currentCpuLoad;
@@ -58,7 +60,10 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
 
         setCurrentCpuLoad(new HashMap<Integer, Double>());
         setCurrentModuleMap(new HashMap<>());
+        devicesById = new HashMap<>();
         for (FogDevice dev : fogDevices) {
+            if (!devicesById.containsKey(dev.getId()))
+                devicesById.put(dev.getId(), dev);
             getCurrentCpuLoad().put(dev.getId(), 0.0);
             getCurrentModuleMap().put(dev.getId(), new ArrayList<>());
             currentModuleLoadMap.put(dev.getId(), new HashMap<String, Double>());
@@ -108,14 +113,13 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = new HashMap<>();
         Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo = new HashMap<>();
         Map<PlacementRequest, Integer> prStatus = new HashMap<>();
+        Map<Integer, PlacementRequest> requestsById = new HashMap<>();
+        for (PlacementRequest pr : placementRequests)
+            requestsById.put(pr.getPlacementRequestId(), pr);
         if (placement != null) {
             for (int prID : placement.keySet()) {
                 //retrieve application
-                PlacementRequest placementRequest = null;
-                for (PlacementRequest pr : placementRequests) {
-                    if (pr.getPlacementRequestId() == prID)
-                        placementRequest = pr;
-                }
+                PlacementRequest placementRequest = requestsById.get(prID);
                 Application application = applicationInfo.get(placementRequest.getApplicationId());
                 for (String microserviceName : placement.get(prID).keySet()) {
                     int deviceID = placement.get(prID).get(microserviceName);
@@ -209,280 +213,47 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
     }
 
     public void mapModules() {
-        Map<PlacementRequest, Integer> deviceToPlace = new HashMap<>();
-        //initiate with the  parent of the client device for this
         for (PlacementRequest placementRequest : placementRequests) {
-            deviceToPlace.put(placementRequest, getDevice(placementRequest.getGatewayDeviceId()).getParentId());
-
             // already placed modules
             mappedMicroservices.put(placementRequest.getPlacementRequestId(), new HashMap<>(placementRequest.getPlacedMicroservices()));
-
-            //special modules  - predefined cloud placements
-            Application app =  applicationInfo.get(placementRequest.getApplicationId());
-            for (String microservice : app.getSpecialPlacementInfo().keySet()) {
-                for (String deviceName : app.getSpecialPlacementInfo().get(microservice)) {
-                    FogDevice device = getDeviceByName(deviceName);
-                    int deviceId = device.getId();
-
-                    if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                        getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-
-                        moduleToApp.put(microservice, app.getAppId());
-
-                        if (!currentModuleMap.get(deviceId).contains(microservice))
-                            currentModuleMap.get(deviceId).add(microservice);
-
-                        mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                        //currentModuleLoad
-                        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                        else
-                            currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
-
-
-                        //currentModuleInstance
-                        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                        else
-                            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
-
-                        break;
-                    }
-                }
-            }
         }
 
-        Map<PlacementRequest, Integer> clusterNode = new HashMap<>();
+        ClusteredPlacementSearch.Candidate placement = new ClusteredPlacementSearch(fogDevices, applicationInfo, resourceAvailability, placementRequests)
+                .search(MicroservicePlacementConfig.PLACEMENT_SEARCH_STARTS, MicroservicePlacementConfig.PLACEMENT_SEARCH_SEED);
+        for (int i = 0; i < placement.size(); i++) {
+            PlacementRequest placementRequest = placementRequests.get(placement.getRequest(i));
+            place(placementRequest, applicationInfo.get(placementRequest.getApplicationId()), placement.getModule(i), placement.getDeviceId(i));
+        }
+    }
 
-        Map<PlacementRequest, List<String>> toPlace = new HashMap<>();
+    private void place(PlacementRequest placementRequest, Application app, AppModule module, int deviceId) {
+        String microservice = module.getName();
+        if (Logger.ENABLED)
+            Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + devicesById.get(deviceId).getName() + " successful.");
+        getCurrentCpuLoad().put(deviceId, module.getMips() + getCurrentCpuLoad().get(deviceId));
 
-        int placementCompleteCount = 0;
-        while (placementCompleteCount < placementRequests.size()) {
-            if (toPlace.isEmpty()) {
-                for (PlacementRequest placementRequest : placementRequests) {
-                    Application app = applicationInfo.get(placementRequest.getApplicationId());
-                    List<String> modulesToPlace = getModulesToPlace(mappedMicroservices.get(placementRequest.getPlacementRequestId()).keySet(), app);
-                    if (modulesToPlace.isEmpty())
-                        placementCompleteCount++;
-                    else
-                        toPlace.put(placementRequest, modulesToPlace);
-                }
-            }
-            for (PlacementRequest placementRequest : placementRequests) {
-                Application app = applicationInfo.get(placementRequest.getApplicationId());
-                int deviceId = deviceToPlace.get(placementRequest);
-                // if not cluster
-                if (deviceId != -1) {
-                    FogDevice device = getDevice(deviceId);
-                    List<String> placed = new ArrayList<>();
-                    if (toPlace.containsKey(placementRequest)) {
-                        for (String microservice : toPlace.get(placementRequest)) {
-                            // try to place
-                            if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-                                getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
-
-                                moduleToApp.put(microservice, app.getAppId());
-
-                                if (!currentModuleMap.get(deviceId).contains(microservice))
-                                    currentModuleMap.get(deviceId).add(microservice);
-
-                                mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
-
-                                //currentModuleLoad
-                                if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips());
-                                else
-                                    currentModuleLoadMap.get(deviceId).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
-
-
-                                //currentModuleInstance
-                                if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, 1);
-                                else
-                                    currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
-
-                                placed.add(microservice);
-                            }
-                        }
-                        for (String m : placed) {
-                            toPlace.get(placementRequest).remove(m);
-                        }
-                        if (!toPlace.get(placementRequest).isEmpty()) {
-                            if (((MicroserviceFogDevice) device).getIsInCluster()) {
-                                // -1 indicates it's a cluster placement
-                                deviceToPlace.put(placementRequest, -1);
-                                // a device of the cluster to identify the cluster
-                                clusterNode.put(placementRequest, deviceId);
-                            } else {
-                                deviceToPlace.put(placementRequest, device.getParentId());
-                            }
-                        }
-                        if (toPlace.get(placementRequest).isEmpty())
-                            toPlace.remove(placementRequest);
-                    }
-                } else {
-                    if (toPlace.containsKey(placementRequest)) {
-                        int clusterDeviceId = clusterNode.get(placementRequest);
-                        FogDevice device = getDevice(clusterDeviceId);
-                        List<Integer> clusterDeviceIds = ((MicroserviceFogDevice) device).getClusterMembers();
-                        List<Integer> sortedClusterDevicesActive = new ArrayList<>();
-                        List<Integer> sortedClusterDevicesInactive = new ArrayList<>();
-                        for (Integer id : clusterDeviceIds) {
-                            //sort list from min to max
-                            if (currentModuleMap.get(id).size()>0 && sortedClusterDevicesActive.isEmpty())
-                                sortedClusterDevicesActive.add(id);
-                            else if(currentModuleMap.get(id).size()==0 && sortedClusterDevicesInactive.isEmpty())
-                                sortedClusterDevicesInactive.add(id);
-                            else if(currentModuleMap.get(id).size()>0){
-                                boolean isPlaced = false;
-                                for (int i = 0; i < sortedClusterDevicesActive.size(); i++) {
-                                    double sorted = resourceAvailability.get(sortedClusterDevicesActive.get(i)).get("cpu") -
-                                            getCurrentCpuLoad().get(sortedClusterDevicesActive.get(i));
-                                    double current = resourceAvailability.get(id).get("cpu") -
-                                            getCurrentCpuLoad().get(id);
-                                    if (sorted < current) {sortedClusterDevicesActive.add(i, id);
-                                        isPlaced = true;
-                                        break;
-                                    } else {
-                                        continue;
-                                    }
-                                }
-                                if (!isPlaced)
-                                    sortedClusterDevicesActive.add(id);
-                            }
-                            else{
-                                boolean isPlaced = false;
-                                for (int i = 0; i < sortedClusterDevicesInactive.size(); i++) {
-                                    double sorted = resourceAvailability.get(sortedClusterDevicesInactive.get(i)).get("cpu") -
-                                            getCurrentCpuLoad().get(sortedClusterDevicesInactive.get(i));
-                                    double current = resourceAvailability.get(id).get("cpu") -
-                                            getCurrentCpuLoad().get(id);
-                                    if (sorted < current) {sortedClusterDevicesInactive.add(i, id);
-                                        isPlaced = true;
-                                        break;
-                                    } else {
-                                        continue;
-                                    }
-                                }
-                                if (!isPlaced)
-                                    sortedClusterDevicesInactive.add(id);
-                            }
-                        }
+        moduleToApp.put(microservice, app.getAppId());
 
-                        List<Integer> sortedClusterDevices = new ArrayList<>(sortedClusterDevicesActive);
-                        sortedClusterDevices.addAll(sortedClusterDevicesInactive);
-                        List<String> placed = new ArrayList<>();
-                        for (String microservice : toPlace.get(placementRequest)) {
-                            for (int id : sortedClusterDevices) {
-                                // try to place
-                                if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id) <= resourceAvailability.get(id).get(ControllerComponent.CPU)) {
-                                    FogDevice placedDevice = getDevice(id);
-                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
-                                    getCurrentCpuLoad().put(id, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id));
-                                    System.out.println("Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
-
-                                    if (!currentModuleMap.get(id).contains(microservice))
-                                        currentModuleMap.get(id).add(microservice);
-
-                                    mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, id);
-
-                                    moduleToApp.put(microservice, app.getAppId());
-
-                                    //currentModuleLoad
-                                    if (!currentModuleLoadMap.get(id).containsKey(microservice))
-                                        currentModuleLoadMap.get(id).put(microservice, getModule(microservice, app).getMips());
-                                    else
-                                        currentModuleLoadMap.get(id).put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(id).get(microservice));
-
-
-                                    //currentModuleInstance
-                                    if (!currentModuleInstanceNum.get(id).containsKey(microservice))
-                                        currentModuleInstanceNum.get(id).put(microservice, 1);
-                                    else
-                                        currentModuleInstanceNum.get(id).put(microservice, currentModuleInstanceNum.get(id).get(microservice) + 1);
-
-                                    placed.add(microservice);
-                                    break;
-                                }
-                            }
-                        }
+        if (!currentModuleMap.get(deviceId).contains(microservice))
+            currentModuleMap.get(deviceId).add(microservice);
 
-                        for (String m : placed) {
-                            toPlace.get(placementRequest).remove(m);
-                        }
-                        if (!toPlace.get(placementRequest).isEmpty()) {
-                            //check
-                            deviceToPlace.put(placementRequest, device.getParentId());
-                        }
-                        if (toPlace.get(placementRequest).isEmpty())
-                            toPlace.remove(placementRequest);
-                    }
-                }
-            }
-        }
+        mappedMicroservices.get(placementRequest.getPlacementRequestId()).put(microservice, deviceId);
 
-    }
+        //currentModuleLoad
+        if (!currentModuleLoadMap.get(deviceId).containsKey(microservice))
+            currentModuleLoadMap.get(deviceId).put(microservice, module.getMips());
+        else
+            currentModuleLoadMap.get(deviceId).put(microservice, module.getMips() + currentModuleLoadMap.get(deviceId).get(microservice));
 
-    private FogDevice getDeviceByName(String deviceName) {
-        for (FogDevice f : fogDevices) {
-            if (f.getName().equals(deviceName))
-                return f;
-        }
-        return null;
+        //currentModuleInstance
+        if (!currentModuleInstanceNum.get(deviceId).containsKey(microservice))
+            currentModuleInstanceNum.get(deviceId).put(microservice, 1);
+        else
+            currentModuleInstanceNum.get(deviceId).put(microservice, currentModuleInstanceNum.get(deviceId).get(microservice) + 1);
     }
 
     public Map<Integer, Double> getCurrentCpuLoad() {
         return currentCpuLoad;
     }
 
-    private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
-    }
-
-    private FogDevice getDevice(int deviceId) {
-        for (FogDevice fogDevice : fogDevices) {
-            if (fogDevice.getId() == deviceId)
-                return fogDevice;
-        }
-        return null;
-    }
-
-    private List<String> getModulesToPlace(Set<String> placedModules, Application app) {
-        List<String> modulesToPlace_1 = new ArrayList<String>();
-        List<String> modulesToPlace = new ArrayList<String>();
-        for (AppModule module : app.getModules()) {
-            if (!placedModules.contains(module.getName()))
-                modulesToPlace_1.add(module.getName());
-        }
-        /*
-         * Filtering based on whether modules (to be placed) lower in physical topology are already placed
-         */
-        for (String moduleName : modulesToPlace_1) {
-            boolean toBePlaced = true;
-
-            for (AppEdge edge : app.getEdges()) {
-                //CHECK IF OUTGOING DOWN EDGES ARE PLACED
-                if (edge.getSource().equals(moduleName) && edge.getDirection() == Tuple.DOWN && !placedModules.contains(edge.getDestination()))
-                    toBePlaced = false;
-                //CHECK IF INCOMING UP EDGES ARE PLACED
-                if (edge.getDestination().equals(moduleName) && edge.getDirection() == Tuple.UP && !placedModules.contains(edge.getSource()))
-                    toBePlaced = false;
-            }
-            if (toBePlaced)
-                modulesToPlace.add(moduleName);
-        }
-
-        return modulesToPlace;
-    }
-
-
 }
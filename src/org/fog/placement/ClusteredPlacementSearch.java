@@ -0,0 +1,651 @@
+package org.fog.placement;
+
+import org.fog.application.AppEdge;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.ControllerComponent;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PlacementRequest;
+import org.fog.entities.Tuple;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Search of the placement of a batch of placement requests over the devices monitored by a FON, for
+ * {@link ClusteredMicroservicePlacementLogic}.
+ * <p>
+ * The devices, modules and requests are turned into primitive arrays once, and each candidate placement
+ * is built on its own copy of the loads. The first candidate is the greedy pass of the placement logic,
+ * which walks up from the gateway of each request and into the clusters met on the way. The second one
+ * then moves modules to the devices of least cost within their reach where there is room left, and the
+ * others do the same after a greedy pass over a shuffled order of the requests, every other one also
+ * drawing cluster members at random in proportion to their free CPU. Candidates are built in parallel on
+ * the fork-join pool and the one of least cost is kept, the first one winning ties, so that the placement
+ * only depends on the seed.
+ * <p>
+ * The cost of a candidate sums the latency from the gateway of each request to the devices its modules
+ * are placed on, the squared CPU and RAM utilisation of the devices, and a penalty per module left
+ * unplaced.
+ */
+class ClusteredPlacementSearch {
+
+    static final double LATENCY_WEIGHT = 1;
+    static final double CPU_WEIGHT = 100;
+    static final double RAM_WEIGHT = 100;
+    static final double UNPLACED_PENALTY = 1e6;
+    static final int IMPROVEMENT_PASSES = 4;
+
+    /** Next device of a request : the cluster of the last device tried, or none left to try. */
+    private static final int CLUSTER = -1;
+    private static final int NONE = -2;
+
+    // devices, by index in the list of the FON
+    private final int deviceCount;
+    private final int[] deviceIds;
+    private final double[] cpuCapacity;
+    private final double[] inverseCpu;
+    private final double[] inverseRam;
+    private final int[] parent;
+    private final double[] depthLatency; // latency of the uplinks from the device to the top of the list
+    private final boolean[] inCluster;
+    private final int[][] members;
+    private final double[][] memberLatency;
+    private int maxClusterSize;
+
+    // modules of the applications, numbered across applications
+    private final List<AppModule> moduleList = new ArrayList<>();
+    private final List<int[]> dependencyList = new ArrayList<>(); // modules to be placed before the module
+    private final List<String[]> externalDependencies = new ArrayList<>(); // other names to be placed before
+    private double[] mips;
+    private double[] ram;
+    private int[][] dependencies;
+
+    // applications : first module and special placements
+    private final Map<String, Integer> applicationIndex = new HashMap<>();
+    private final List<Integer> applicationFirstModule = new ArrayList<>();
+    private final List<int[]> specialModules = new ArrayList<>();
+    private final List<int[][]> specialDevices = new ArrayList<>();
+
+    // requests, and their slots : one per module of their application
+    private final int requestCount;
+    private final int[] gateway;
+    private final int[] application;
+    private final int[] firstModule;
+    private final int[] firstSlot;
+    private final boolean[] initiallyPlaced;
+    private final boolean[] blocked;
+
+    ClusteredPlacementSearch(List<FogDevice> fogDevices, Map<String, Application> applicationInfo,
+                             Map<Integer, Map<String, Double>> resourceAvailability, List<PlacementRequest> placementRequests) {
+        deviceCount = fogDevices.size();
+        deviceIds = new int[deviceCount];
+        cpuCapacity = new double[deviceCount];
+        inverseCpu = new double[deviceCount];
+        inverseRam = new double[deviceCount];
+        parent = new int[deviceCount];
+        depthLatency = new double[deviceCount];
+        inCluster = new boolean[deviceCount];
+        members = new int[deviceCount][];
+        memberLatency = new double[deviceCount][];
+
+        Map<Integer, Integer> indexOfId = new HashMap<>();
+        Map<String, Integer> indexOfName = new HashMap<>();
+        for (int i = 0; i < deviceCount; i++) {
+            FogDevice device = fogDevices.get(i);
+            deviceIds[i] = device.getId();
+            if (!indexOfId.containsKey(device.getId()))
+                indexOfId.put(device.getId(), i);
+            if (!indexOfName.containsKey(device.getName()))
+                indexOfName.put(device.getName(), i);
+            Map<String, Double> resources = resourceAvailability.get(device.getId());
+            Double cpu = resources != null ? resources.get(ControllerComponent.CPU) : null;
+            Double ram = resources != null ? resources.get(ControllerComponent.RAM) : null;
+            cpuCapacity[i] = cpu != null ? cpu : Double.NEGATIVE_INFINITY;
+            inverseCpu[i] = cpu != null && cpu > 0 ? 1 / cpu : 0;
+            inverseRam[i] = ram != null && ram > 0 ? 1 / ram : 0;
+        }
+        for (int i = 0; i < deviceCount; i++) {
+            FogDevice device = fogDevices.get(i);
+            Integer parentIndex = indexOfId.get(device.getParentId());
+            parent[i] = parentIndex != null ? parentIndex : NONE;
+            inCluster[i] = device.getIsInCluster();
+            List<Integer> clusterMembers = device.getClusterMembers();
+            Map<Integer, Double> latencies = device.getClusterMembersToLatencyMap();
+            int size = clusterMembers != null ? clusterMembers.size() : 0;
+            members[i] = new int[size];
+            memberLatency[i] = new double[size];
+            for (int j = 0; j < size; j++) {
+                Integer member = indexOfId.get(clusterMembers.get(j));
+                Double latency = latencies != null ? latencies.get(clusterMembers.get(j)) : null;
+                members[i][j] = member != null ? member : NONE;
+                memberLatency[i][j] = latency != null ? latency : 0;
+            }
+            maxClusterSize = Math.max(maxClusterSize, size);
+        }
+        computeDepthLatencies(fogDevices);
+
+        for (PlacementRequest placementRequest : placementRequests)
+            indexApplication(applicationInfo.get(placementRequest.getApplicationId()), indexOfName);
+        int moduleCount = moduleList.size();
+        mips = new double[moduleCount];
+        ram = new double[moduleCount];
+        dependencies = dependencyList.toArray(new int[moduleCount][]);
+        for (int m = 0; m < moduleCount; m++) {
+            mips[m] = moduleList.get(m).getMips();
+            ram[m] = moduleList.get(m).getRam();
+        }
+
+        requestCount = placementRequests.size();
+        gateway = new int[requestCount];
+        application = new int[requestCount];
+        firstModule = new int[requestCount];
+        firstSlot = new int[requestCount + 1];
+        for (int r = 0; r < requestCount; r++) {
+            PlacementRequest placementRequest = placementRequests.get(r);
+            Integer gatewayIndex = indexOfId.get(placementRequest.getGatewayDeviceId());
+            gateway[r] = gatewayIndex != null ? gatewayIndex : NONE;
+            application[r] = applicationIndex.get(placementRequest.getApplicationId());
+            firstModule[r] = applicationFirstModule.get(application[r]);
+            int end = application[r] + 1 < applicationFirstModule.size() ? applicationFirstModule.get(application[r] + 1) : moduleCount;
+            firstSlot[r + 1] = firstSlot[r] + end - firstModule[r];
+        }
+        initiallyPlaced = new boolean[firstSlot[requestCount]];
+        blocked = new boolean[firstSlot[requestCount]];
+        for (int r = 0; r < requestCount; r++) {
+            Map<String, Integer> placed = placementRequests.get(r).getPlacedMicroservices();
+            for (int slot = firstSlot[r]; slot < firstSlot[r + 1]; slot++) {
+                int m = firstModule[r] + slot - firstSlot[r];
+                initiallyPlaced[slot] = placed.containsKey(moduleList.get(m).getName());
+                for (String name : externalDependencies.get(m)) {
+                    if (!placed.containsKey(name))
+                        blocked[slot] = true;
+                }
+            }
+        }
+    }
+
+    private void computeDepthLatencies(List<FogDevice> fogDevices) {
+        boolean[] done = new boolean[deviceCount];
+        int[] path = new int[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            int length = 0;
+            for (int d = i; d >= 0 && !done[d] && length < deviceCount; d = parent[d])
+                path[length++] = d;
+            while (length > 0) {
+                int d = path[--length];
+                double above = parent[d] >= 0 && done[parent[d]] ? depthLatency[parent[d]] : 0;
+                depthLatency[d] = fogDevices.get(d).getUplinkLatency() + above;
+                done[d] = true;
+            }
+        }
+    }
+
+    private void indexApplication(Application app, Map<String, Integer> indexOfName) {
+        if (applicationIndex.containsKey(app.getAppId()))
+            return;
+        applicationIndex.put(app.getAppId(), applicationFirstModule.size());
+        int first = moduleList.size();
+        applicationFirstModule.add(first);
+        Map<String, Integer> moduleIndex = new HashMap<>();
+        for (AppModule module : app.getModules()) {
+            if (!moduleIndex.containsKey(module.getName()))
+                moduleIndex.put(module.getName(), moduleList.size());
+            moduleList.add(module);
+        }
+
+        for (AppModule module : app.getModules()) {
+            List<Integer> modules = new ArrayList<>();
+            List<String> others = new ArrayList<>();
+            for (AppEdge edge : app.getEdges()) {
+                // outgoing down edges and incoming up edges are placed first
+                String other;
+                if (edge.getSource().equals(module.getName()) && edge.getDirection() == Tuple.DOWN)
+                    other = edge.getDestination();
+                else if (edge.getDestination().equals(module.getName()) && edge.getDirection() == Tuple.UP)
+                    other = edge.getSource();
+                else
+                    continue;
+                if (moduleIndex.containsKey(other))
+                    modules.add(moduleIndex.get(other));
+                else
+                    others.add(other);
+            }
+            int[] indexes = new int[modules.size()];
+            for (int i = 0; i < indexes.length; i++)
+                indexes[i] = modules.get(i);
+            dependencyList.add(indexes);
+            externalDependencies.add(others.toArray(new String[others.size()]));
+        }
+
+        List<Integer> special = new ArrayList<>();
+        List<int[]> devices = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : app.getSpecialPlacementInfo().entrySet()) {
+            if (!moduleIndex.containsKey(entry.getKey()))
+                continue;
+            int[] candidates = new int[entry.getValue().size()];
+            for (int i = 0; i < candidates.length; i++) {
+                Integer device = indexOfName.get(entry.getValue().get(i));
+                candidates[i] = device != null ? device : NONE;
+            }
+            special.add(moduleIndex.get(entry.getKey()));
+            devices.add(candidates);
+        }
+        int[] modules = new int[special.size()];
+        for (int i = 0; i < modules.length; i++)
+            modules[i] = special.get(i);
+        specialModules.add(modules);
+        specialDevices.add(devices.toArray(new int[devices.size()][]));
+    }
+
+    /**
+     * Searches the placement of the requests.
+     *
+     * @param starts the number of candidate placements built, 1 for the greedy pass alone
+     * @param seed the seed of the shuffled orders and random draws of the candidates
+     * @return the candidate of least cost
+     */
+    Candidate search(int starts, long seed) {
+        if (starts <= 1)
+            return build(0, seed);
+        Candidate[] candidates = new Candidate[starts];
+        ForkJoinPool.commonPool().invoke(new Build(this, candidates, 0, starts, seed));
+        Candidate best = candidates[0];
+        for (int k = 1; k < starts; k++) {
+            if (candidates[k].cost < best.cost)
+                best = candidates[k];
+        }
+        return best;
+    }
+
+    private Candidate build(int index, long seed) {
+        int[] order = new int[requestCount];
+        for (int r = 0; r < requestCount; r++)
+            order[r] = r;
+        Random random = null;
+        if (index > 1) {
+            random = new Random(seed + index);
+            for (int i = requestCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int r = order[i];
+                order[i] = order[j];
+                order[j] = r;
+            }
+        }
+        Candidate candidate = new Candidate();
+        candidate.greedy(order, index % 2 == 0 ? random : null);
+        if (index > 0)
+            candidate.improve();
+        candidate.evaluate();
+        return candidate;
+    }
+
+    /** Builds a range of candidates of a search, split in halves built in parallel. */
+    private static class Build extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClusteredPlacementSearch search;
+        private final Candidate[] candidates;
+        private final int from;
+        private final int to;
+        private final long seed;
+
+        Build(ClusteredPlacementSearch search, Candidate[] candidates, int from, int to, long seed) {
+            this.search = search;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                candidates[from] = search.build(from, seed);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Build(search, candidates, from, middle, seed), new Build(search, candidates, middle, to, seed));
+            }
+        }
+    }
+
+    /** A placement of the requests, with the loads it puts on the devices. */
+    class Candidate {
+
+        private final double[] cpuLoad = new double[deviceCount];
+        private final double[] ramLoad = new double[deviceCount];
+        private final boolean[] active = new boolean[deviceCount];
+        private final boolean[] placed = initiallyPlaced.clone();
+
+        // placements, in the order they are made
+        private int size;
+        private int[] requests = new int[16];
+        private int[] modules = new int[16];
+        private int[] devices = new int[16];
+        private double[] latencies = new double[16];
+        private boolean[] special = new boolean[16];
+
+        private double cost;
+
+        /** @return the number of placements */
+        int size() {
+            return size;
+        }
+
+        /** @return the index of the request of a placement, in the list of requests searched */
+        int getRequest(int placement) {
+            return requests[placement];
+        }
+
+        AppModule getModule(int placement) {
+            return moduleList.get(modules[placement]);
+        }
+
+        int getDeviceId(int placement) {
+            return deviceIds[devices[placement]];
+        }
+
+        double getCost() {
+            return cost;
+        }
+
+        private boolean fits(int m, int d) {
+            return mips[m] + cpuLoad[d] <= cpuCapacity[d];
+        }
+
+        private void place(int r, int m, int d, double latency, boolean fixed) {
+            if (size == requests.length) {
+                int length = size * 2;
+                requests = Arrays.copyOf(requests, length);
+                modules = Arrays.copyOf(modules, length);
+                devices = Arrays.copyOf(devices, length);
+                latencies = Arrays.copyOf(latencies, length);
+                special = Arrays.copyOf(special, length);
+            }
+            requests[size] = r;
+            modules[size] = m;
+            devices[size] = d;
+            latencies[size] = latency;
+            special[size] = fixed;
+            size++;
+            cpuLoad[d] = mips[m] + cpuLoad[d];
+            ramLoad[d] += ram[m];
+            active[d] = true;
+            placed[firstSlot[r] + m - firstModule[r]] = true;
+        }
+
+        /**
+         * The greedy pass of the placement logic : special modules first, then, round after round, the
+         * modules whose neighbours are placed, on the first device up from the gateway they fit on. Past a
+         * device in a cluster, the other members are tried, those already hosting modules first, by
+         * decreasing free CPU, or drawn at random if a random generator is given.
+         */
+        void greedy(int[] order, Random random) {
+            int[] next = new int[requestCount];
+            int[] clusterNode = new int[requestCount];
+            for (int r : order) {
+                next[r] = gateway[r] >= 0 ? parent[gateway[r]] : NONE;
+                int[] specialModule = specialModules.get(application[r]);
+                int[][] specialDevice = specialDevices.get(application[r]);
+                for (int s = 0; s < specialModule.length; s++) {
+                    for (int d : specialDevice[s]) {
+                        if (d >= 0 && fits(specialModule[s], d)) {
+                            place(r, specialModule[s], d, latency(r, d), true);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            int[][] toPlace = new int[requestCount][];
+            int[] toPlaceCount = new int[requestCount];
+            boolean[] stuck = new boolean[requestCount];
+            double[] free = new double[maxClusterSize];
+            boolean[] wasActive = new boolean[maxClusterSize];
+            int pending = 0;
+            // counted again at each round, as the placement logic always did
+            int complete = 0;
+            while (complete < requestCount) {
+                if (pending == 0) {
+                    for (int r : order) {
+                        toPlaceCount[r] = stuck[r] ? 0 : modulesToPlace(r, toPlace);
+                        if (toPlaceCount[r] == 0)
+                            complete++;
+                        else
+                            pending++;
+                    }
+                }
+                for (int r : order) {
+                    if (toPlaceCount[r] == 0)
+                        continue;
+                    int d = next[r];
+                    int left;
+                    if (d == NONE) {
+                        // no device left up the topology
+                        stuck[r] = true;
+                        left = 0;
+                    } else if (d != CLUSTER) {
+                        left = placeOnDevice(r, d, toPlace[r], toPlaceCount[r]);
+                        if (left > 0 && inCluster[d]) {
+                            next[r] = CLUSTER;
+                            clusterNode[r] = d;
+                        } else if (left > 0) {
+                            next[r] = parent[d];
+                        }
+                    } else {
+                        left = placeInCluster(r, clusterNode[r], toPlace[r], toPlaceCount[r], free, wasActive, random);
+                        if (left > 0)
+                            next[r] = parent[clusterNode[r]];
+                    }
+                    toPlaceCount[r] = left;
+                    if (left == 0)
+                        pending--;
+                }
+            }
+        }
+
+        private int modulesToPlace(int r, int[][] toPlace) {
+            int count = firstSlot[r + 1] - firstSlot[r];
+            if (toPlace[r] == null)
+                toPlace[r] = new int[count];
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                int slot = firstSlot[r] + i;
+                if (placed[slot] || blocked[slot])
+                    continue;
+                boolean ready = true;
+                for (int dependency : dependencies[firstModule[r] + i]) {
+                    if (!placed[firstSlot[r] + dependency - firstModule[r]]) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready)
+                    toPlace[r][found++] = firstModule[r] + i;
+            }
+            return found;
+        }
+
+        /** Places the modules which fit on a device, and keeps the others in order. */
+        private int placeOnDevice(int r, int d, int[] toPlace, int count) {
+            double latency = depthLatency[gateway[r]] - depthLatency[d];
+            int left = 0;
+            for (int i = 0; i < count; i++) {
+                int m = toPlace[i];
+                if (fits(m, d))
+                    place(r, m, d, latency, false);
+                else
+                    toPlace[left++] = m;
+            }
+            return left;
+        }
+
+        private int placeInCluster(int r, int c, int[] toPlace, int count, double[] free, boolean[] wasActive,
+                                   Random random) {
+            int[] cluster = members[c];
+            for (int j = 0; j < cluster.length; j++) {
+                if (cluster[j] >= 0) {
+                    free[j] = cpuCapacity[cluster[j]] - cpuLoad[cluster[j]];
+                    wasActive[j] = active[cluster[j]];
+                }
+            }
+            double latency = depthLatency[gateway[r]] - depthLatency[c];
+            int left = 0;
+            for (int i = 0; i < count; i++) {
+                int m = toPlace[i];
+                int j = random != null ? drawMember(m, cluster, free, random) : bestMember(m, cluster, free, wasActive);
+                if (j >= 0)
+                    place(r, m, cluster[j], latency + memberLatency[c][j], false);
+                else
+                    toPlace[left++] = m;
+            }
+            return left;
+        }
+
+        /** The member a module fits on which hosted modules, or else had the most free CPU, the first one on ties. */
+        private int bestMember(int m, int[] cluster, double[] free, boolean[] wasActive) {
+            int best = -1;
+            for (int j = 0; j < cluster.length; j++) {
+                if (cluster[j] < 0 || !fits(m, cluster[j]))
+                    continue;
+                if (best < 0 || wasActive[j] && !wasActive[best] || wasActive[j] == wasActive[best] && free[j] > free[best])
+                    best = j;
+            }
+            return best;
+        }
+
+        /** A member a module fits on, drawn in proportion to its free CPU. */
+        private int drawMember(int m, int[] cluster, double[] free, Random random) {
+            double total = 0;
+            int last = -1;
+            for (int j = 0; j < cluster.length; j++) {
+                if (cluster[j] >= 0 && fits(m, cluster[j])) {
+                    total += Math.max(free[j], 0);
+                    last = j;
+                }
+            }
+            if (last < 0)
+                return -1;
+            double draw = random.nextDouble() * total;
+            for (int j = 0; j < last; j++) {
+                if (cluster[j] >= 0 && fits(m, cluster[j])) {
+                    draw -= Math.max(free[j], 0);
+                    if (draw < 0)
+                        return j;
+                }
+            }
+            return last;
+        }
+
+        /** The latency from the gateway of a request to a device up its path, or one of their clusters. */
+        private double latency(int r, int d) {
+            if (gateway[r] < 0)
+                return 0;
+            int steps = 0;
+            for (int x = parent[gateway[r]]; x >= 0 && steps < deviceCount; x = parent[x], steps++) {
+                double up = depthLatency[gateway[r]] - depthLatency[x];
+                if (x == d)
+                    return up;
+                for (int j = 0; j < members[x].length; j++) {
+                    if (members[x][j] == d)
+                        return up + memberLatency[x][j];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Moves modules, but the special ones, to the device of least cost with room left for them, among the
+         * devices up from their gateway and the members of their clusters, until no move lowers the cost.
+         */
+        void improve() {
+            for (int pass = 0; pass < IMPROVEMENT_PASSES; pass++) {
+                boolean moved = false;
+                for (int e = 0; e < size; e++) {
+                    if (!special[e])
+                        moved |= move(e);
+                }
+                if (!moved)
+                    return;
+            }
+        }
+
+        private boolean move(int e) {
+            int r = requests[e];
+            int m = modules[e];
+            int d = devices[e];
+            double current = latencies[e];
+            double released = loadCost(d, -mips[m], -ram[m]);
+            int best = -1;
+            double bestLatency = 0;
+            double bestDelta = 0;
+            int steps = 0;
+            for (int x = parent[gateway[r]]; x >= 0 && steps < deviceCount; x = parent[x], steps++) {
+                double up = depthLatency[gateway[r]] - depthLatency[x];
+                if (LATENCY_WEIGHT * (up - current) + released >= bestDelta)
+                    break;
+                if (x != d && fits(m, x)) {
+                    double delta = LATENCY_WEIGHT * (up - current) + released + loadCost(x, mips[m], ram[m]);
+                    if (delta < bestDelta) {
+                        best = x;
+                        bestLatency = up;
+                        bestDelta = delta;
+                    }
+                }
+                if (!inCluster[x])
+                    continue;
+                for (int j = 0; j < members[x].length; j++) {
+                    int y = members[x][j];
+                    if (y < 0 || y == d || !fits(m, y))
+                        continue;
+                    double latency = up + memberLatency[x][j];
+                    double delta = LATENCY_WEIGHT * (latency - current) + released + loadCost(y, mips[m], ram[m]);
+                    if (delta < bestDelta) {
+                        best = y;
+                        bestLatency = latency;
+                        bestDelta = delta;
+                    }
+                }
+            }
+            if (best < 0)
+                return false;
+            cpuLoad[d] -= mips[m];
+            ramLoad[d] -= ram[m];
+            cpuLoad[best] += mips[m];
+            ramLoad[best] += ram[m];
+            devices[e] = best;
+            latencies[e] = bestLatency;
+            return true;
+        }
+
+        /** The change of the load cost of a device when CPU and RAM are added to it. */
+        private double loadCost(int d, double cpu, double memory) {
+            double u0 = cpuLoad[d] * inverseCpu[d];
+            double u1 = (cpuLoad[d] + cpu) * inverseCpu[d];
+            double v0 = ramLoad[d] * inverseRam[d];
+            double v1 = (ramLoad[d] + memory) * inverseRam[d];
+            return CPU_WEIGHT * (u1 * u1 - u0 * u0) + RAM_WEIGHT * (v1 * v1 - v0 * v0);
+        }
+
+        void evaluate() {
+            double latency = 0;
+            for (int e = 0; e < size; e++)
+                latency += latencies[e];
+            int unplaced = 0;
+            for (boolean p : placed) {
+                if (!p)
+                    unplaced++;
+            }
+            double load = 0;
+            for (int d = 0; d < deviceCount; d++) {
+                double u = cpuLoad[d] * inverseCpu[d];
+                double v = ramLoad[d] * inverseRam[d];
+                load += CPU_WEIGHT * u * u + RAM_WEIGHT * v * v;
+            }
+            cost = LATENCY_WEIGHT * latency + load + UNPLACED_PENALTY * unplaced;
+        }
+    }
+
+}
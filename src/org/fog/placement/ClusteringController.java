@@ -14,7 +14,6 @@ import org.fog.utils.*;
 import org.json.simple.JSONObject;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 
 public class ClusteringController extends SimEntity {
@@ -25,6 +24,8 @@ public class ClusteringController extends SimEntity {
     private List<Sensor> sensors;
     private List<Actuator> actuators;
     private LocationHandler locator;
+    private MobilityEventStream mobilityEvents;
+    private FogDeviceTree deviceTree;
     private Map<Integer, Integer> parentReference;
 
 
@@ -77,11 +78,13 @@ public class ClusteringController extends SimEntity {
     }
 
     private FogDevice getFogDeviceById(int id) {
-        for (FogDevice fogDevice : getFogDevices()) {
-            if (id == fogDevice.getId())
-                return fogDevice;
-        }
-        return null;
+        return getDeviceTree().getFogDevice(id);
+    }
+
+    private FogDeviceTree getDeviceTree() {
+        if (deviceTree == null || !deviceTree.isFor(getFogDevices()))
+            deviceTree = new FogDeviceTree(getFogDevices());
+        return deviceTree;
     }
 
     private void connectWithLatencies() {
@@ -164,7 +167,7 @@ public class ClusteringController extends SimEntity {
                 printCostDetails();
                 printNetworkUsageDetails();
                 printMigrationDelayDetails();
-                System.exit(0);
+                FogUtils.endSimulation();
                 break;
 
         }
@@ -204,6 +207,8 @@ public class ClusteringController extends SimEntity {
     private void processMobility(SimEvent ev) {
         // TODO Auto-generated method stub
         FogDevice fogDevice = (FogDevice) ev.getData();
+        if (mobilityEvents != null)
+            mobilityEvents.next(fogDevice);
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
         System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
@@ -214,12 +219,11 @@ public class ClusteringController extends SimEntity {
             //printFogDeviceChildren(prevParent.getId());
 
             //common ancestor policy
-            List<Integer> newParentPath = getPathsToCloud(newParent.getId());
-            List<Integer> prevParentPath = getPathsToCloud(prevParent.getId());
-            int commonAncestor = determineAncestor(newParentPath, prevParentPath);
+            int commonAncestor = determineAncestor(newParent.getId(), prevParent.getId());
 
 
             fogDevice.setParentId(newParent.getId());
+            getDeviceTree().parentChanged(fogDevice.getId());
             System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
@@ -287,32 +291,19 @@ public class ClusteringController extends SimEntity {
         return networkDelay;
     }
 
-    private int determineAncestor(List<Integer> newParentPath, List<Integer> prevParentPath) {
-        // TODO Auto-generated method stub
-        List<Integer> common = newParentPath.stream().filter(prevParentPath::contains).collect(Collectors.toList());
-        return common.get(0);
-    }
-
-    private List<Integer> getPathsToCloud(int deviceID) {
-        // TODO Auto-generated method stub
-        List<Integer> path = new ArrayList<Integer>();
-        while (!locator.isCloud(deviceID)) {
-            path.add(deviceID);
-            deviceID = getFogDeviceById(deviceID).getParentId();
-        }
-        path.add(getCloud().getId());
-        return path;
+    private int determineAncestor(int newParentId, int prevParentId) {
+        int commonAncestor = getDeviceTree().getCommonAncestor(newParentId, prevParentId);
+        // devices in different trees only meet at the cloud
+        return commonAncestor >= 0 ? commonAncestor : getCloud().getId();
     }
 
     private void processMobilityData() {
         // TODO Auto-generated method stub
-        List<Double> timeSheet = new ArrayList<Double>();
+        // only the next mobility event of each device is queued, see processMobility
+        mobilityEvents = new MobilityEventStream(getId(), locator);
         for (FogDevice fogDevice : getFogDevices()) {
-            if (locator.isAMobileDevice(fogDevice.getId())) {
-                timeSheet = locator.getTimeSheet(fogDevice.getId());
-                for (double timeEntry : timeSheet)
-                    send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT, fogDevice);
-            }
+            if (locator.isAMobileDevice(fogDevice.getId()))
+                mobilityEvents.start(fogDevice);
         }
     }
 
@@ -393,7 +384,7 @@ public class ClusteringController extends SimEntity {
     }
 
     public void submitApplication(Application application, int delay, ModulePlacement modulePlacement) {
-        FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+        FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
         getApplications().put(application.getAppId(), application);
         getAppLaunchDelays().put(application.getAppId(), delay);
         getAppModulePlacementPolicy().put(application.getAppId(), modulePlacement);
@@ -428,7 +419,7 @@ public class ClusteringController extends SimEntity {
 
     private void processAppSubmit(Application application) {
         System.out.println(CloudSim.clock() + " Submitted application " + application.getAppId());
-        FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+        FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
         getApplications().put(application.getAppId(), application);
 
         ModulePlacement modulePlacement = getAppModulePlacementPolicy().get(application.getAppId());
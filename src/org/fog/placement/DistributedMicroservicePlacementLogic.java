@@ -89,14 +89,13 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
 
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = new HashMap<>();
         Map<Integer, List<Pair<String, Integer>>> serviceDiscoveryInfo = new HashMap<>();
+        Map<Integer, PlacementRequest> requestsById = new HashMap<>();
+        for (PlacementRequest pr : placementRequests)
+            requestsById.put(pr.getPlacementRequestId(), pr);
         if (placement != null) {
             for (int prID : placement.keySet()) {
                 //retrieve application
-                PlacementRequest placementRequest = null;
-                for (PlacementRequest pr : placementRequests) {
-                    if (pr.getPlacementRequestId() == prID)
-                        placementRequest = pr;
-                }
+                PlacementRequest placementRequest = requestsById.get(prID);
                 Application application = applicationInfo.get(placementRequest.getApplicationId());
                 for (String microserviceName : placement.get(prID).keySet()) {
                     int deviceID = placement.get(prID).get(microserviceName);
@@ -153,10 +152,10 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
                     if (app.getSpecialPlacementInfo().containsKey(microservice) &&
                             !app.getSpecialPlacementInfo().get(microservice).contains(fogDevice.getName())) {
                         failedMicroservices.add(microservice);
-                    } else if (getModule(microservice, app).getMips() + currentCpuLoad <= resourceAvailability.get(fogDevice.getId()).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
-                        currentCpuLoad = getModule(microservice, app).getMips() + currentCpuLoad;
-                        System.out.println("Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
+                    } else if (app.getModuleByName(microservice).getMips() + currentCpuLoad <= resourceAvailability.get(fogDevice.getId()).get(ControllerComponent.CPU)) {
+                        if (Logger.ENABLED)
+                            Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
+                        currentCpuLoad = app.getModuleByName(microservice).getMips() + currentCpuLoad;
 
                         moduleToApp.put(microservice, app.getAppId());
 
@@ -167,9 +166,9 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
 
                         //currentModuleLoad
                         if (!currentModuleLoadMap.containsKey(microservice))
-                            currentModuleLoadMap.put(microservice, getModule(microservice, app).getMips());
+                            currentModuleLoadMap.put(microservice, app.getModuleByName(microservice).getMips());
                         else
-                            currentModuleLoadMap.put(microservice, getModule(microservice, app).getMips() + currentModuleLoadMap.get(microservice));
+                            currentModuleLoadMap.put(microservice, app.getModuleByName(microservice).getMips() + currentModuleLoadMap.get(microservice));
 
                         //currentModuleInstance
                         if (!currentModuleInstanceNum.containsKey(microservice))
@@ -217,59 +216,27 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
     }
 
     private int placeWithinCluster(List<String> failedMicroservices, Application app) {
-        List<Integer> clusterDeviceIds = ((MicroserviceFogDevice) fogDevice).getClusterMembers();
-        if (clusterDeviceIds.isEmpty())
-            return -1;
-        List<Integer> sortedClusterDevices = new ArrayList<>();
-        for (Integer id : clusterDeviceIds) {
-            //sort list from min to max
-            if (sortedClusterDevices.isEmpty())
-                sortedClusterDevices.add(id);
-            else {
-                boolean isPlaced = false;
-                for (int i = 0; i < sortedClusterDevices.size(); i++) {
-                    double sorted = resourceAvailability.get(sortedClusterDevices.get(i)).get("cpu");
-                    double current = resourceAvailability.get(id).get("cpu");
-                    if (sorted < current) {
-                        continue;
-                    } else {
-                        sortedClusterDevices.add(i, id);
-                        isPlaced = true;
-                        break;
-                    }
-                }
-                if (!isPlaced)
-                    sortedClusterDevices.add(id);
-            }
-        }
-
-        List<AppModule> sortedMicroservices = new ArrayList<>();
-        for (String microservice : failedMicroservices) {
-            //sort list from min to max
-            AppModule appModule = getModule(microservice, app);
-            if (sortedMicroservices.isEmpty())
-                sortedMicroservices.add(appModule);
-            else {
-                boolean isPlaced = false;
-                for (int i = 0; i < sortedMicroservices.size(); i++) {
-                    double sorted = sortedMicroservices.get(i).getMips();
-                    double current = appModule.getMips();
-                    if (sorted < current) {
-                        continue;
-                    } else {
-                        sortedMicroservices.add(i, appModule);
-                        isPlaced = true;
-                        break;
-                    }
-                }
-                if (!isPlaced)
-                    sortedMicroservices.add(appModule);
+        // the first member with the most CPU available, if the smallest microservice left fits on it
+        int bestDevice = -1;
+        double cpuMax = 0;
+        for (Integer id : ((MicroserviceFogDevice) fogDevice).getClusterMembers()) {
+            Map<String, Double> resources = resourceAvailability.get(id);
+            if (resources == null)
+                continue;
+            double cpu = resources.get(ControllerComponent.CPU);
+            if (bestDevice == -1 || cpu > cpuMax) {
+                bestDevice = id;
+                cpuMax = cpu;
             }
         }
+        if (bestDevice == -1)
+            return -1;
 
-        double cpuMax = resourceAvailability.get(sortedClusterDevices.get(sortedClusterDevices.size() - 1)).get("cpu");
-        if (cpuMax >= sortedMicroservices.get(0).getMips()) {
-            return sortedClusterDevices.get(sortedClusterDevices.size() - 1);
+        double minMips = Double.MAX_VALUE;
+        for (String microservice : failedMicroservices)
+            minMips = Math.min(minMips, app.getModuleByName(microservice).getMips());
+        if (cpuMax >= minMips) {
+            return bestDevice;
         } else {
             return -1;
         }
@@ -287,14 +254,6 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
         return app.getDAG().getSources(new ArrayList<>(placedMicroservices.keySet()), failed);
     }
 
-    private AppModule getModule(String moduleName, Application app) {
-        for (AppModule appModule : app.getModules()) {
-            if (appModule.getName().equals(moduleName))
-                return appModule;
-        }
-        return null;
-    }
-
     public List<Integer> getClientServiceNodeIds(Application application, String
             microservice, Map<String, Integer> placed, Map<String, Integer> placementPerPr) {
         List<String> clientServices = getClientServices(application, microservice);
@@ -0,0 +1,252 @@
+package org.fog.placement;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.fog.entities.FogDevice;
+
+/**
+ * Registry of the fog devices of a controller by id, with the ancestors of each device in the
+ * device tree, used to plan migrations on mobility without walking and comparing paths to the
+ * cloud.
+ * <p>
+ * The ancestors are kept with binary lifting : the ancestor 2^k levels above each device, so that
+ * the common ancestor of two devices is found in O(log depth). They are read from the parent ids
+ * of the devices when first needed. A device whose parent changes must be reported with
+ * {@link #parentChanged(int)} : a leaf device, such as a mobile device, is then updated in
+ * O(log depth), while the move of a device with children has the ancestors read again when next
+ * needed. Devices given to the queries are checked against their parent id anyway.
+ * <p>
+ * Devices are registered when the tree is created, and again when the list of devices changes in
+ * size or a lookup misses.
+ *
+ * @author Mohammad Goudarzi
+ */
+public class FogDeviceTree {
+
+    private final List<FogDevice> fogDevices;
+
+    /** The devices by id, and the number of devices registered. */
+    private FogDevice[] devicesById = new FogDevice[0];
+    private int registered = -1;
+
+    /** Whether the ancestors have to be read again. */
+    private boolean stale = true;
+
+    /** By device id : the depth of the device, -1 if it is not a registered device. */
+    private int[] depth;
+
+    /** ancestors[k][id] : the ancestor 2^k levels above the device, or the root itself. */
+    private int[][] ancestors;
+
+    /** By device id : the number of devices whose parent is the device. */
+    private int[] childCount;
+
+    public FogDeviceTree(List<FogDevice> fogDevices) {
+        this.fogDevices = fogDevices;
+        register();
+    }
+
+    /**
+     * Checks whether the tree indexes a list of devices.
+     *
+     * @param fogDevices the list
+     * @return true if the tree was created for this very list
+     */
+    public boolean isFor(List<FogDevice> fogDevices) {
+        return this.fogDevices == fogDevices;
+    }
+
+    /**
+     * Gets a device by id.
+     *
+     * @param id the id of the device
+     * @return the device, or null if the list holds no device with that id
+     */
+    public FogDevice getFogDevice(int id) {
+        if (registered != fogDevices.size() || !isRegistered(id))
+            register();
+        return isRegistered(id) ? devicesById[id] : null;
+    }
+
+    private boolean isRegistered(int id) {
+        return id >= 0 && id < devicesById.length && devicesById[id] != null && devicesById[id].getId() == id;
+    }
+
+    private void register() {
+        int size = 0;
+        for (FogDevice fogDevice : fogDevices)
+            size = Math.max(size, fogDevice.getId() + 1);
+        FogDevice[] devices = new FogDevice[size];
+        // the first device of the list wins, as with a scan of the list
+        for (int i = fogDevices.size() - 1; i >= 0; i--) {
+            FogDevice fogDevice = fogDevices.get(i);
+            if (fogDevice.getId() >= 0)
+                devices[fogDevice.getId()] = fogDevice;
+        }
+        registered = fogDevices.size();
+        if (!Arrays.equals(devices, devicesById)) {
+            devicesById = devices;
+            stale = true;
+        }
+    }
+
+    /**
+     * Records that the parent of a device has changed.
+     *
+     * @param deviceId the id of the device
+     */
+    public void parentChanged(int deviceId) {
+        if (stale)
+            return;
+        if (!isRegistered(deviceId) || deviceId >= depth.length || depth[deviceId] < 0) {
+            stale = true;
+            return;
+        }
+        int parentId = parentOf(deviceId);
+        if (parentId == ancestors[0][deviceId] && parentId != deviceId)
+            return;
+        if (childCount[deviceId] > 0 || (parentId != deviceId && depth[parentId] + 1 >= 1 << (ancestors.length - 1))) {
+            stale = true;
+            return;
+        }
+        int previousParentId = ancestors[0][deviceId];
+        if (previousParentId != deviceId)
+            childCount[previousParentId]--;
+        if (parentId == deviceId) {
+            depth[deviceId] = 0;
+            for (int[] level : ancestors)
+                level[deviceId] = deviceId;
+            return;
+        }
+        childCount[parentId]++;
+        depth[deviceId] = depth[parentId] + 1;
+        ancestors[0][deviceId] = parentId;
+        for (int k = 1; k < ancestors.length; k++)
+            ancestors[k][deviceId] = ancestors[k - 1][ancestors[k - 1][deviceId]];
+    }
+
+    /**
+     * Gets the lowest common ancestor of two devices, which may be one of the devices.
+     *
+     * @param firstId the id of a device
+     * @param secondId the id of another device
+     * @return the id of the common ancestor, or -1 if the devices are not in the same tree
+     */
+    public int getCommonAncestor(int firstId, int secondId) {
+        if (!check(firstId) || !check(secondId))
+            return -1;
+        int a = firstId;
+        int b = secondId;
+        if (depth[a] < depth[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        a = lift(a, depth[a] - depth[b]);
+        if (a == b)
+            return a;
+        for (int k = ancestors.length - 1; k >= 0; k--) {
+            if (ancestors[k][a] != ancestors[k][b]) {
+                a = ancestors[k][a];
+                b = ancestors[k][b];
+            }
+        }
+        return ancestors[0][a] == ancestors[0][b] && ancestors[0][a] != a ? ancestors[0][a] : -1;
+    }
+
+    /**
+     * Checks whether a device is above another one in the tree.
+     *
+     * @param ancestorId the id of the device that may be above
+     * @param deviceId the id of the other device
+     * @return true if the first device is a proper ancestor of the second one
+     */
+    public boolean isAncestor(int ancestorId, int deviceId) {
+        if (!check(ancestorId) || !check(deviceId) || depth[ancestorId] >= depth[deviceId])
+            return false;
+        return lift(deviceId, depth[deviceId] - depth[ancestorId]) == ancestorId;
+    }
+
+    private int lift(int deviceId, int levels) {
+        for (int k = 0; levels > 0; k++, levels >>>= 1) {
+            if ((levels & 1) != 0)
+                deviceId = ancestors[k][deviceId];
+        }
+        return deviceId;
+    }
+
+    /** Brings the ancestors up to date for a queried device, and tells whether it is known. */
+    private boolean check(int deviceId) {
+        if (!isRegistered(deviceId))
+            getFogDevice(deviceId);
+        if (!isRegistered(deviceId))
+            return false;
+        if (stale)
+            build();
+        if (ancestors[0][deviceId] != parentOf(deviceId)) {
+            parentChanged(deviceId);
+            if (stale)
+                build();
+        }
+        return true;
+    }
+
+    /** The parent of a device, or the device itself if its parent is not a registered device. */
+    private int parentOf(int deviceId) {
+        int parentId = devicesById[deviceId].getParentId();
+        return isRegistered(parentId) ? parentId : deviceId;
+    }
+
+    private void build() {
+        int size = devicesById.length;
+        depth = new int[size];
+        childCount = new int[size];
+        Arrays.fill(depth, -1);
+        int[] parent = new int[size];
+        for (int id = 0; id < size; id++)
+            parent[id] = id;
+        int[] chain = new int[size];
+        int maxDepth = 0;
+        for (int id = 0; id < size; id++) {
+            if (!isRegistered(id) || depth[id] >= 0)
+                continue;
+            // walk up to a device of known depth, then set the depths on the way down
+            int length = 0;
+            int current = id;
+            while (depth[current] < 0) {
+                depth[current] = -2;
+                chain[length++] = current;
+                int parentId = parentOf(current);
+                if (parentId == current || depth[parentId] == -2) {
+                    // a root, or a cycle which is cut here
+                    depth[current] = 0;
+                    length--;
+                    break;
+                }
+                parent[current] = parentId;
+                current = parentId;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                depth[chain[i]] = depth[parent[chain[i]]] + 1;
+                maxDepth = Math.max(maxDepth, depth[chain[i]]);
+            }
+        }
+        // room for leaves to move one level deeper without reading the tree again
+        int levels = 33 - Integer.numberOfLeadingZeros(maxDepth + 1);
+        ancestors = new int[levels][];
+        ancestors[0] = parent;
+        for (int id = 0; id < size; id++) {
+            if (depth[id] > 0)
+                childCount[parent[id]]++;
+        }
+        for (int k = 1; k < levels; k++) {
+            int[] previous = ancestors[k - 1];
+            int[] level = new int[size];
+            for (int id = 0; id < size; id++)
+                level[id] = depth[id] >= 0 ? previous[previous[id]] : id;
+            ancestors[k] = level;
+        }
+        stale = false;
+    }
+}
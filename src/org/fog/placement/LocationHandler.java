@@ -1,4 +1,5 @@
 package org.fog.placement;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -7,6 +8,7 @@ import java.util.Map;
 
 import org.fog.mobilitydata.Location;
 import org.fog.mobilitydata.DataParser;
+import org.fog.mobilitydata.LocationIndex;
 import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 
@@ -15,6 +17,24 @@ public class LocationHandler {
 	public DataParser dataObject;
 	public Map<Integer, String> instanceToDataId;
 	
+	/**
+	 * Reverse of instanceToDataId, kept by linkDataWithInstance. When several instances share a
+	 * data id, the one with the largest id is kept, which is the one a scan of instanceToDataId
+	 * used to end on.
+	 */
+	private Map<String, Integer> dataIdToInstance = new HashMap<String, Integer>();
+	private int reverseLinkedCount = 0;
+	
+	/** Spatial index of the resources of each level, built on first use. */
+	private Map<Integer, LocationIndex> levelIndexes = new HashMap<Integer, LocationIndex>();
+	
+	private static final LocationIndex.Distance DISTANCE = new LocationIndex.Distance() {
+		@Override
+		public double between(Location from, Location to) {
+			return calculateDistance(from, to);
+		}
+	};
+	
 
 	public LocationHandler(DataParser dataObject) {
 		// TODO Auto-generated constructor stub
@@ -63,45 +83,19 @@ public class LocationHandler {
 			resourceLoc = getUserLocationInfo(dataId,time);
 		
 		int parentInstanceId = References.NOT_SET;	
-		String parentDataId = "";
-				
+		LocationIndex parents = getLevelIndex(parentLevel);
 	
 		if(time<References.INIT_TIME){
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-				if(potentialParentLoc.block==resourceLoc.block) {
-					parentDataId = getLevelWiseResources(parentLevel).get(i);
-					for(int parentIdIterator: instanceToDataId.keySet())
-					{
-						if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-						{
-							parentInstanceId = parentIdIterator;
-						}
-					}
-				}	
-			}
+			// the last resource of the block that stands for an instance
+			List<Integer> sameBlock = parents.getPositionsInBlock(resourceLoc.block);
+			for(int i=sameBlock.size()-1; i>=0 && parentInstanceId==References.NOT_SET; i--)
+				parentInstanceId = getInstanceIdByDataId(parents.getDataId(sameBlock.get(i)));
 		}
 		else
 		{
-			double minmumDistance = Config.MAX_VALUE;
-			for(int i=0; i<getLevelWiseResources(parentLevel).size();i++){
-				Location potentialParentLoc = getResourceLocationInfo(getLevelWiseResources(parentLevel).get(i));
-				
-				double distance = calculateDistance(resourceLoc, potentialParentLoc);
-					if(distance<minmumDistance){
-						parentDataId = getLevelWiseResources(parentLevel).get(i);
-						minmumDistance = distance;
-					}
-			}
-			
-			for(int parentIdIterator: instanceToDataId.keySet())
-			{
-				if(instanceToDataId.get(parentIdIterator).equals(parentDataId))
-				{
-					parentInstanceId = parentIdIterator;
-				}
-			}
-			
+			int nearest = parents.nearest(resourceLoc);
+			if(nearest>=0 && calculateDistance(resourceLoc, getResourceLocationInfo(parents.getDataId(nearest)))<Config.MAX_VALUE)
+				parentInstanceId = getInstanceIdByDataId(parents.getDataId(nearest));
 		}
 		
 		return parentInstanceId;	
@@ -109,7 +103,7 @@ public class LocationHandler {
 
 	private Location getUserLocationInfo(String dataId, double time) {
 		// TODO Auto-generated method stub
-		return getDataObject().usersLocation.get(dataId).get(time);
+		return getDataObject().getUserLocation(dataId, time);
 	}
 
 	private Location getResourceLocationInfo(String dataId) {
@@ -121,13 +115,69 @@ public class LocationHandler {
 	public List<Double> getTimeSheet(int instanceId) {
 		
 		String dataId = getDataIdByInstanceID(instanceId);
-		List<Double>timeSheet = new ArrayList<Double>(getDataObject().usersLocation.get(dataId).keySet());
+		List<Double>timeSheet = getDataObject().getUserEventTimes(dataId);
 		return timeSheet;
 	}
 
+	/**
+	 * Gets the time of the next location change of a mobile device.
+	 * 
+	 * @param instanceId the id of the device
+	 * @param time the time of its last location change, as found in its time sheet
+	 * @return the first time of its time sheet after the given time, or NaN if there is none
+	 */
+	public double getNextEventTime(int instanceId, double time) {
+		return getDataObject().getNextUserEventTime(getDataIdByInstanceID(instanceId), time);
+	}
+
+	public int getEventCount(int instanceId) {
+		return getDataObject().getUserEventCount(getDataIdByInstanceID(instanceId));
+	}
+
 	public void linkDataWithInstance(int instanceId, String dataID) {
 		// TODO Auto-generated method stub
-		instanceToDataId.put(instanceId, dataID);
+		String previous = instanceToDataId.put(instanceId, dataID);
+		if(previous!=null && !previous.equals(dataID))
+			reverseLinkedCount = -1;
+		else if(reverseLinkedCount==instanceToDataId.size()-(previous==null ? 1 : 0)){
+			addReverseLink(instanceId, dataID);
+			reverseLinkedCount = instanceToDataId.size();
+		}
+	}
+	
+	private void addReverseLink(int instanceId, String dataID) {
+		Integer linked = dataIdToInstance.get(dataID);
+		if(linked==null || linked<instanceId)
+			dataIdToInstance.put(dataID, instanceId);
+	}
+	
+	/**
+	 * Gets the instance standing for a data id.
+	 * 
+	 * @param dataID the data id
+	 * @return the instance id, or References.NOT_SET
+	 */
+	public int getInstanceIdByDataId(String dataID) {
+		Integer instanceId = dataIdToInstance.get(dataID);
+		// instanceToDataId is public : rebuild the reverse map if it was changed directly
+		if(reverseLinkedCount!=instanceToDataId.size() || (instanceId!=null && !dataID.equals(instanceToDataId.get(instanceId)))){
+			dataIdToInstance.clear();
+			for(Map.Entry<Integer, String> link : instanceToDataId.entrySet())
+				addReverseLink(link.getKey(), link.getValue());
+			reverseLinkedCount = instanceToDataId.size();
+			instanceId = dataIdToInstance.get(dataID);
+		}
+		return instanceId==null ? References.NOT_SET : instanceId;
+	}
+	
+	private LocationIndex getLevelIndex(int level) {
+		List<String> resources = getLevelWiseResources(level);
+		LocationIndex index = levelIndexes.get(level);
+		if(index==null || index.size()!=resources.size()){
+			index = new LocationIndex(resources, getDataObject().resourceLocationData, DISTANCE);
+			levelIndexes.put(level, index);
+		}
+		return index;
 	}
 
 	public int getLevelID(String resourceType) {
@@ -145,6 +195,10 @@ public class LocationHandler {
 		getDataObject().parseUserData(userMobilityPattern, datasetReference);
 	}
 
+	public void parseUserTraceInfo(Map<Integer, Integer> userMobilityPattern, File traceFile) throws IOException {
+		getDataObject().parseUserTraces(userMobilityPattern, traceFile);
+	}
+
 	public void parseResourceInfo() throws NumberFormatException, IOException {
 		// TODO Auto-generated method stub
 		getDataObject().parseResourceData();
@@ -152,7 +206,7 @@ public class LocationHandler {
 
 	public List<String> getMobileUserDataId() {
 		// TODO Auto-generated method stub
-		List<String> userDataIds = new ArrayList<>(getDataObject().usersLocation.keySet());
+		List<String> userDataIds = getDataObject().getUserDataIds();
 		return userDataIds;
 		
 	}
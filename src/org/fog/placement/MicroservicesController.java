@@ -18,6 +18,7 @@ import java.util.*;
 public class MicroservicesController extends SimEntity {
 
     protected List<FogDevice> fogDevices;
+    private FogDeviceTree deviceTree;
     protected List<Sensor> sensors;
     protected Map<String, Application> applications = new HashMap<>();
     protected PlacementLogicFactory placementLogicFactory = new PlacementLogicFactory();
@@ -26,6 +27,8 @@ public class MicroservicesController extends SimEntity {
 
     protected List<Integer> clustering_levels;
 
+    protected ShortestPathRouting routing;
+
     /**
      * @param name
      * @param fogDevices
@@ -117,18 +120,20 @@ public class MicroservicesController extends SimEntity {
     }
 
     protected FogDevice getFogDeviceById(int id) {
-        for (FogDevice f : fogDevices) {
-            if (f.getId() == id)
-                return f;
-        }
-        return null;
+        return getDeviceTree().getFogDevice(id);
+    }
+
+    protected FogDeviceTree getDeviceTree() {
+        if (deviceTree == null || !deviceTree.isFor(fogDevices))
+            deviceTree = new FogDeviceTree(fogDevices);
+        return deviceTree;
     }
 
     protected void generateRoutingTable() {
-        Map<Integer, Map<Integer, Integer>> routing = ShortestPathRoutingGenerator.generateRoutingTable(fogDevices);
+        routing = ShortestPathRoutingGenerator.generateRouting(fogDevices);
 
         for (FogDevice f : fogDevices) {
-            ((MicroserviceFogDevice) f).addRoutingTable(routing.get(f.getId()));
+            ((MicroserviceFogDevice) f).addRoutingTable(routing.getRoutingTable(f.getId()));
         }
 
     }
@@ -219,7 +224,7 @@ public class MicroservicesController extends SimEntity {
                 printCostDetails();
                 printNetworkUsageDetails();
                 printQoSDetails();
-                System.exit(0);
+                FogUtils.endSimulation();
                 break;
         }
 
@@ -298,7 +303,7 @@ public class MicroservicesController extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -310,6 +315,8 @@ public class MicroservicesController extends SimEntity {
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
             System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+            if (Config.PRINT_LATENCY_PERCENTILES && TimeKeeper.getInstance().getLoopLatencyHistogram(loopId) != null)
+                System.out.println("\t" + TimeKeeper.getInstance().getLoopLatencyHistogram(loopId));
         }
         System.out.println("=========================================");
         System.out.println("TUPLE CPU EXECUTION DELAY");
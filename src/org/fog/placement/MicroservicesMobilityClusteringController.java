@@ -14,6 +14,7 @@ import org.fog.entities.PlacementRequest;
 import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
+import org.fog.utils.FogUtils;
 import org.fog.utils.MigrationDelayMonitor;
 import org.json.simple.JSONObject;
 
@@ -21,7 +22,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Created by Samodha Pallewatta on 7/31/2020.
@@ -29,6 +29,7 @@ import java.util.stream.Collectors;
 public class MicroservicesMobilityClusteringController extends MicroservicesController {
 
     private LocationHandler locator;
+    private MobilityEventStream mobilityEvents;
     private Map<Integer, Integer> parentReference;
 
 
@@ -101,7 +102,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                 printCostDetails();
                 printNetworkUsageDetails();
                 printMigrationDelayDetails();
-                System.exit(0);
+                FogUtils.endSimulation();
                 break;
             default:
                 super.processEvent(ev);
@@ -166,6 +167,8 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
         // TODO Auto-generated method stub
         FogDevice fogDevice = (FogDevice) ev.getData();
+        if (mobilityEvents != null)
+            mobilityEvents.next(fogDevice);
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
         System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
@@ -178,12 +181,11 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
             //printFogDeviceChildren(prevParent.getId());
 
             //common ancestor policy
-            List<Integer> newParentPath = getPathsToCloud(newParent.getId());
-            List<Integer> prevParentPath = getPathsToCloud(prevParent.getId());
-            int commonAncestor = determineAncestor(newParentPath, prevParentPath);
+            int commonAncestor = determineAncestor(newParent.getId(), prevParent.getId());
 
 
             fogDevice.setParentId(newParent.getId());
+            getDeviceTree().parentChanged(fogDevice.getId());
             System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
@@ -253,20 +255,8 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
     }
 
     private void updateRoutingTable(FogDevice fogDevice) {
-
-        for (FogDevice f : fogDevices) {
-            if (f.getId() != fogDevice.getId()) {
-                // for mobile device update all to parent
-                ((MicroserviceFogDevice) fogDevice).updateRoutingTable(f.getId(), fogDevice.getParentId());
-
-                ////for other update route to mobile based on route to parent
-                int nextId = ((MicroserviceFogDevice) f).getRoutingTable().get(fogDevice.getParentId());
-                if (f.getId() != nextId)
-                    ((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), nextId);
-                else
-                    ((MicroserviceFogDevice) f).updateRoutingTable(fogDevice.getId(), fogDevice.getId());
-            }
-        }
+        // a mobile device routes everything to its parent, and everyone routes to it as to its parent
+        routing.parentChanged(fogDevice);
     }
 
     private void serviceDiscoveryUpdate(FogDevice fogDevice, Map<String, Integer> migratingModules, String applicationName, int newParent, HashMap<String, Double> upDelays, HashMap<String, Double> downDelays) {
@@ -354,15 +344,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
     }
 
     private boolean beforeCommonAncestor(Integer deviceid, int commonAncestor) {
-        FogDevice f = getFogDeviceById(deviceid);
-        if (f.getId() == commonAncestor)
-            return false;
-        while (f.getParentId() != -1) {
-            f = getFogDeviceById(f.getParentId());
-            if (f.getId() == commonAncestor)
-                return true;
-        }
-        return false;
+        return getDeviceTree().isAncestor(commonAncestor, deviceid);
     }
 
     private double getDownDelay(int deviceID, int commonAncestorID, AppModule module) {
@@ -385,32 +367,19 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
         return networkDelay;
     }
 
-    private int determineAncestor(List<Integer> newParentPath, List<Integer> prevParentPath) {
-        // TODO Auto-generated method stub
-        List<Integer> common = newParentPath.stream().filter(prevParentPath::contains).collect(Collectors.toList());
-        return common.get(0);
-    }
-
-    private List<Integer> getPathsToCloud(int deviceID) {
-        // TODO Auto-generated method stub
-        List<Integer> path = new ArrayList<Integer>();
-        while (!locator.isCloud(deviceID)) {
-            path.add(deviceID);
-            deviceID = getFogDeviceById(deviceID).getParentId();
-        }
-        path.add(getCloud().getId());
-        return path;
+    private int determineAncestor(int newParentId, int prevParentId) {
+        int commonAncestor = getDeviceTree().getCommonAncestor(newParentId, prevParentId);
+        // devices in different trees only meet at the cloud
+        return commonAncestor >= 0 ? commonAncestor : getCloud().getId();
     }
 
     private void processMobilityData() {
         // TODO Auto-generated method stub
-        List<Double> timeSheet = new ArrayList<Double>();
+        // only the next mobility event of each device is queued, see processMobility
+        mobilityEvents = new MobilityEventStream(getId(), locator);
         for (FogDevice fogDevice : fogDevices) {
-            if (locator.isAMobileDevice(fogDevice.getId())) {
-                timeSheet = locator.getTimeSheet(fogDevice.getId());
-                for (double timeEntry : timeSheet)
-                    send(getId(), timeEntry, FogEvents.MOBILITY_MANAGEMENT, fogDevice);
-            }
+            if (locator.isAMobileDevice(fogDevice.getId()))
+                mobilityEvents.start(fogDevice);
         }
     }
 
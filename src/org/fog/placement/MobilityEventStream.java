@@ -0,0 +1,79 @@
+package org.fog.placement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.FogDevice;
+import org.fog.utils.FogEvents;
+
+/**
+ * Streams the mobility events of the mobile devices to a controller. Only the next event of each
+ * device is in the future event queue : the following one is scheduled when the controller
+ * processes it, so the queue holds one mobility event per device whatever the length of the traces.
+ * <p>
+ * Event times are read from the {@link LocationHandler}, relative to the time the stream is
+ * started, as they were when all of them were scheduled up front. Events are sent at the absolute
+ * time rather than after a delay from the current time, which would not always add back up to it.
+ * The serials of the events are reserved when a device is started, so that they keep the place
+ * they had then among the events with the same time.
+ *
+ * @author Mohammad Goudarzi
+ */
+public class MobilityEventStream {
+
+	private final int controllerId;
+	private final LocationHandler locator;
+
+	/** The time the stream was started at. */
+	private final double startTime;
+
+	/** The pending event of each device. */
+	private final Map<Integer, PendingEvent> pendingEvents = new HashMap<Integer, PendingEvent>();
+
+	private static class PendingEvent {
+		/** The time of the event, relative to the start time. */
+		double time;
+		/** The serial reserved for the event. */
+		long serial;
+	}
+
+	public MobilityEventStream(int controllerId, LocationHandler locator) {
+		this.controllerId = controllerId;
+		this.locator = locator;
+		this.startTime = CloudSim.clock();
+	}
+
+	/**
+	 * Schedules the first mobility event of a device.
+	 *
+	 * @param fogDevice the mobile device
+	 */
+	public void start(FogDevice fogDevice) {
+		PendingEvent event = new PendingEvent();
+		event.time = Double.NEGATIVE_INFINITY;
+		event.serial = CloudSim.reserveSerials(locator.getEventCount(fogDevice.getId()));
+		scheduleAfter(fogDevice, event);
+	}
+
+	/**
+	 * Schedules the mobility event of a device that follows the one being processed. Nothing is
+	 * scheduled for a device the stream did not start.
+	 *
+	 * @param fogDevice the mobile device
+	 */
+	public void next(FogDevice fogDevice) {
+		PendingEvent event = pendingEvents.remove(fogDevice.getId());
+		if(event!=null)
+			scheduleAfter(fogDevice, event);
+	}
+
+	/** Schedules the event of a device following the given one, which is reused for it. */
+	private void scheduleAfter(FogDevice fogDevice, PendingEvent event) {
+		event.time = locator.getNextEventTime(fogDevice.getId(), event.time);
+		if(Double.isNaN(event.time))
+			return;
+		pendingEvents.put(fogDevice.getId(), event);
+		CloudSim.sendAt(controllerId, controllerId, Math.max(CloudSim.clock(), startTime + event.time), FogEvents.MOBILITY_MANAGEMENT, fogDevice, event.serial++);
+	}
+}
@@ -1,15 +1,192 @@
 package org.fog.scheduler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.Consts;
 import org.cloudbus.cloudsim.ResCloudlet;
+import org.cloudbus.cloudsim.core.CloudSim;
 
+/**
+ * Time-shared scheduler of the tuples executed by an application module.
+ * <p>
+ * All the running tuples with the same number of PEs execute the same number of instructions at
+ * each update, so instead of adding it to every tuple, the scheduler adds it to a virtual clock :
+ * the number of instructions executed by each of these tuples since the scheduler was created. A
+ * tuple finishes when the clock reaches the point its remaining length was worth when it started
+ * running, so the running tuples are kept in a min-heap of their finish points, and an update
+ * only pops the tuples that have finished and reads the earliest finish point, whatever the number
+ * of tuples queued on the module. The instructions executed by a tuple are brought up to date when
+ * it leaves the heap, or is the earliest to finish.
+ * <p>
+ * The results are the ones of {@link CloudletSchedulerTimeShared} : the same amounts, rounded the
+ * same way, are executed, and the tuples finished by an update are reported in the order they
+ * started running. The finished tuples are removed from the list of running cloudlets when the
+ * list is next read, or once they outnumber the running ones.
+ */
 public class TupleScheduler extends CloudletSchedulerTimeShared{
 
+	/** Orders the tuples by the time they started running. */
+	private static final Comparator<RunningTuple> START_ORDER = new Comparator<RunningTuple>() {
+		@Override
+		public int compare(RunningTuple a, RunningTuple b) {
+			return Long.compare(a.sequence, b.sequence);
+		}
+	};
+
+	/** The running tuples, by number of PEs. */
+	private final List<Share> shares = new ArrayList<Share>();
+
+	/** The number of running tuples, and of PEs they use. */
+	private int running;
+	private int pesInUse;
+
+	/** The number of finished tuples still in the list of running cloudlets. */
+	private int finished;
+
+	/** The start order of the next tuple. */
+	private long nextSequence;
+
+	/** The buffer reused to hold the tuples finished by an update. */
+	private final List<RunningTuple> finishing = new ArrayList<RunningTuple>();
+
 	public TupleScheduler(double mips, int numberOfPes) {
 		//super(mips, numberOfPes);
 		super();
 	}
 
+	@Override
+	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+		setCurrentMipsShare(mipsShare);
+		double timeSpam = currentTime - getPreviousTime();
+		double capacity = getCapacity(mipsShare, pesInUse);
+
+		for (Share share : shares) {
+			share.executed += (long) (capacity * timeSpam * share.pes * Consts.MILLION);
+		}
+
+		if (running == 0) {
+			setPreviousTime(currentTime);
+			return 0.0;
+		}
+
+		// check finished tuples
+		for (Share share : shares) {
+			while (share.size > 0 && share.heap[0].finishPoint - share.executed < Consts.MILLION) {
+				finishing.add(share.poll());
+			}
+		}
+		if (finishing.size() > 1) {
+			Collections.sort(finishing, START_ORDER);
+		}
+		for (RunningTuple rcl : finishing) {
+			stop(rcl);
+			rcl.finished = true;
+			finished++;
+			cloudletFinish(rcl);
+		}
+		finishing.clear();
+		if (finished > running) {
+			removeFinished();
+		}
+
+		// estimate finish time of the earliest tuple of each share
+		double nextEvent = Double.MAX_VALUE;
+		capacity = getCapacity(mipsShare, pesInUse);
+		for (Share share : shares) {
+			if (share.size == 0) {
+				continue;
+			}
+			RunningTuple rcl = share.heap[0];
+			rcl.sync();
+			double estimatedFinishTime = currentTime
+					+ (rcl.getRemainingCloudletLength() / (capacity * rcl.getNumberOfPes()));
+			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
+				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+			}
+
+			if (estimatedFinishTime < nextEvent) {
+				nextEvent = estimatedFinishTime;
+			}
+		}
+
+		setPreviousTime(currentTime);
+		return nextEvent;
+	}
+
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		RunningTuple rcl = new RunningTuple(cloudlet);
+		rcl.setCloudletStatus(Cloudlet.INEXEC);
+		for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
+			rcl.setMachineAndPeId(0, i);
+		}
+
+		super.getCloudletExecList().add(rcl);
+		pesInUse += rcl.getNumberOfPes();
+
+		// use the current capacity to estimate the extra amount of
+		// time to file transferring. It must be added to the cloudlet length
+		double extraSize = getCapacity(getCurrentMipsShare(), pesInUse) * fileTransferTime;
+		long length = (long) (cloudlet.getCloudletLength() + extraSize);
+		cloudlet.setCloudletLength(length);
+		start(rcl);
+		return cloudlet.getCloudletLength() / getCapacity(getCurrentMipsShare(), pesInUse);
+	}
+
+	@Override
+	public Cloudlet cloudletCancel(int cloudletId) {
+		stop(cloudletId);
+		return super.cloudletCancel(cloudletId);
+	}
+
+	@Override
+	public boolean cloudletPause(int cloudletId) {
+		stop(cloudletId);
+		return super.cloudletPause(cloudletId);
+	}
+
+	@Override
+	public double cloudletResume(int cloudletId) {
+		for (ResCloudlet rcl : getCloudletPausedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				pesInUse += rcl.getNumberOfPes();
+				start((RunningTuple) rcl);
+				break;
+			}
+		}
+		return super.cloudletResume(cloudletId);
+	}
+
+	@Override
+	public Cloudlet migrateCloudlet() {
+		stop((RunningTuple) getCloudletExecList().get(0));
+		return super.migrateCloudlet();
+	}
+
+	@Override
+	public int runningCloudlets() {
+		return running;
+	}
+
+	@Override
+	protected double getCapacity(List<Double> mipsShare) {
+		return getCapacity(mipsShare, pesInUse);
+	}
+
+	@Override
+	protected <T extends ResCloudlet> List<T> getCloudletExecList() {
+		if (finished > 0) {
+			removeFinished();
+		}
+		return super.getCloudletExecList();
+	}
+
 	/**
 	 * Get estimated cloudlet completion time.
 	 * 
@@ -24,7 +201,6 @@ public class TupleScheduler extends CloudletSchedulerTimeShared{
 		/*>>>>>>>>>>>>>>>>>>>>*/
 		/* edit made by HARSHIT GUPTA */
 		
-		System.out.println("ALLOCATED MIPS FOR CLOUDLET = "+getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		return time
 				+ ((rcl.getRemainingCloudletLength()) / getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		
@@ -40,5 +216,174 @@ public class TupleScheduler extends CloudletSchedulerTimeShared{
 //		rcl.finalizeCloudlet();
 //		getCloudletFinishedList().add(rcl);
 //	}
-	
+
+	/** Puts a tuple, already counted in the PEs in use, in the heap of its share. */
+	private void start(RunningTuple rcl) {
+		Share share = null;
+		for (Share candidate : shares) {
+			if (candidate.pes == rcl.getNumberOfPes()) {
+				share = candidate;
+				break;
+			}
+		}
+		if (share == null) {
+			share = new Share(rcl.getNumberOfPes());
+			shares.add(share);
+		}
+		rcl.share = share;
+		rcl.synced = share.executed;
+		rcl.finishPoint = share.executed + rcl.getCloudlet().getCloudletTotalLength() * Consts.MILLION - rcl.finishedSoFar;
+		rcl.sequence = nextSequence++;
+		share.add(rcl);
+		running++;
+	}
+
+	/** Takes a running tuple out of its heap, with the instructions it has executed up to date. */
+	private void stop(RunningTuple rcl) {
+		rcl.sync();
+		if (rcl.heapIndex >= 0) {
+			rcl.share.remove(rcl);
+		}
+		rcl.share = null;
+		pesInUse -= rcl.getNumberOfPes();
+		running--;
+	}
+
+	private void stop(int cloudletId) {
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				stop((RunningTuple) rcl);
+				return;
+			}
+		}
+	}
+
+	private void removeFinished() {
+		List<RunningTuple> execList = super.getCloudletExecList();
+		int size = 0;
+		for (int i = 0; i < execList.size(); i++) {
+			RunningTuple rcl = execList.get(i);
+			if (!rcl.finished) {
+				execList.set(size++, rcl);
+			}
+		}
+		execList.subList(size, execList.size()).clear();
+		finished = 0;
+	}
+
+	/** A tuple run by the scheduler. */
+	private static class RunningTuple extends ResCloudlet {
+
+		/** The instructions executed so far, as counted by the cloudlet. */
+		long finishedSoFar;
+
+		/** The share the tuple runs in, while it runs. */
+		Share share;
+
+		/** The clock of the share when the instructions executed were last brought up to date. */
+		long synced;
+
+		/** The clock of the share at which no instruction is left to execute. */
+		long finishPoint;
+
+		/** The start order of the tuple. */
+		long sequence;
+
+		/** The index of the tuple in the heap of its share, or -1. */
+		int heapIndex = -1;
+
+		/** Whether the tuple has finished, but is still in the list of running cloudlets. */
+		boolean finished;
+
+		RunningTuple(Cloudlet cloudlet) {
+			super(cloudlet);
+			finishedSoFar = cloudlet.getCloudletFinishedSoFar() * Consts.MILLION;
+		}
+
+		void sync() {
+			if (share != null && synced != share.executed) {
+				updateCloudletFinishedSoFar(share.executed - synced);
+				finishedSoFar += share.executed - synced;
+				synced = share.executed;
+			}
+		}
+
+	}
+
+	/** The tuples running with a given number of PEs, in a min-heap of their finish points. */
+	private static class Share {
+
+		final int pes;
+
+		/** The instructions executed by each tuple of the share since the scheduler was created. */
+		long executed;
+
+		RunningTuple[] heap = new RunningTuple[16];
+		int size;
+
+		Share(int pes) {
+			this.pes = pes;
+		}
+
+		void add(RunningTuple rcl) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			up(rcl, size++);
+		}
+
+		RunningTuple poll() {
+			RunningTuple first = heap[0];
+			remove(first);
+			return first;
+		}
+
+		void remove(RunningTuple rcl) {
+			int index = rcl.heapIndex;
+			RunningTuple last = heap[--size];
+			heap[size] = null;
+			rcl.heapIndex = -1;
+			if (last != rcl) {
+				down(last, index);
+				if (last.heapIndex == index) {
+					up(last, index);
+				}
+			}
+		}
+
+		private void up(RunningTuple rcl, int index) {
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+				if (heap[parent].finishPoint <= rcl.finishPoint) {
+					break;
+				}
+				place(heap[parent], index);
+				index = parent;
+			}
+			place(rcl, index);
+		}
+
+		private void down(RunningTuple rcl, int index) {
+			int half = size >>> 1;
+			while (index < half) {
+				int child = 2 * index + 1;
+				if (child + 1 < size && heap[child + 1].finishPoint < heap[child].finishPoint) {
+					child++;
+				}
+				if (rcl.finishPoint <= heap[child].finishPoint) {
+					break;
+				}
+				place(heap[child], index);
+				index = child;
+			}
+			place(rcl, index);
+		}
+
+		private void place(RunningTuple rcl, int index) {
+			heap[index] = rcl;
+			rcl.heapIndex = index;
+		}
+
+	}
+
 }
@@ -14,6 +14,9 @@ public class Config {
 	public static double FOG_DEVICE_COST_PER_STORAGE = 0.001;
 	public static double FOG_DEVICE_COST_PER_BW = 0.0;
 	public static double MAX_VALUE = 1000000.0;
+	// Print the 50th, 95th and 99th percentiles of the loop latencies besides their averages
+	public static boolean PRINT_LATENCY_PERCENTILES = false;
+	public static boolean PRINT_ROUTING_TABLE = true;
 
 	// Create cluster among devices of same level with common parent irrespective of location. Only one of the two clustering modes should be used for clustering
 	public static boolean ENABLE_STATIC_CLUSTERING = false;
@@ -0,0 +1,296 @@
+package org.fog.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.ContextLocal;
+import org.fog.application.AppModule;
+import org.fog.entities.Tuple;
+
+/**
+ * Binary trace of the events of a simulation : tuples sent, received and executed, modules
+ * migrated and energy consumed by the devices.
+ * <p>
+ * Events are written as fixed size records into preallocated direct buffers, which a background
+ * thread writes to the trace file as they fill up, so recording an event neither formats nor
+ * allocates anything. Tuple types and module names are recorded as ids, and written to the end of
+ * the file with the names of the devices when the trace is stopped. {@link EventTraceDecoder}
+ * turns a trace file into CSV.
+ * <p>
+ * A trace records the simulation of the context it is started in. Callers check {@link #ENABLED}
+ * before recording, as they check {@link Logger#ENABLED}, so that a simulation run without a trace
+ * only pays for that branch :
+ *
+ * <pre>
+ * if (EventTrace.ENABLED)
+ *     EventTrace.tupleSent(getId(), tuple, parentId);
+ * </pre>
+ */
+public class EventTrace {
+
+	public static final short TUPLE_SENT = 1;
+	public static final short TUPLE_RECEIVED = 2;
+	public static final short TUPLE_EXECUTED = 3;
+	public static final short MODULE_MIGRATED = 4;
+	public static final short ENERGY_CONSUMED = 5;
+
+	/** "IFTR" */
+	static final int MAGIC = 0x49465452;
+	static final int VERSION = 1;
+
+	/** Size in bytes of the header : magic, version, record size, padded to 16 bytes. */
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * Size in bytes of a record : type, padding, device id, time, subject id (tuple or module),
+	 * peer id, name id, padding, value.
+	 */
+	static final int RECORD_SIZE = 40;
+
+	/** Size in bytes of the trailer : offset of the name table, magic. */
+	static final int TRAILER_SIZE = 12;
+
+	private static final int SEGMENT_SIZE = 1 << 20;
+	private static final int SEGMENTS = 4;
+
+	/** Whether a trace is recorded in any context. */
+	public static boolean ENABLED = false;
+
+	/** The number of traces being recorded. */
+	private static int open;
+
+	private static final ContextLocal<EventTrace> TRACE = new ContextLocal<EventTrace>();
+
+	/** Handed to the writer thread to have it stop. */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final File file;
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<ByteBuffer>(SEGMENTS + 1);
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(SEGMENTS);
+	private final Thread writer;
+	private volatile IOException failure;
+
+	private ByteBuffer segment;
+	private long records;
+
+	/** The ids of the names, and the ids of the entities met. */
+	private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+	private final BitSet entities = new BitSet();
+
+	private EventTrace(File file) throws IOException {
+		this.file = file;
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE);
+		header.clear();
+		channel.write(header);
+		for (int i = 0; i < SEGMENTS; i++) {
+			free.add(ByteBuffer.allocateDirect(SEGMENT_SIZE / RECORD_SIZE * RECORD_SIZE));
+		}
+		segment = free.remove();
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "event-trace-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Starts recording the simulation of the current context into a file.
+	 *
+	 * @param file the trace file, overwritten
+	 * @throws IOException if the file cannot be written
+	 */
+	public static synchronized void start(File file) throws IOException {
+		if (TRACE.get() != null)
+			throw new IllegalStateException("A trace is already recorded in this context");
+		TRACE.set(new EventTrace(file));
+		open++;
+		ENABLED = true;
+	}
+
+	/**
+	 * Stops recording the simulation of the current context, once the events recorded are written.
+	 * Does nothing if no trace is recorded.
+	 *
+	 * @throws IOException if the trace could not be written
+	 */
+	public static synchronized void stop() throws IOException {
+		EventTrace trace = TRACE.get();
+		if (trace == null)
+			return;
+		TRACE.set(null);
+		if (--open == 0)
+			ENABLED = false;
+		trace.close();
+	}
+
+	/**
+	 * Gets the file the simulation of the current context is recorded into.
+	 *
+	 * @return the trace file, or null if no trace is recorded
+	 */
+	public static File getFile() {
+		EventTrace trace = TRACE.get();
+		return trace != null ? trace.file : null;
+	}
+
+	public static void tupleSent(int deviceId, Tuple tuple, int destinationId) {
+		EventTrace trace = TRACE.get();
+		if (trace != null)
+			trace.record(TUPLE_SENT, deviceId, tuple.getCloudletId(), destinationId, tuple.getTupleType(), tuple.getCloudletFileSize());
+	}
+
+	public static void tupleReceived(int deviceId, Tuple tuple, int sourceId) {
+		EventTrace trace = TRACE.get();
+		if (trace != null)
+			trace.record(TUPLE_RECEIVED, deviceId, tuple.getCloudletId(), sourceId, tuple.getTupleType(), tuple.getCloudletLength());
+	}
+
+	public static void tupleExecuted(int deviceId, Tuple tuple, int vmId) {
+		EventTrace trace = TRACE.get();
+		if (trace != null)
+			trace.record(TUPLE_EXECUTED, deviceId, tuple.getCloudletId(), vmId, tuple.getDestModuleName(), tuple.getCloudletLength());
+	}
+
+	public static void moduleMigrated(int deviceId, AppModule module, int sourceId, double delay) {
+		EventTrace trace = TRACE.get();
+		if (trace != null)
+			trace.record(MODULE_MIGRATED, deviceId, module.getId(), sourceId, module.getName(), delay);
+	}
+
+	public static void energyConsumed(int deviceId, double energy) {
+		EventTrace trace = TRACE.get();
+		if (trace != null)
+			trace.record(ENERGY_CONSUMED, deviceId, -1, -1, null, energy);
+	}
+
+	private void record(short type, int deviceId, int subjectId, int peerId, String name, double value) {
+		if (segment.remaining() < RECORD_SIZE) {
+			full.add(segment);
+			segment = take(free);
+		}
+		segment.putShort(type).putShort((short) 0)
+				.putInt(deviceId)
+				.putDouble(CloudSim.clock())
+				.putInt(subjectId)
+				.putInt(peerId)
+				.putInt(nameId(name))
+				.putInt(0)
+				.putDouble(value);
+		if (deviceId >= 0)
+			entities.set(deviceId);
+		if (peerId >= 0 && type != TUPLE_EXECUTED)
+			entities.set(peerId);
+		records++;
+	}
+
+	private int nameId(String name) {
+		if (name == null)
+			return -1;
+		Integer id = nameIds.get(name);
+		if (id == null) {
+			id = nameIds.size();
+			nameIds.put(name, id);
+		}
+		return id;
+	}
+
+	/** Writes the full segments to the file, until the end of the trace. */
+	private void write() {
+		while (true) {
+			ByteBuffer buffer = take(full);
+			if (buffer == END)
+				return;
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining() && failure == null)
+					channel.write(buffer);
+			} catch (IOException e) {
+				failure = e;
+			}
+			buffer.clear();
+			free.add(buffer);
+		}
+	}
+
+	private void close() throws IOException {
+		full.add(segment);
+		full.add(END);
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		try {
+			if (failure != null)
+				throw failure;
+
+			// the names, by id, then the names of the entities met
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream names = new DataOutputStream(bytes);
+			String[] byId = new String[nameIds.size()];
+			for (Map.Entry<String, Integer> entry : nameIds.entrySet())
+				byId[entry.getValue()] = entry.getKey();
+			names.writeInt(byId.length);
+			for (String name : byId)
+				names.writeUTF(name);
+			Map<Integer, String> entityNames = new HashMap<Integer, String>();
+			for (int id = entities.nextSetBit(0); id >= 0; id = entities.nextSetBit(id + 1)) {
+				String name = CloudSim.getEntityName(id);
+				if (name != null)
+					entityNames.put(id, name);
+			}
+			names.writeInt(entityNames.size());
+			for (Map.Entry<Integer, String> entry : entityNames.entrySet()) {
+				names.writeInt(entry.getKey());
+				names.writeUTF(entry.getValue());
+			}
+			names.writeLong(HEADER_SIZE + records * RECORD_SIZE);
+			names.writeInt(MAGIC);
+			ByteBuffer trailer = ByteBuffer.wrap(bytes.toByteArray());
+			while (trailer.hasRemaining())
+				channel.write(trailer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static ByteBuffer take(BlockingQueue<ByteBuffer> queue) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.fog.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns a trace file written by {@link EventTrace} into CSV, with one line per event :
+ * time, event, device, peer, id, name, value. Devices and peers are given by name when the trace
+ * knows it, by id otherwise; the id is the one of the tuple, or of the module migrated.
+ * <p>
+ * Usage : <tt>EventTraceDecoder trace-file [csv-file]</tt>, the CSV being written to the standard
+ * output if no file is given.
+ */
+public class EventTraceDecoder {
+
+	private static final String[] EVENTS = {"", "TUPLE_SENT", "TUPLE_RECEIVED", "TUPLE_EXECUTED", "MODULE_MIGRATED", "ENERGY_CONSUMED"};
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: EventTraceDecoder trace-file [csv-file]");
+			System.exit(1);
+		}
+		PrintWriter out = args.length > 1
+				? new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8"))
+				: new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+		try {
+			decode(new File(args[0]), out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the events of a trace file as CSV.
+	 *
+	 * @param file the trace file
+	 * @param out where to write the CSV
+	 * @throws IOException if the file cannot be read or is not a complete trace file
+	 */
+	public static void decode(File file, PrintWriter out) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(EventTrace.HEADER_SIZE);
+			ByteBuffer trailer = ByteBuffer.allocate(EventTrace.TRAILER_SIZE);
+			if (size < EventTrace.HEADER_SIZE + EventTrace.TRAILER_SIZE)
+				throw new IOException(file + " is not a complete trace file");
+			channel.read(header, 0);
+			channel.read(trailer, size - EventTrace.TRAILER_SIZE);
+			header.flip();
+			trailer.flip();
+			if (header.getInt() != EventTrace.MAGIC || header.getInt() != EventTrace.VERSION
+					|| header.getInt() != EventTrace.RECORD_SIZE)
+				throw new IOException(file + " is not a trace file");
+			long namesOffset = trailer.getLong();
+			if (trailer.getInt() != EventTrace.MAGIC || namesOffset < EventTrace.HEADER_SIZE
+					|| namesOffset > size - EventTrace.TRAILER_SIZE
+					|| (namesOffset - EventTrace.HEADER_SIZE) % EventTrace.RECORD_SIZE != 0)
+				throw new IOException(file + " is not a complete trace file");
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(namesOffset))));
+			String[] names = new String[in.readInt()];
+			for (int i = 0; i < names.length; i++)
+				names[i] = in.readUTF();
+			Map<Integer, String> entityNames = new HashMap<Integer, String>();
+			for (int i = in.readInt(); i > 0; i--) {
+				int id = in.readInt();
+				entityNames.put(id, in.readUTF());
+			}
+
+			long records = (namesOffset - EventTrace.HEADER_SIZE) / EventTrace.RECORD_SIZE;
+			InputStream stream = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+			try {
+				in = new DataInputStream(stream);
+				in.skipBytes(EventTrace.HEADER_SIZE);
+				out.println("time,event,device,peer,id,name,value");
+				for (long i = 0; i < records; i++) {
+					int type = in.readShort();
+					in.readShort();
+					int deviceId = in.readInt();
+					double time = in.readDouble();
+					int subjectId = in.readInt();
+					int peerId = in.readInt();
+					int nameId = in.readInt();
+					in.readInt();
+					double value = in.readDouble();
+					out.print(time);
+					out.print(',');
+					out.print(type > 0 && type < EVENTS.length ? EVENTS[type] : String.valueOf(type));
+					out.print(',');
+					out.print(entity(entityNames, deviceId));
+					out.print(',');
+					out.print(type == EventTrace.TUPLE_EXECUTED ? String.valueOf(peerId) : entity(entityNames, peerId));
+					out.print(',');
+					out.print(subjectId >= 0 ? String.valueOf(subjectId) : "");
+					out.print(',');
+					out.print(nameId >= 0 && nameId < names.length ? quote(names[nameId]) : "");
+					out.print(',');
+					out.println(value);
+				}
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+	private static String entity(Map<Integer, String> entityNames, int id) {
+		if (id < 0)
+			return "";
+		String name = entityNames.get(id);
+		return name != null ? quote(name) : String.valueOf(id);
+	}
+
+	private static String quote(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+			return value;
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+}
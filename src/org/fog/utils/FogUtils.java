@@ -1,15 +1,47 @@
 package org.fog.utils;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.ContextLocal;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
 public class FogUtils {
-	private static int TUPLE_ID = 1;
-	private static int ENTITY_ID = 1;
-	private static int ACTUAL_TUPLE_ID = 1;
+	/** The next ids, kept by each simulation context. */
+	private static class Ids {
+		int tupleId = 1;
+		int entityId = 1;
+		int actualTupleId = 1;
+	}
+	
+	private static final ContextLocal<Ids> IDS = new ContextLocal<Ids>() {
+		@Override
+		protected Ids initialValue() {
+			return new Ids();
+		}
+	};
 	
 	public static int generateTupleId(){
-		return TUPLE_ID++;
+		return IDS.get().tupleId++;
+	}
+	
+	/**
+	 * Ends the simulation once its results have been printed. The JVM exits when the simulation
+	 * runs in the default context; in another context, only that simulation is terminated, so that
+	 * the other simulations of the JVM go on. The {@link EventTrace} of the simulation, if any, is
+	 * written out first.
+	 */
+	public static void endSimulation(){
+		try {
+			EventTrace.stop();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if(SimulationContext.current().isDefault())
+			System.exit(0);
+		CloudSim.abruptallyTerminate();
 	}
 	
 	public static String getSensorTypeFromSensorName(String sensorName){
@@ -17,11 +49,11 @@ public class FogUtils {
 	}
 	
 	public static int generateEntityId(){
-		return ENTITY_ID++;
+		return IDS.get().entityId++;
 	}
 	
 	public static int generateActualTupleId(){
-		return ACTUAL_TUPLE_ID++;
+		return IDS.get().actualTupleId++;
 	}
 	
 	public static int USER_ID = 1;
@@ -29,5 +61,24 @@ public class FogUtils {
 	//public static int MAX = 10000000;
 	public static int MAX = 10000000;
 	
+	/** The geo coverage of the applications of the default context, see {@link #getAppIdToGeoCoverageMap()}. */
 	public static Map<String, GeoCoverage> appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>();
+	
+	private static final ContextLocal<Map<String, GeoCoverage>> GEO_COVERAGE = new ContextLocal<Map<String, GeoCoverage>>() {
+		@Override
+		protected Map<String, GeoCoverage> initialValue(SimulationContext context) {
+			return context.isDefault() ? null : new HashMap<String, GeoCoverage>();
+		}
+	};
+	
+	/**
+	 * Gets the geo coverage of the applications of the current simulation context, which is
+	 * {@link #appIdToGeoCoverageMap} in the default context.
+	 * 
+	 * @return the geo coverage of the applications, by application id
+	 */
+	public static Map<String, GeoCoverage> getAppIdToGeoCoverageMap(){
+		SimulationContext context = SimulationContext.current();
+		return context.isDefault() ? appIdToGeoCoverageMap : GEO_COVERAGE.get(context);
+	}
 }
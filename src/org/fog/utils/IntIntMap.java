@@ -0,0 +1,161 @@
+package org.fog.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Map from int keys to int values, with open addressing and linear probing, as
+ * {@link IntDoubleMap} : nothing is allocated per entry and removal leaves no tombstone.
+ * Used for counters kept per tuple in flight.
+ */
+public class IntIntMap {
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+	private int resizeAt;
+
+	public IntIntMap(){
+		this(16);
+	}
+
+	public IntIntMap(int expectedSize){
+		int capacity = 16;
+		while(capacity * 3 / 4 < expectedSize)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity){
+		keys = new int[capacity];
+		Arrays.fill(keys, FREE);
+		values = new int[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity * 3 / 4;
+	}
+
+	private static int hash(int key){
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int key){
+		if(key == FREE)
+			throw new IllegalArgumentException("Key "+key+" is reserved");
+		int i = hash(key) & mask;
+		while(keys[i] != FREE){
+			if(keys[i] == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public boolean containsKey(int key){
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Returns the value of a key, or defaultValue if the key is absent.
+	 */
+	public int get(int key, int defaultValue){
+		int i = indexOf(key);
+		return i < 0 ? defaultValue : values[i];
+	}
+
+	public void put(int key, int value){
+		if(key == FREE)
+			throw new IllegalArgumentException("Key "+key+" is reserved");
+		int i = hash(key) & mask;
+		while(keys[i] != FREE){
+			if(keys[i] == key){
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if(++size > resizeAt)
+			rehash(keys.length * 2);
+	}
+
+	/**
+	 * Adds delta to the value of a key, absent keys counting as 0.
+	 * @return the new value
+	 */
+	public int addTo(int key, int delta){
+		int value = get(key, 0) + delta;
+		put(key, value);
+		return value;
+	}
+
+	/**
+	 * Removes a key.
+	 * @return the value the key had, or defaultValue if it was absent
+	 */
+	public int remove(int key, int defaultValue){
+		int i = indexOf(key);
+		if(i < 0)
+			return defaultValue;
+		int value = values[i];
+		// shift back the entries of the probe sequence so that none is cut off from its slot
+		int free = i;
+		int j = (i + 1) & mask;
+		while(keys[j] != FREE){
+			int slot = hash(keys[j]) & mask;
+			if(((j - slot) & mask) >= ((j - free) & mask)){
+				keys[free] = keys[j];
+				values[free] = values[j];
+				free = j;
+			}
+			j = (j + 1) & mask;
+		}
+		keys[free] = FREE;
+		size--;
+		return value;
+	}
+
+	/**
+	 * Returns a copy of the entries, in a HashMap.
+	 */
+	public Map<Integer, Integer> toMap(){
+		Map<Integer, Integer> map = new HashMap<Integer, Integer>(size * 4 / 3 + 1);
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != FREE)
+				map.put(keys[i], values[i]);
+		return map;
+	}
+
+	public void clear(){
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	private void rehash(int capacity){
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] == FREE)
+				continue;
+			int j = hash(oldKeys[i]) & mask;
+			while(keys[j] != FREE)
+				j = (j + 1) & mask;
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
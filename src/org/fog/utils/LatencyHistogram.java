@@ -0,0 +1,104 @@
+package org.fog.utils;
+
+import java.util.Arrays;
+
+/**
+ * Constant-memory histogram of latencies, in the manner of HdrHistogram.
+ * Values are counted in log-linear buckets : each power of two is split into
+ * SUB_BUCKETS linear sub-buckets, so a percentile is known within 1/(2*SUB_BUCKETS)
+ * of its value (0.4 %) whatever the number of values recorded. The exact count,
+ * sum, minimum and maximum are kept besides.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Smallest power of two told apart (about 1e-3 ms); smaller values share the first bucket. */
+	private static final int MIN_EXPONENT = -10;
+	/** Largest power of two told apart (about 1e9 ms); larger values share the last bucket. */
+	private static final int MAX_EXPONENT = 30;
+
+	private final long[] counts = new long[(MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS];
+	private long count;
+	private double sum;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public void record(double value){
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		if(value < min)
+			min = value;
+		if(value > max)
+			max = value;
+	}
+
+	private static int bucketOf(double value){
+		if(!(value >= Math.scalb(1.0, MIN_EXPONENT)))
+			return 0;
+		int exponent = Math.getExponent(value);
+		if(exponent > MAX_EXPONENT)
+			return (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS - 1;
+		int sub = (int) (Double.doubleToRawLongBits(value) >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Middle of the values counted in a bucket.
+	 */
+	private static double valueOf(int bucket){
+		int exponent = bucket / SUB_BUCKETS + MIN_EXPONENT;
+		int sub = bucket % SUB_BUCKETS;
+		return Math.scalb(1.0 + (sub + 0.5) / SUB_BUCKETS, exponent);
+	}
+
+	public long getCount(){
+		return count;
+	}
+
+	public double getMean(){
+		return count == 0 ? 0 : sum / count;
+	}
+
+	public double getMin(){
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMax(){
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of the recorded values fall.
+	 * @param percentile between 0 and 100
+	 */
+	public double getValueAtPercentile(double percentile){
+		if(count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		if(rank >= count)
+			return max;
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++){
+			seen += counts[i];
+			if(seen >= rank)
+				return Math.min(max, Math.max(min, valueOf(i)));
+		}
+		return max;
+	}
+
+	public void reset(){
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	@Override
+	public String toString(){
+		return "p50 = "+getValueAtPercentile(50)+", p95 = "+getValueAtPercentile(95)
+				+", p99 = "+getValueAtPercentile(99)+", max = "+getMax()+" ("+count+" values)";
+	}
+}
@@ -18,5 +18,10 @@ public class MicroservicePlacementConfig {
     public static Boolean ENABLE_RESOURCE_DATA_SHARING = false;
     public static double MODULE_DEPLOYMENT_TIME = 0.0;
 
+    // Clustered placement - number of candidate placements searched in parallel for each batch of placement requests
+    // (1 for the single greedy pass), and the seed of their random choices
+    public static int PLACEMENT_SEARCH_STARTS = 1;
+    public static long PLACEMENT_SEARCH_SEED = 0;
+
 
 }
@@ -1,14 +1,23 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.ContextLocal;
+
 public class MigrationDelayMonitor {
 	
-	private static double migrationDelay = 0.0;
+	private static final ContextLocal<MigrationDelayMonitor> MONITOR = new ContextLocal<MigrationDelayMonitor>() {
+		@Override
+		protected MigrationDelayMonitor initialValue() {
+			return new MigrationDelayMonitor();
+		}
+	};
+	
+	private double migrationDelay = 0.0;
 	
 	public static double getMigrationDelay() {
-		return migrationDelay;
+		return MONITOR.get().migrationDelay;
 	}
 
 	public static void setMigrationDelay(double migrationDelayReceived) {
-		migrationDelay += migrationDelayReceived;
+		MONITOR.get().migrationDelay += migrationDelayReceived;
 	}
 }
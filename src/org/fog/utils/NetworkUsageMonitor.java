@@ -1,18 +1,27 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.ContextLocal;
+
 public class NetworkUsageMonitor {
 
-	private static double networkUsage = 0.0;
+	private static final ContextLocal<NetworkUsageMonitor> MONITOR = new ContextLocal<NetworkUsageMonitor>() {
+		@Override
+		protected NetworkUsageMonitor initialValue() {
+			return new NetworkUsageMonitor();
+		}
+	};
+
+	private double networkUsage = 0.0;
 	
 	public static void sendingTuple(double latency, double tupleNwSize){
-		networkUsage += latency*tupleNwSize;
+		MONITOR.get().networkUsage += latency*tupleNwSize;
 	}
 	
 	public static void sendingModule(double latency, long moduleSize){
-		networkUsage += latency*moduleSize;
+		MONITOR.get().networkUsage += latency*moduleSize;
 	}
 	
 	public static double getNetworkUsage(){
-		return networkUsage;
+		return MONITOR.get().networkUsage;
 	}
 }
@@ -0,0 +1,507 @@
+package org.fog.utils;
+
+import org.fog.entities.FogDevice;
+import org.fog.entities.MicroserviceFogDevice;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shortest path routing between fog devices.
+ * <p>
+ * Devices are linked to their parent, their children and their cluster members, with the latency
+ * of the link as its length. The route from each device is computed with Dijkstra's algorithm over
+ * these links, the sources being spread over the available processors, and the next device on the
+ * route to every other device is kept in one <tt>int[]</tt> per source, indexed by the position of
+ * the destination in the device list. A link between two devices gets the latency seen by the one
+ * that comes first in the device list, and a direct link is kept over another route of the same
+ * length, as with the iterative relaxation {@link ShortestPathRoutingGenerator} used to run.
+ * <p>
+ * When a device that is linked to a single other device joins, leaves or changes parent, only the
+ * routes to and from that device change, and they are derived from the routes to its parent.
+ * Any other change of the topology computes all the routes again.
+ */
+public class ShortestPathRouting {
+
+    /** The number of sources below which the routes are computed on the calling thread only. */
+    private static final int MIN_PARALLEL_SOURCES = 64;
+
+    private final List<FogDevice> fogDevices = new ArrayList<>();
+
+    /** By device id : the position of the device in {@link #fogDevices}, or -1. */
+    private int[] indexOfId = new int[0];
+
+    /** By source position, then by destination position : the id of the next device, or -1. */
+    private int[][] nextHop = new int[0][];
+
+    /**
+     * Links of each device, by position : targets and lengths from linkStart[i] to linkStart[i + 1].
+     * Only read by {@link #recompute()}, which reads them from the devices first, so they are left
+     * as they are when the routes of a single device are updated.
+     */
+    private int[] linkStart;
+    private int[] linkTarget;
+    private double[] linkLength;
+
+    public ShortestPathRouting(List<FogDevice> fogDevices) {
+        for (FogDevice fogDevice : fogDevices)
+            index(fogDevice);
+        recompute();
+    }
+
+    /**
+     * Gets the device list, in the order of the positions used by the routes.
+     *
+     * @return the devices
+     */
+    public List<FogDevice> getFogDevices() {
+        List<FogDevice> devices = new ArrayList<>(fogDevices);
+        devices.removeAll(Collections.singleton(null));
+        return devices;
+    }
+
+    /**
+     * Gets the next device on the route between two devices.
+     *
+     * @param sourceId the id of the source device
+     * @param destId the id of the destination device
+     * @return the id of the next device, the source itself if both are the same, or -1 if there is
+     * no route
+     */
+    public int getNextHop(int sourceId, int destId) {
+        int source = indexOf(sourceId);
+        int dest = indexOf(destId);
+        return source < 0 || dest < 0 ? -1 : nextHop[source][dest];
+    }
+
+    /**
+     * Gets the routing table of a device : a map from destination device id to the id of the next
+     * device, backed by the routes of this object. Changes made to the map are written into the
+     * routes, until they are computed again.
+     *
+     * @param sourceId the id of the source device
+     * @return the routing table, or <tt>null</tt> if the device is unknown
+     */
+    public Map<Integer, Integer> getRoutingTable(int sourceId) {
+        return indexOf(sourceId) < 0 ? null : new RoutingTable(sourceId);
+    }
+
+    /**
+     * Updates the routes after a device has changed parent.
+     *
+     * @param fogDevice the device
+     */
+    public void parentChanged(FogDevice fogDevice) {
+        int index = indexOf(fogDevice.getId());
+        if (index < 0) {
+            deviceAdded(fogDevice);
+            return;
+        }
+        int neighbour = singleNeighbour(fogDevice);
+        if (neighbour < 0)
+            recompute();
+        else
+            routeThrough(index, neighbour);
+    }
+
+    /**
+     * Updates the routes after a device has joined the topology.
+     *
+     * @param fogDevice the device
+     */
+    public void deviceAdded(FogDevice fogDevice) {
+        if (indexOf(fogDevice.getId()) >= 0) {
+            parentChanged(fogDevice);
+            return;
+        }
+        int index = index(fogDevice);
+        int neighbour = singleNeighbour(fogDevice);
+        if (neighbour < 0)
+            recompute();
+        else
+            routeThrough(index, neighbour);
+    }
+
+    /**
+     * Updates the routes after a device has left the topology.
+     *
+     * @param fogDevice the device
+     */
+    public void deviceRemoved(FogDevice fogDevice) {
+        int index = indexOf(fogDevice.getId());
+        if (index < 0)
+            return;
+        boolean transit = false;
+        for (int[] row : nextHop) {
+            if (row != null) {
+                for (int i = 0; i < fogDevices.size() && !transit; i++)
+                    transit = row[i] == fogDevice.getId() && i != index;
+            }
+        }
+        fogDevices.set(index, null);
+        indexOfId[fogDevice.getId()] = -1;
+        nextHop[index] = null;
+        for (int[] row : nextHop) {
+            if (row != null)
+                row[index] = -1;
+        }
+        // a device others go through leaves holes in their routes
+        if (transit)
+            recompute();
+    }
+
+    /**
+     * Computes all the routes again from the links of the devices.
+     */
+    public void recompute() {
+        compact();
+        readLinks();
+        final int size = fogDevices.size();
+        nextHop = new int[size][];
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_PARALLEL_SOURCES);
+        if (threads <= 1) {
+            new Dijkstra(size).run(0, size, 1);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                final int step = threads;
+                tasks.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        new Dijkstra(size).run(first, size, step);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks)
+                task.get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not compute the routes", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int indexOf(int deviceId) {
+        return deviceId >= 0 && deviceId < indexOfId.length ? indexOfId[deviceId] : -1;
+    }
+
+    private int index(FogDevice fogDevice) {
+        int id = fogDevice.getId();
+        if (id >= indexOfId.length) {
+            int length = indexOfId.length;
+            indexOfId = Arrays.copyOf(indexOfId, Math.max(id + 1, length * 2));
+            Arrays.fill(indexOfId, length, indexOfId.length, -1);
+        }
+        indexOfId[id] = fogDevices.size();
+        fogDevices.add(fogDevice);
+        return fogDevices.size() - 1;
+    }
+
+    /**
+     * Drops the devices that have left, so that positions are contiguous again.
+     */
+    private void compact() {
+        if (!fogDevices.contains(null))
+            return;
+        List<FogDevice> remaining = new ArrayList<>(fogDevices);
+        remaining.removeAll(Collections.singleton(null));
+        fogDevices.clear();
+        Arrays.fill(indexOfId, -1);
+        for (FogDevice fogDevice : remaining)
+            index(fogDevice);
+    }
+
+    /**
+     * Gets the only device a device is linked to.
+     *
+     * @param fogDevice the device
+     * @return the position of the linked device, or -1 if the device is linked to none or several
+     */
+    private int singleNeighbour(FogDevice fogDevice) {
+        int neighbour = -1;
+        for (int id : linkedIds(fogDevice)) {
+            int index = indexOf(id);
+            if (index < 0 || index == neighbour)
+                continue;
+            if (neighbour >= 0)
+                return -1;
+            neighbour = index;
+        }
+        return neighbour;
+    }
+
+    /**
+     * Routes everything to and from a device through the only device it is linked to.
+     *
+     * @param index the position of the device
+     * @param neighbour the position of the device it is linked to
+     */
+    private void routeThrough(int index, int neighbour) {
+        int size = fogDevices.size();
+        if (nextHop.length < size) {
+            nextHop = Arrays.copyOf(nextHop, Math.max(size, nextHop.length * 2));
+        }
+        for (int i = 0; i < nextHop.length; i++) {
+            if (nextHop[i] != null && nextHop[i].length < size)
+                nextHop[i] = grow(nextHop[i], Math.max(size, nextHop[i].length * 2));
+        }
+        int id = fogDevices.get(index).getId();
+        int neighbourId = fogDevices.get(neighbour).getId();
+        int[] row = nextHop[index] == null ? grow(new int[0], size) : nextHop[index];
+        for (int dest = 0; dest < size; dest++)
+            row[dest] = dest == index ? id : fogDevices.get(dest) == null ? -1 : neighbourId;
+        nextHop[index] = row;
+        for (int source = 0; source < size; source++) {
+            if (source == index || nextHop[source] == null)
+                continue;
+            int viaNeighbour = nextHop[source][neighbour];
+            nextHop[source][index] = source == neighbour ? id : viaNeighbour;
+        }
+    }
+
+    private static int[] grow(int[] row, int length) {
+        int previous = row.length;
+        int[] grown = Arrays.copyOf(row, length);
+        Arrays.fill(grown, previous, length, -1);
+        return grown;
+    }
+
+    private static List<Integer> linkedIds(FogDevice fogDevice) {
+        List<Integer> ids = new ArrayList<>();
+        ids.add(fogDevice.getParentId());
+        if (fogDevice.getChildrenIds() != null)
+            ids.addAll(fogDevice.getChildrenIds());
+        if (fogDevice.getClusterMembers() != null)
+            ids.addAll(fogDevice.getClusterMembers());
+        return ids;
+    }
+
+    /**
+     * Reads the links of the devices. A link listed by either end is used, with the latency seen
+     * by the end that comes first in the device list when it lists it.
+     */
+    private void readLinks() {
+        int size = fogDevices.size();
+        List<Set<Integer>> childSets = new ArrayList<>(size);
+        List<Set<Integer>> neighbours = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            neighbours.add(new TreeSet<Integer>());
+            FogDevice fogDevice = fogDevices.get(i);
+            childSets.add(fogDevice == null || fogDevice.getChildrenIds() == null ? Collections.<Integer>emptySet()
+                    : new HashSet<>(fogDevice.getChildrenIds()));
+        }
+        for (int i = 0; i < size; i++) {
+            if (fogDevices.get(i) == null)
+                continue;
+            for (int id : linkedIds(fogDevices.get(i))) {
+                int j = indexOf(id);
+                if (j >= 0 && j != i) {
+                    neighbours.get(i).add(j);
+                    neighbours.get(j).add(i);
+                }
+            }
+        }
+        linkStart = new int[size + 1];
+        for (int i = 0; i < size; i++)
+            linkStart[i + 1] = linkStart[i] + neighbours.get(i).size();
+        linkTarget = new int[linkStart[size]];
+        linkLength = new double[linkStart[size]];
+        for (int i = 0; i < size; i++) {
+            int k = linkStart[i];
+            for (int j : neighbours.get(i)) {
+                int low = Math.min(i, j);
+                int high = Math.max(i, j);
+                double length = directlyConnectedDist(fogDevices.get(low), fogDevices.get(high), childSets.get(low));
+                if (length < 0)
+                    length = directlyConnectedDist(fogDevices.get(high), fogDevices.get(low), childSets.get(high));
+                linkTarget[k] = j;
+                linkLength[k++] = length;
+            }
+        }
+    }
+
+    private static double directlyConnectedDist(FogDevice rFog, FogDevice cFog, Set<Integer> children) {
+        List<Integer> cluster = rFog.getClusterMembers();
+        if (cFog.getId() == rFog.getParentId()) {
+            return rFog.getUplinkLatency();
+        } else if (children.contains(cFog.getId())) {
+            return rFog.getChildToLatencyMap().get(cFog.getId());
+        } else if (cluster != null && cluster.contains(cFog.getId())) {
+            return ((MicroserviceFogDevice) rFog).getClusterMembersToLatencyMap().get(cFog.getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Dijkstra's algorithm from a set of sources, with working arrays reused from source to source.
+     */
+    private class Dijkstra {
+
+        private final double[] distance;
+        private final int[] firstHop;
+        private final boolean[] settled;
+
+        /** Binary heap of positions, ordered by distance then position. */
+        private final int[] heap;
+        private final int[] heapPosition;
+        private int heapSize;
+
+        Dijkstra(int size) {
+            distance = new double[size];
+            firstHop = new int[size];
+            settled = new boolean[size];
+            heap = new int[size];
+            heapPosition = new int[size];
+        }
+
+        /**
+         * Computes the routes from the sources first, first + step, first + 2 * step...
+         */
+        void run(int first, int size, int step) {
+            for (int source = first; source < size; source += step)
+                nextHop[source] = routesFrom(source);
+        }
+
+        private int[] routesFrom(int source) {
+            int size = distance.length;
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(firstHop, -1);
+            Arrays.fill(settled, false);
+            Arrays.fill(heapPosition, -1);
+            heapSize = 0;
+
+            distance[source] = 0;
+            firstHop[source] = source;
+            push(source);
+            while (heapSize > 0) {
+                int device = pop();
+                settled[device] = true;
+                for (int k = linkStart[device]; k < linkStart[device + 1]; k++) {
+                    int next = linkTarget[k];
+                    double length = distance[device] + linkLength[k];
+                    if (!settled[next] && length < distance[next]) {
+                        distance[next] = length;
+                        firstHop[next] = device == source ? next : firstHop[device];
+                        push(next);
+                    }
+                }
+            }
+
+            int[] row = new int[size];
+            for (int dest = 0; dest < size; dest++)
+                row[dest] = firstHop[dest] < 0 ? -1 : fogDevices.get(firstHop[dest]).getId();
+            return row;
+        }
+
+        private boolean before(int a, int b) {
+            return distance[a] < distance[b] || (distance[a] == distance[b] && a < b);
+        }
+
+        private void push(int device) {
+            int i = heapPosition[device];
+            if (i < 0) {
+                i = heapSize++;
+                heap[i] = device;
+                heapPosition[device] = i;
+            }
+            while (i > 0 && before(device, heap[(i - 1) / 2])) {
+                int parent = (i - 1) / 2;
+                heap[i] = heap[parent];
+                heapPosition[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = device;
+            heapPosition[device] = i;
+        }
+
+        private int pop() {
+            int top = heap[0];
+            heapPosition[top] = -1;
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= heapSize)
+                        break;
+                    if (child + 1 < heapSize && before(heap[child + 1], heap[child]))
+                        child++;
+                    if (!before(heap[child], last))
+                        break;
+                    heap[i] = heap[child];
+                    heapPosition[heap[i]] = i;
+                    i = child;
+                }
+                heap[i] = last;
+                heapPosition[last] = i;
+            }
+            return top;
+        }
+    }
+
+    /**
+     * The routing table of a device, backed by its row of next devices. Destinations that are not
+     * part of the topology can be added to it; they are kept aside.
+     */
+    private class RoutingTable extends AbstractMap<Integer, Integer> {
+
+        private final int sourceId;
+        private final Map<Integer, Integer> others = new HashMap<>();
+
+        RoutingTable(int sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        private int[] row() {
+            int source = indexOf(sourceId);
+            return source < 0 ? null : nextHop[source];
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (key instanceof Integer) {
+                int dest = indexOf((Integer) key);
+                int[] row = row();
+                if (dest >= 0 && row != null)
+                    return row[dest];
+            }
+            return others.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (key instanceof Integer && indexOf((Integer) key) >= 0 && row() != null) || others.containsKey(key);
+        }
+
+        @Override
+        public Integer put(Integer key, Integer value) {
+            int dest = indexOf(key);
+            int[] row = row();
+            if (dest >= 0 && row != null) {
+                int previous = row[dest];
+                row[dest] = value;
+                return previous;
+            }
+            return others.put(key, value);
+        }
+
+        @Override
+        public Set<Entry<Integer, Integer>> entrySet() {
+            Map<Integer, Integer> entries = new HashMap<>(others);
+            int[] row = row();
+            if (row != null) {
+                for (FogDevice fogDevice : fogDevices) {
+                    if (fogDevice != null)
+                        entries.put(fogDevice.getId(), row[indexOf(fogDevice.getId())]);
+                }
+            }
+            return Collections.unmodifiableMap(entries).entrySet();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.fog.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map kept in two parallel arrays and searched linearly, for the few entries a tuple
+ * carries (module instances and microservices traversed). It costs two small arrays where
+ * a HashMap costs a table and a node per entry, and copying it is two array copies, which
+ * matters as these maps are copied into every resultant tuple.
+ * Iteration follows insertion order. Keys must not be null.
+ */
+public class SmallMap<K, V> extends AbstractMap<K, V> {
+
+	private Object[] keys;
+	private Object[] values;
+	private int size;
+
+	public SmallMap(){
+	}
+
+	public SmallMap(Map<? extends K, ? extends V> map){
+		if(map instanceof SmallMap){
+			SmallMap<?, ?> other = (SmallMap<?, ?>) map;
+			size = other.size;
+			if(size > 0){
+				keys = Arrays.copyOf(other.keys, size + 2);
+				values = Arrays.copyOf(other.values, size + 2);
+			}
+		} else {
+			putAll(map);
+		}
+	}
+
+	private int indexOf(Object key){
+		for(int i = 0; i < size; i++)
+			if(keys[i].equals(key))
+				return i;
+		return -1;
+	}
+
+	@Override
+	public int size(){
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key){
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key){
+		int i = indexOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V put(K key, V value){
+		if(key == null)
+			throw new NullPointerException("null key");
+		int i = indexOf(key);
+		if(i >= 0){
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		if(keys == null){
+			keys = new Object[4];
+			values = new Object[4];
+		} else if(size == keys.length){
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		keys[size] = key;
+		values[size++] = value;
+		return null;
+	}
+
+	@Override
+	public V remove(Object key){
+		int i = indexOf(key);
+		return i < 0 ? null : removeAt(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	private V removeAt(int i){
+		V old = (V) values[i];
+		System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+		System.arraycopy(values, i + 1, values, i, size - i - 1);
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		return old;
+	}
+
+	@Override
+	public void clear(){
+		if(keys != null){
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+		}
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet(){
+		return new AbstractSet<Map.Entry<K, V>>(){
+
+			@Override
+			public int size(){
+				return size;
+			}
+
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator(){
+				return new Iterator<Map.Entry<K, V>>(){
+
+					private int next = 0;
+					private int last = -1;
+
+					@Override
+					public boolean hasNext(){
+						return next < size;
+					}
+
+					@SuppressWarnings("unchecked")
+					@Override
+					public Map.Entry<K, V> next(){
+						if(next >= size)
+							throw new NoSuchElementException();
+						last = next++;
+						return new SimpleEntry<K, V>((K) keys[last], (V) values[last]){
+
+							private static final long serialVersionUID = 1L;
+							private final int index = last;
+
+							@Override
+							public V setValue(V value){
+								values[index] = value;
+								return super.setValue(value);
+							}
+						};
+					}
+
+					@Override
+					public void remove(){
+						if(last < 0)
+							throw new IllegalStateException();
+						removeAt(last);
+						next = last;
+						last = -1;
+					}
+				};
+			}
+		};
+	}
+}
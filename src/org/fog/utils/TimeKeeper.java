@@ -1,28 +1,62 @@
 package org.fog.utils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.ContextLocal;
 import org.fog.entities.Tuple;
 
+/**
+ * Keeps the timings of the simulation : loop latencies and tuple CPU times.
+ * 
+ * Only the tuples in flight are kept : the emit time of a tuple is dropped as soon as it
+ * reaches the end of its loop, or once no copy of it is left to get there, and the CPU start
+ * time of a tuple once all its executions have ended. Loop latencies are accumulated in constant memory, as running averages and
+ * as LatencyHistograms giving their percentiles, so memory use does not grow with the
+ * number of tuples simulated.
+ */
 public class TimeKeeper {
 
-	private static TimeKeeper instance;
+	private static final ContextLocal<TimeKeeper> INSTANCE = new ContextLocal<TimeKeeper>() {
+		@Override
+		protected TimeKeeper initialValue() {
+			return new TimeKeeper();
+		}
+	};
 	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
-	private Map<Integer, Double> endTimes;
-	private Map<Integer, List<Integer>> loopIdToTupleIds;
-	private Map<Integer, Double> tupleIdToCpuStartTime;
+	/** Emit time of each tuple in flight, by actual tuple id. */
+	private IntDoubleMap emitTimes;
+	/** Loop started by each tuple in flight, by actual tuple id. */
+	private IntIntMap emittedLoopIds;
+	/**
+	 * Number of copies of each tuple in flight, by actual tuple id : tuples carrying the id that
+	 * are being sent, queued on a link or executed. A tuple sent down is sent to every child, and
+	 * a tuple dropped by a selectivity model or by a device without its destination module is
+	 * gone. Once no copy is left, the tuple can no longer reach the end of its loop.
+	 */
+	private IntIntMap tupleCopies;
+	/** Number of copies of each tuple in flight being executed, by actual tuple id. */
+	private IntIntMap executingCopies;
+	private Set<Integer> loopIds;
+	/** Start time of the last execution of each tuple being executed, by cloudlet id. */
+	private IntDoubleMap tupleIdToCpuStartTime;
+	/** Number of executions of each tuple in progress : a tuple sent down to several devices is executed by all of them. */
+	private IntIntMap tupleIdToRunningExecutions;
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
 	private Map<Integer, Double> loopIdToCurrentAverage;
 	private Map<Integer, Integer> loopIdToCurrentNum;
+	private Map<Integer, LatencyHistogram> loopIdToLatencyHistogram;
 
 	private Map<Integer, Integer> loopIdToLatencyQoSSuccessCount = new HashMap<>();
 
@@ -32,9 +66,7 @@ public class TimeKeeper {
 	private Map<Integer, Double> tupleIdToExecutionTime = new HashMap<>();
 	
 	public static TimeKeeper getInstance(){
-		if(instance == null)
-			instance = new TimeKeeper();
-		return instance;
+		return INSTANCE.get();
 	}
 	
 	public int getUniqueId(){
@@ -43,12 +75,30 @@ public class TimeKeeper {
 	
 	public void tupleStartedExecution(Tuple tuple){
 		tupleIdToCpuStartTime.put(tuple.getCloudletId(), CloudSim.clock());
+		tupleIdToRunningExecutions.addTo(tuple.getCloudletId(), 1);
+		int tupleId = tuple.getActualTupleId();
+		if(tupleCopies.containsKey(tupleId)){
+			tupleCopies.addTo(tupleId, 1);
+			executingCopies.addTo(tupleId, 1);
+		}
 	}
 	
+	/**
+	 * Records that the execution of a tuple has ended. Must be called once the resultant
+	 * tuples have been sent, since the executed copy is released.
+	 */
 	public void tupleEndedExecution(Tuple tuple){
+		int tupleId = tuple.getActualTupleId();
+		if(executingCopies.containsKey(tupleId) && executingCopies.addTo(tupleId, -1) <= 0)
+			executingCopies.remove(tupleId, 0);
+		releaseCopy(tupleId);
 		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
+		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId(), 0);
+		if(tupleIdToRunningExecutions.addTo(tuple.getCloudletId(), -1) <= 0){
+			tupleIdToRunningExecutions.remove(tuple.getCloudletId(), 0);
+			tupleIdToCpuStartTime.remove(tuple.getCloudletId(), 0);
+		}
 		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
 			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
@@ -59,52 +109,170 @@ public class TimeKeeper {
 		}
 	}
 	
-	public Map<Integer, List<Integer>> loopIdToTupleIds(){
-		return getInstance().getLoopIdToTupleIds();
+	/**
+	 * Records that a tuple starting a loop has been emitted now.
+	 */
+	public void tupleEmitted(int loopId, int tupleId){
+		loopIds.add(loopId);
+		emitTimes.put(tupleId, CloudSim.clock());
+		emittedLoopIds.put(tupleId, loopId);
+		tupleCopies.put(tupleId, 0);
+	}
+	
+	/**
+	 * Records that a tuple has been sent to an entity, or queued on a link to be sent.
+	 */
+	public void tupleSent(Tuple tuple){
+		addCopy(tuple.getActualTupleId());
+	}
+	
+	/**
+	 * Records that an entity is done with a tuple it received : the tuple has been executed,
+	 * forwarded or dropped. Must be called after the arrival has been processed, so that the
+	 * copies forwarded or executed are already counted.
+	 */
+	public void tupleReceived(Tuple tuple){
+		releaseCopy(tuple.getActualTupleId());
+	}
+	
+	private void addCopy(int tupleId){
+		if(tupleCopies.containsKey(tupleId))
+			tupleCopies.addTo(tupleId, 1);
+	}
+	
+	/**
+	 * Releases a copy of a tuple. The last one going before the tuple reaches the end of its
+	 * loop means that the loop cannot complete, so the tuple is forgotten.
+	 */
+	private void releaseCopy(int tupleId){
+		if(tupleCopies.containsKey(tupleId) && tupleCopies.addTo(tupleId, -1) <= 0)
+			forget(tupleId);
+	}
+	
+	private void forget(int tupleId){
+		emitTimes.remove(tupleId, 0);
+		emittedLoopIds.remove(tupleId, 0);
+		tupleCopies.remove(tupleId, 0);
+		executingCopies.remove(tupleId, 0);
+	}
+	
+	/**
+	 * Records that a tuple has reached the end of a loop now, and accounts for the latency
+	 * of the loop. The tuple is forgotten, so it is only accounted for once.
+	 * @return false if the emission of the tuple was not recorded, or it already reached the end
+	 */
+	public boolean tupleReachedEndOfLoop(int loopId, int tupleId){
+		if(!emitTimes.containsKey(tupleId))
+			return false;
+		if(!loopIdToCurrentAverage.containsKey(loopId)){
+			loopIdToCurrentAverage.put(loopId, 0.0);
+			loopIdToCurrentNum.put(loopId, 0);
+			loopIdToLatencyHistogram.put(loopId, new LatencyHistogram());
+		}
+		double currentAverage = loopIdToCurrentAverage.get(loopId);
+		int currentCount = loopIdToCurrentNum.get(loopId);
+		double delay = CloudSim.clock() - emitTimes.get(tupleId, 0);
+		forget(tupleId);
+		double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
+		loopIdToCurrentAverage.put(loopId, newAverage);
+		loopIdToCurrentNum.put(loopId, currentCount+1);
+		loopIdToLatencyHistogram.get(loopId).record(delay);
+		return true;
+	}
+	
+	/**
+	 * Returns the number of tuples emitted that have not reached the end of their loop yet.
+	 */
+	public int getTuplesInFlight(){
+		return emitTimes.size();
+	}
+	
+	/**
+	 * Returns the number of tuples in flight that are being executed. When a device cannot
+	 * keep up with the tuples it receives, they wait here, and the tuples in flight grow.
+	 */
+	public int getTuplesInFlightExecuting(){
+		return executingCopies.size();
 	}
 	
 	private TimeKeeper(){
 		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
-		setEndTimes(new HashMap<Integer, Double>());
-		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
+		emitTimes = new IntDoubleMap();
+		emittedLoopIds = new IntIntMap();
+		tupleCopies = new IntIntMap();
+		executingCopies = new IntIntMap();
+		setLoopIds(new HashSet<Integer>());
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
-		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
+		tupleIdToCpuStartTime = new IntDoubleMap();
+		tupleIdToRunningExecutions = new IntIntMap();
 		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
 		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+		loopIdToLatencyHistogram = new HashMap<Integer, LatencyHistogram>();
 	}
 	
-	public int getCount() {
-		return count;
+	/**
+	 * Returns the emit times of the tuples in flight, by actual tuple id.
+	 * @deprecated the emit time of a tuple is only kept while it is in flight, and a copy is
+	 * returned; use {@link #getTuplesInFlight()} and {@link #getLoopLatencyHistogram(int)}
+	 */
+	@Deprecated
+	public Map<Integer, Double> getEmitTimes() {
+		return Collections.unmodifiableMap(emitTimes.toMap());
 	}
 
-	public void setCount(int count) {
-		this.count = count;
+	/**
+	 * Returns an empty map.
+	 * @deprecated end times are no longer kept, the latency of a loop is accounted for when a
+	 * tuple reaches its end; use {@link #getLoopIdToCurrentAverage()} and
+	 * {@link #getLoopLatencyHistogram(int)}
+	 */
+	@Deprecated
+	public Map<Integer, Double> getEndTimes() {
+		return Collections.emptyMap();
 	}
 
-	public Map<Integer, Double> getEmitTimes() {
-		return emitTimes;
+	/**
+	 * Returns the ids of the tuples in flight, by the id of the loop they started.
+	 * @deprecated ids are only kept while the tuples are in flight, and a copy is returned;
+	 * use {@link #getLoopIds()} and {@link #getLoopIdToCurrentNum()}
+	 */
+	@Deprecated
+	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
+		Map<Integer, List<Integer>> loopIdToTupleIds = new HashMap<Integer, List<Integer>>();
+		for(Integer loopId : loopIds)
+			loopIdToTupleIds.put(loopId, new ArrayList<Integer>());
+		for(Map.Entry<Integer, Integer> entry : emittedLoopIds.toMap().entrySet())
+			loopIdToTupleIds.get(entry.getValue()).add(entry.getKey());
+		return Collections.unmodifiableMap(loopIdToTupleIds);
 	}
 
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
-		this.emitTimes = emitTimes;
+	/**
+	 * Returns the start times of the tuples being executed, by cloudlet id.
+	 * @deprecated a copy is returned, and start times are dropped once a tuple is executed
+	 */
+	@Deprecated
+	public Map<Integer, Double> getTupleIdToCpuStartTime() {
+		return Collections.unmodifiableMap(tupleIdToCpuStartTime.toMap());
 	}
 
-	public Map<Integer, Double> getEndTimes() {
-		return endTimes;
+	public int getCount() {
+		return count;
 	}
 
-	public void setEndTimes(Map<Integer, Double> endTimes) {
-		this.endTimes = endTimes;
+	public void setCount(int count) {
+		this.count = count;
 	}
 
-	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
-		return loopIdToTupleIds;
+	/**
+	 * Returns the ids of the loops for which a tuple has been emitted.
+	 */
+	public Set<Integer> getLoopIds() {
+		return loopIds;
 	}
 
-	public void setLoopIdToTupleIds(Map<Integer, List<Integer>> loopIdToTupleIds) {
-		this.loopIdToTupleIds = loopIdToTupleIds;
+	public void setLoopIds(Set<Integer> loopIds) {
+		this.loopIds = loopIds;
 	}
 
 	public Map<String, Double> getTupleTypeToAverageCpuTime() {
@@ -125,14 +293,6 @@ public class TimeKeeper {
 		this.tupleTypeToExecutedTupleCount = tupleTypeToExecutedTupleCount;
 	}
 
-	public Map<Integer, Double> getTupleIdToCpuStartTime() {
-		return tupleIdToCpuStartTime;
-	}
-
-	public void setTupleIdToCpuStartTime(Map<Integer, Double> tupleIdToCpuStartTime) {
-		this.tupleIdToCpuStartTime = tupleIdToCpuStartTime;
-	}
-
 	public long getSimulationStartTime() {
 		return simulationStartTime;
 	}
@@ -157,6 +317,13 @@ public class TimeKeeper {
 		this.loopIdToCurrentNum = loopIdToCurrentNum;
 	}
 
+	/**
+	 * Returns the histogram of the latencies of a loop, or null if no tuple completed it.
+	 */
+	public LatencyHistogram getLoopLatencyHistogram(int loopId) {
+		return loopIdToLatencyHistogram.get(loopId);
+	}
+
 	public Map<Integer, Integer> getLoopIdToLatencyQoSSuccessCount() {
 		return loopIdToLatencyQoSSuccessCount;
 	}
@@ -0,0 +1,194 @@
+package org.fog.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
+import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.MicroserviceFogDevice;
+import org.fog.entities.Sensor;
+import org.fog.policy.AppModuleAllocationPolicy;
+import org.fog.scheduler.StreamOperatorScheduler;
+import org.fog.utils.TopologySpec.ActuatorGroup;
+import org.fog.utils.TopologySpec.DeviceProfile;
+import org.fog.utils.TopologySpec.Level;
+import org.fog.utils.TopologySpec.SensorGroup;
+
+/**
+ * Creates the entities of a topology from its devices, given in breadth-first order : the roots,
+ * then the devices of each level, grouped by parent in the order of the parents. Only the ids and
+ * levels of the devices created are kept.
+ */
+class TopologyBuilder {
+
+	private final List<Level> levels;
+	private final int userId;
+	private final String appId;
+	private final TopologyListener listener;
+
+	/** By index of device : its entity id, and its level. */
+	private int[] ids = new int[1024];
+	private byte[] levelOf = new byte[1024];
+	private int count;
+	private int lastParent = -1;
+
+	/** The number of devices created in each level, and of sensors and actuators. */
+	private final int[] levelCounts;
+	private int sensorCount;
+	private int actuatorCount;
+
+	/** The devices of the cluster being created, their parent and the latency between them. */
+	private final List<FogDevice> cluster = new ArrayList<FogDevice>();
+	private int clusterParent;
+	private double clusterLatency;
+
+	TopologyBuilder(List<Level> levels, int userId, String appId, TopologyListener listener) {
+		if (levels.size() > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("Too many levels: " + levels.size());
+		this.levels = levels;
+		this.userId = userId;
+		this.appId = appId;
+		this.listener = listener;
+		levelCounts = new int[levels.size()];
+	}
+
+	/**
+	 * Creates the next device of the topology, with its sensors and actuators.
+	 *
+	 * @param parentIndex the index of the parent of the device, or -1 for a root
+	 * @param uplinkLatency the latency of the link to the parent
+	 * @throws IllegalArgumentException if the device is not the next one in breadth-first order
+	 */
+	void device(int parentIndex, double uplinkLatency) {
+		if (parentIndex < lastParent || parentIndex >= count)
+			throw new IllegalArgumentException("Device " + count + " has parent " + parentIndex + " after "
+					+ lastParent);
+		int level = parentIndex < 0 ? 0 : levelOf[parentIndex] + 1;
+		if (level >= levels.size())
+			throw new IllegalArgumentException("Device " + count + " is below the last level");
+		lastParent = parentIndex;
+		if (!cluster.isEmpty() && parentIndex != clusterParent)
+			finishCluster();
+
+		Level spec = levels.get(level);
+		FogDevice fogDevice = createFogDevice(spec.getPrefix() + "-" + levelCounts[level]++, spec.getProfile());
+		fogDevice.setLevel(level);
+		if (parentIndex < 0) {
+			fogDevice.setParentId(-1);
+		} else {
+			fogDevice.setParentId(ids[parentIndex]);
+			fogDevice.setUplinkLatency(uplinkLatency);
+		}
+		if (count == ids.length) {
+			ids = Arrays.copyOf(ids, count * 2);
+			levelOf = Arrays.copyOf(levelOf, count * 2);
+		}
+		ids[count] = fogDevice.getId();
+		levelOf[count] = (byte) level;
+		count++;
+		listener.fogDeviceCreated(fogDevice);
+
+		for (SensorGroup group : spec.getSensors()) {
+			for (int i = 0; i < group.count; i++) {
+				Sensor sensor = new Sensor(group.prefix + "-" + sensorCount++, group.tupleType, userId, appId,
+						group.createDistribution());
+				sensor.setGatewayDeviceId(fogDevice.getId());
+				sensor.setLatency(group.latency);
+				listener.sensorCreated(sensor);
+			}
+		}
+		for (ActuatorGroup group : spec.getActuators()) {
+			for (int i = 0; i < group.count; i++) {
+				Actuator actuator = new Actuator(group.prefix + "-" + actuatorCount++, userId, appId, group.actuatorType);
+				actuator.setGatewayDeviceId(fogDevice.getId());
+				actuator.setLatency(group.latency);
+				listener.actuatorCreated(actuator);
+			}
+		}
+
+		if (spec.isClustered()) {
+			cluster.add(fogDevice);
+			clusterParent = parentIndex;
+			clusterLatency = spec.getClusterLatency();
+		}
+	}
+
+	/**
+	 * Ends the topology.
+	 *
+	 * @return the number of devices created
+	 */
+	int finish() {
+		if (!cluster.isEmpty())
+			finishCluster();
+		return count;
+	}
+
+	/** Links each member of the cluster to the others, as the clustered examples do. */
+	private void finishCluster() {
+		for (FogDevice fogDevice : cluster) {
+			List<Integer> members = new ArrayList<Integer>(cluster.size() - 1);
+			Map<Integer, Double> latencies = new HashMap<Integer, Double>();
+			for (FogDevice member : cluster) {
+				if (member != fogDevice) {
+					members.add(member.getId());
+					latencies.put(member.getId(), clusterLatency);
+				}
+			}
+			fogDevice.setClusterMembers(members);
+			fogDevice.setClusterMembersToLatencyMap(latencies);
+			fogDevice.setIsInCluster(true);
+		}
+		cluster.clear();
+	}
+
+	private static FogDevice createFogDevice(String name, DeviceProfile profile) {
+		List<Pe> peList = new ArrayList<Pe>();
+		peList.add(new Pe(0, new PeProvisionerOverbooking(profile.getMips())));
+
+		int hostId = FogUtils.generateEntityId();
+		long storage = 1000000; // host storage
+		int bw = 10000;
+
+		PowerHost host = new PowerHost(
+				hostId,
+				new RamProvisionerSimple(profile.getRam()),
+				new BwProvisionerOverbooking(bw),
+				storage,
+				peList,
+				new StreamOperatorScheduler(peList),
+				new FogLinearPowerModel(profile.getBusyPower(), profile.getIdlePower())
+			);
+
+		List<Host> hostList = new ArrayList<Host>();
+		hostList.add(host);
+
+		FogDeviceCharacteristics characteristics = new FogDeviceCharacteristics(
+				"x86", "Linux", "Xen", host, 10.0, 3.0, 0.05, 0.001, 0.0);
+		LinkedList<Storage> storageList = new LinkedList<Storage>();
+
+		try {
+			if (profile.getDeviceType() != null)
+				return new MicroserviceFogDevice(name, characteristics, new AppModuleAllocationPolicy(hostList),
+						storageList, 10, profile.getUpBw(), profile.getDownBw(), profile.getClusterLinkBandwidth(), 0,
+						profile.getRatePerMips(), profile.getDeviceType());
+			return new FogDevice(name, characteristics, new AppModuleAllocationPolicy(hostList), storageList, 10,
+					profile.getUpBw(), profile.getDownBw(), 0, profile.getRatePerMips());
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Cannot create fog device " + name, e);
+		}
+	}
+
+}
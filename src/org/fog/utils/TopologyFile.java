@@ -0,0 +1,235 @@
+package org.fog.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.fog.entities.PhysicalTopology;
+import org.fog.utils.TopologySpec.ActuatorGroup;
+import org.fog.utils.TopologySpec.DeviceProfile;
+import org.fog.utils.TopologySpec.Level;
+import org.fog.utils.TopologySpec.SensorGroup;
+
+/**
+ * Compact binary file of a topology generated from a {@link TopologySpec}, written and read as a
+ * stream, so a topology of millions of devices is neither held in memory nor parsed into a tree.
+ * <p>
+ * The file holds the levels of the spec, then the devices in breadth-first order, each one as the
+ * difference between the index of its parent and the index of the parent of the previous device,
+ * which is 0 or 1 for all the devices but the first children of a level, followed by its uplink
+ * latency only if the latencies of its level are drawn from a range. Most devices take a single
+ * byte. Reading the file creates the same entities as generating the topology from the spec.
+ */
+public class TopologyFile {
+
+	/** "IFTP" */
+	static final int MAGIC = 0x49465450;
+	static final int VERSION = 1;
+
+	/**
+	 * Generates a topology into a file.
+	 *
+	 * @param spec the topology
+	 * @param file the file, overwritten
+	 * @return the number of devices written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static int write(TopologySpec spec, File file) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(spec.getSeed());
+			writeVarInt(out, spec.getLevels().size());
+			for (Level level : spec.getLevels())
+				writeLevel(out, level);
+
+			final boolean[] latencyRange = latencyRanges(spec);
+			int count = TopologyGenerator.draw(spec, new TopologyGenerator.DeviceSink() {
+				private int lastParent = -1;
+
+				@Override
+				public void device(int parentIndex, int level, double uplinkLatency) throws IOException {
+					writeVarInt(out, parentIndex - lastParent + 1);
+					lastParent = parentIndex;
+					if (latencyRange[level] && parentIndex >= 0)
+						out.writeDouble(uplinkLatency);
+				}
+			});
+			writeVarInt(out, 0);
+			writeVarInt(out, count);
+			return count;
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a topology file, creating its entities in the current simulation context.
+	 *
+	 * @param file the file
+	 * @param userId the id of the user of the sensors and actuators
+	 * @param appId the application of the sensors and actuators
+	 * @return the devices, sensors and actuators
+	 * @throws IOException if the file cannot be read or is not a topology file
+	 */
+	public static PhysicalTopology read(File file, int userId, String appId) throws IOException {
+		TopologyGenerator.Collector collector = new TopologyGenerator.Collector();
+		read(file, userId, appId, collector);
+		return collector.getPhysicalTopology();
+	}
+
+	/**
+	 * Reads a topology file, creating its entities in the current simulation context and handing
+	 * each one to a listener as it is created.
+	 *
+	 * @param file the file
+	 * @param userId the id of the user of the sensors and actuators
+	 * @param appId the application of the sensors and actuators
+	 * @param listener receives the entities
+	 * @return the number of devices read
+	 * @throws IOException if the file cannot be read or is not a topology file
+	 */
+	public static int read(File file, int userId, String appId, TopologyListener listener) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a topology file");
+			TopologySpec spec = new TopologySpec(in.readLong());
+			int levels = readVarInt(in);
+			for (int i = 0; i < levels; i++)
+				readLevel(in, spec);
+			boolean[] latencyRange = latencyRanges(spec);
+
+			TopologyBuilder builder = new TopologyBuilder(spec.getLevels(), userId, appId, listener);
+			byte[] levelOf = new byte[1024];
+			int count = 0;
+			int lastParent = -1;
+			for (int delta = readVarInt(in); delta != 0; delta = readVarInt(in)) {
+				int parentIndex = lastParent + delta - 1;
+				if (parentIndex >= count)
+					throw new IOException(file + " is corrupt: device " + count + " has parent " + parentIndex);
+				int level = parentIndex < 0 ? 0 : levelOf[parentIndex] + 1;
+				if (level >= levels)
+					throw new IOException(file + " is corrupt: device " + count + " is below the last level");
+				double uplinkLatency = 0;
+				if (parentIndex >= 0)
+					uplinkLatency = latencyRange[level] ? in.readDouble() : spec.getLevels().get(level).getMinLatency();
+				builder.device(parentIndex, uplinkLatency);
+				if (count == levelOf.length)
+					levelOf = Arrays.copyOf(levelOf, count * 2);
+				levelOf[count++] = (byte) level;
+				lastParent = parentIndex;
+			}
+			if (readVarInt(in) != count)
+				throw new IOException(file + " is corrupt: wrong number of devices");
+			return builder.finish();
+		} catch (EOFException e) {
+			throw new IOException(file + " is truncated", e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Whether the uplink latencies of each level are drawn from a range, and so written. */
+	private static boolean[] latencyRanges(TopologySpec spec) {
+		boolean[] latencyRange = new boolean[spec.getLevels().size()];
+		for (int i = 0; i < latencyRange.length; i++) {
+			Level level = spec.getLevels().get(i);
+			latencyRange[i] = level.getMaxLatency() > level.getMinLatency();
+		}
+		return latencyRange;
+	}
+
+	private static void writeLevel(DataOutputStream out, Level level) throws IOException {
+		out.writeUTF(level.getPrefix());
+		writeVarInt(out, level.getMinFanOut());
+		writeVarInt(out, level.getMaxFanOut());
+		out.writeDouble(level.getMinLatency());
+		out.writeDouble(level.getMaxLatency());
+		out.writeDouble(level.getClusterLatency());
+		DeviceProfile profile = level.getProfile();
+		out.writeLong(profile.getMips());
+		out.writeInt(profile.getRam());
+		out.writeLong(profile.getUpBw());
+		out.writeLong(profile.getDownBw());
+		out.writeDouble(profile.getRatePerMips());
+		out.writeDouble(profile.getBusyPower());
+		out.writeDouble(profile.getIdlePower());
+		out.writeBoolean(profile.getDeviceType() != null);
+		if (profile.getDeviceType() != null) {
+			out.writeUTF(profile.getDeviceType());
+			out.writeDouble(profile.getClusterLinkBandwidth());
+		}
+		writeVarInt(out, level.getSensors().size());
+		for (SensorGroup group : level.getSensors()) {
+			out.writeUTF(group.prefix);
+			out.writeUTF(group.tupleType);
+			writeVarInt(out, group.count);
+			writeVarInt(out, group.distributionType);
+			out.writeDouble(group.first);
+			out.writeDouble(group.second);
+			out.writeDouble(group.latency);
+		}
+		writeVarInt(out, level.getActuators().size());
+		for (ActuatorGroup group : level.getActuators()) {
+			out.writeUTF(group.prefix);
+			out.writeUTF(group.actuatorType);
+			writeVarInt(out, group.count);
+			out.writeDouble(group.latency);
+		}
+	}
+
+	private static void readLevel(DataInputStream in, TopologySpec spec) throws IOException {
+		String prefix = in.readUTF();
+		int minFanOut = readVarInt(in);
+		int maxFanOut = readVarInt(in);
+		double minLatency = in.readDouble();
+		double maxLatency = in.readDouble();
+		double clusterLatency = in.readDouble();
+		DeviceProfile profile = new DeviceProfile(in.readLong(), in.readInt(), in.readLong(), in.readLong(),
+				in.readDouble(), in.readDouble(), in.readDouble());
+		if (in.readBoolean())
+			profile.setMicroserviceDevice(in.readUTF(), in.readDouble());
+		try {
+			Level level = spec.addLevel(prefix, minFanOut, maxFanOut, minLatency, maxLatency, profile);
+			if (clusterLatency >= 0)
+				level.setClusterLatency(clusterLatency);
+			for (int i = readVarInt(in); i > 0; i--) {
+				level.getSensors().add(new SensorGroup(in.readUTF(), in.readUTF(), readVarInt(in), readVarInt(in),
+						in.readDouble(), in.readDouble(), in.readDouble()));
+			}
+			for (int i = readVarInt(in); i > 0; i--)
+				level.addActuators(in.readUTF(), in.readUTF(), readVarInt(in), in.readDouble());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid level " + prefix + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+}
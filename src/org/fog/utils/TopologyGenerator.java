@@ -0,0 +1,147 @@
+package org.fog.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.PhysicalTopology;
+import org.fog.entities.Sensor;
+import org.fog.utils.TopologySpec.Level;
+
+/**
+ * Generates synthetic fog topologies from a {@link TopologySpec}, for scaling studies.
+ * <p>
+ * The devices are drawn level by level and created as they are drawn, each one with its sensors
+ * and actuators, so no description of the whole topology is held in memory : a
+ * {@link TopologyListener} can receive the entities one by one, or they can be collected into a
+ * {@link PhysicalTopology}. Devices are linked to their parent as in the examples, by their parent
+ * id and uplink latency; the controller connects the parents to their children.
+ * <p>
+ * Devices are named after the prefix of their level and numbered within it ("gateway-0",
+ * "gateway-1", ...), sensors and actuators after the prefix of their group and numbered within the
+ * topology.
+ */
+public class TopologyGenerator {
+
+	/** Receives the devices of a topology in breadth-first order. */
+	interface DeviceSink {
+
+		/**
+		 * @param parentIndex the index of the parent of the device in the order of the devices, or -1 for a root
+		 * @param level the level of the device
+		 * @param uplinkLatency the latency of the link to the parent
+		 */
+		void device(int parentIndex, int level, double uplinkLatency) throws IOException;
+
+	}
+
+	/**
+	 * Generates the entities of a topology, in the current simulation context.
+	 *
+	 * @param spec the topology
+	 * @param userId the id of the user of the sensors and actuators
+	 * @param appId the application of the sensors and actuators
+	 * @return the devices, sensors and actuators
+	 */
+	public static PhysicalTopology generate(TopologySpec spec, int userId, String appId) {
+		Collector collector = new Collector();
+		generate(spec, userId, appId, collector);
+		return collector.getPhysicalTopology();
+	}
+
+	/**
+	 * Generates the entities of a topology, in the current simulation context, handing each one to
+	 * a listener as it is created.
+	 *
+	 * @param spec the topology
+	 * @param userId the id of the user of the sensors and actuators
+	 * @param appId the application of the sensors and actuators
+	 * @param listener receives the entities
+	 * @return the number of devices generated
+	 */
+	public static int generate(TopologySpec spec, int userId, String appId, TopologyListener listener) {
+		final TopologyBuilder builder = new TopologyBuilder(spec.getLevels(), userId, appId, listener);
+		try {
+			draw(spec, new DeviceSink() {
+				@Override
+				public void device(int parentIndex, int level, double uplinkLatency) {
+					builder.device(parentIndex, uplinkLatency);
+				}
+			});
+		} catch (IOException e) {
+			// the builder does no I/O
+			throw new IllegalStateException(e);
+		}
+		return builder.finish();
+	}
+
+	/**
+	 * Draws the devices of a topology, level by level.
+	 *
+	 * @param spec the topology
+	 * @param sink receives the devices
+	 * @return the number of devices drawn
+	 * @throws IOException if the sink fails
+	 */
+	static int draw(TopologySpec spec, DeviceSink sink) throws IOException {
+		Random random = new Random(spec.getSeed());
+		int parentStart = -1;
+		int parentEnd = 0;
+		int count = 0;
+		for (int l = 0; l < spec.getLevels().size(); l++) {
+			Level level = spec.getLevels().get(l);
+			int levelStart = count;
+			for (int parent = parentStart; parent < parentEnd; parent++) {
+				int fanOut = level.getMinFanOut();
+				if (level.getMaxFanOut() > fanOut)
+					fanOut += random.nextInt(level.getMaxFanOut() - fanOut + 1);
+				for (int i = 0; i < fanOut; i++) {
+					double latency = level.getMinLatency();
+					if (parent >= 0 && level.getMaxLatency() > latency)
+						latency += random.nextDouble() * (level.getMaxLatency() - latency);
+					sink.device(parent, l, parent >= 0 ? latency : 0);
+					count++;
+				}
+			}
+			parentStart = levelStart;
+			parentEnd = count;
+		}
+		return count;
+	}
+
+	/** Collects the entities of a topology. */
+	static class Collector implements TopologyListener {
+
+		private final List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+		private final List<Sensor> sensors = new ArrayList<Sensor>();
+		private final List<Actuator> actuators = new ArrayList<Actuator>();
+
+		@Override
+		public void fogDeviceCreated(FogDevice fogDevice) {
+			fogDevices.add(fogDevice);
+		}
+
+		@Override
+		public void sensorCreated(Sensor sensor) {
+			sensors.add(sensor);
+		}
+
+		@Override
+		public void actuatorCreated(Actuator actuator) {
+			actuators.add(actuator);
+		}
+
+		PhysicalTopology getPhysicalTopology() {
+			PhysicalTopology physicalTopology = new PhysicalTopology();
+			physicalTopology.setFogDevices(fogDevices);
+			physicalTopology.setSensors(sensors);
+			physicalTopology.setActuators(actuators);
+			return physicalTopology;
+		}
+
+	}
+
+}
@@ -0,0 +1,21 @@
+package org.fog.utils;
+
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+
+/**
+ * Receives the entities of a topology as {@link TopologyGenerator} or {@link TopologyFile} create
+ * them. A device is received before its children, its sensors and its actuators, with its parent
+ * id and uplink latency set; the cluster members of a device are set once all its siblings are
+ * created, before the next device is.
+ */
+public interface TopologyListener {
+
+	void fogDeviceCreated(FogDevice fogDevice);
+
+	void sensorCreated(Sensor sensor);
+
+	void actuatorCreated(Actuator actuator);
+
+}
@@ -0,0 +1,349 @@
+package org.fog.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fog.utils.distribution.DeterministicDistribution;
+import org.fog.utils.distribution.Distribution;
+import org.fog.utils.distribution.NormalDistribution;
+import org.fog.utils.distribution.UniformDistribution;
+
+/**
+ * Compact description of a hierarchical fog topology, expanded into devices, sensors and actuators
+ * by {@link TopologyGenerator}, or into a topology file by {@link TopologyFile}.
+ * <p>
+ * The topology is given level by level, from the cloud down : each device of a level has a number
+ * of children in the next level, drawn between a minimum and a maximum, linked to it with an uplink
+ * latency also drawn between a minimum and a maximum. The fan-out of the first level is the number
+ * of roots. The devices of a level share a device profile and the sensors and actuators attached
+ * to each of them, and the children of a device can form a cluster :
+ *
+ * <pre>
+ * TopologySpec spec = new TopologySpec(42);
+ * spec.addLevel("cloud", 1, 0, cloudProfile);
+ * spec.addLevel("gateway", 10, 20, 4, 10, gatewayProfile).setClusterLatency(2);
+ * spec.addLevel("m", 10, 2, mobileProfile)
+ *     .addSensors("s", "EEG", 1, new DeterministicDistribution(5), 6)
+ *     .addActuators("a", "DISPLAY", 1, 1);
+ * </pre>
+ *
+ * The same spec and seed always expand into the same topology.
+ */
+public class TopologySpec {
+
+	private final long seed;
+	private final List<Level> levels = new ArrayList<Level>();
+
+	/**
+	 * @param seed the seed of the fan-outs and latencies drawn
+	 */
+	public TopologySpec(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Adds a level whose devices all have the same number of children and uplink latency.
+	 */
+	public Level addLevel(String prefix, int fanOut, double uplinkLatency, DeviceProfile profile) {
+		return addLevel(prefix, fanOut, fanOut, uplinkLatency, uplinkLatency, profile);
+	}
+
+	/**
+	 * Adds a level below the last one.
+	 *
+	 * @param prefix the prefix of the names of the devices, which are numbered within the level
+	 * @param minFanOut the minimum number of devices of the level under each device of the level above
+	 * @param maxFanOut the maximum number of devices of the level under each device of the level above
+	 * @param minLatency the minimum latency of the link of a device to its parent
+	 * @param maxLatency the maximum latency of the link of a device to its parent
+	 * @param profile the characteristics of the devices
+	 * @return the level, to attach sensors and actuators to its devices
+	 */
+	public Level addLevel(String prefix, int minFanOut, int maxFanOut, double minLatency, double maxLatency,
+			DeviceProfile profile) {
+		if (minFanOut < 0 || maxFanOut < minFanOut)
+			throw new IllegalArgumentException("Invalid fan-out " + minFanOut + ".." + maxFanOut);
+		if (minLatency < 0 || maxLatency < minLatency)
+			throw new IllegalArgumentException("Invalid latency " + minLatency + ".." + maxLatency);
+		Level level = new Level(prefix, minFanOut, maxFanOut, minLatency, maxLatency, profile);
+		levels.add(level);
+		return level;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public List<Level> getLevels() {
+		return Collections.unmodifiableList(levels);
+	}
+
+	/**
+	 * Gets the expected number of devices of the topology, from the mean fan-out of each level.
+	 *
+	 * @return the expected number of devices
+	 */
+	public double getExpectedDeviceCount() {
+		double total = 0;
+		double count = 1;
+		for (Level level : levels) {
+			count *= (level.minFanOut + level.maxFanOut) / 2.0;
+			total += count;
+		}
+		return total;
+	}
+
+	/** A level of the topology. */
+	public static class Level {
+
+		private final String prefix;
+		private final int minFanOut;
+		private final int maxFanOut;
+		private final double minLatency;
+		private final double maxLatency;
+		private final DeviceProfile profile;
+		private double clusterLatency = -1;
+		private final List<SensorGroup> sensors = new ArrayList<SensorGroup>();
+		private final List<ActuatorGroup> actuators = new ArrayList<ActuatorGroup>();
+
+		Level(String prefix, int minFanOut, int maxFanOut, double minLatency, double maxLatency, DeviceProfile profile) {
+			this.prefix = prefix;
+			this.minFanOut = minFanOut;
+			this.maxFanOut = maxFanOut;
+			this.minLatency = minLatency;
+			this.maxLatency = maxLatency;
+			this.profile = profile;
+		}
+
+		/**
+		 * Makes the devices of the level with the same parent a cluster, in which each device is
+		 * linked to the others.
+		 *
+		 * @param clusterLatency the latency of the links between the members of a cluster
+		 * @return the level
+		 */
+		public Level setClusterLatency(double clusterLatency) {
+			if (clusterLatency < 0)
+				throw new IllegalArgumentException("Invalid cluster latency " + clusterLatency);
+			this.clusterLatency = clusterLatency;
+			return this;
+		}
+
+		/**
+		 * Attaches sensors to each device of the level.
+		 *
+		 * @param prefix the prefix of the names of the sensors, which are numbered within the topology
+		 * @param tupleType the type of the tuples emitted
+		 * @param count the number of sensors attached to each device
+		 * @param transmitDistribution the distribution of the time between two tuples, copied for each sensor
+		 * @param latency the latency of the link of a sensor to its device
+		 * @return the level
+		 */
+		public Level addSensors(String prefix, String tupleType, int count, Distribution transmitDistribution,
+				double latency) {
+			double[] parameters = SensorGroup.parameters(transmitDistribution);
+			sensors.add(new SensorGroup(prefix, tupleType, count, transmitDistribution.getDistributionType(),
+					parameters[0], parameters[1], latency));
+			return this;
+		}
+
+		/**
+		 * Attaches actuators to each device of the level.
+		 *
+		 * @param prefix the prefix of the names of the actuators, which are numbered within the topology
+		 * @param actuatorType the type of the actuators
+		 * @param count the number of actuators attached to each device
+		 * @param latency the latency of the link of an actuator to its device
+		 * @return the level
+		 */
+		public Level addActuators(String prefix, String actuatorType, int count, double latency) {
+			actuators.add(new ActuatorGroup(prefix, actuatorType, count, latency));
+			return this;
+		}
+
+		public String getPrefix() {
+			return prefix;
+		}
+
+		public int getMinFanOut() {
+			return minFanOut;
+		}
+
+		public int getMaxFanOut() {
+			return maxFanOut;
+		}
+
+		public double getMinLatency() {
+			return minLatency;
+		}
+
+		public double getMaxLatency() {
+			return maxLatency;
+		}
+
+		public DeviceProfile getProfile() {
+			return profile;
+		}
+
+		public boolean isClustered() {
+			return clusterLatency >= 0;
+		}
+
+		public double getClusterLatency() {
+			return clusterLatency;
+		}
+
+		List<SensorGroup> getSensors() {
+			return sensors;
+		}
+
+		List<ActuatorGroup> getActuators() {
+			return actuators;
+		}
+
+	}
+
+	/** The characteristics of the devices of a level. */
+	public static class DeviceProfile {
+
+		private final long mips;
+		private final int ram;
+		private final long upBw;
+		private final long downBw;
+		private final double ratePerMips;
+		private final double busyPower;
+		private final double idlePower;
+		private String deviceType;
+		private double clusterLinkBandwidth;
+
+		public DeviceProfile(long mips, int ram, long upBw, long downBw, double ratePerMips, double busyPower,
+				double idlePower) {
+			this.mips = mips;
+			this.ram = ram;
+			this.upBw = upBw;
+			this.downBw = downBw;
+			this.ratePerMips = ratePerMips;
+			this.busyPower = busyPower;
+			this.idlePower = idlePower;
+		}
+
+		/**
+		 * Makes the devices {@link org.fog.entities.MicroserviceFogDevice}s.
+		 *
+		 * @param deviceType the type of the devices, one of the types of MicroserviceFogDevice
+		 * @param clusterLinkBandwidth the bandwidth of the links between the members of a cluster
+		 * @return the profile
+		 */
+		public DeviceProfile setMicroserviceDevice(String deviceType, double clusterLinkBandwidth) {
+			this.deviceType = deviceType;
+			this.clusterLinkBandwidth = clusterLinkBandwidth;
+			return this;
+		}
+
+		public long getMips() {
+			return mips;
+		}
+
+		public int getRam() {
+			return ram;
+		}
+
+		public long getUpBw() {
+			return upBw;
+		}
+
+		public long getDownBw() {
+			return downBw;
+		}
+
+		public double getRatePerMips() {
+			return ratePerMips;
+		}
+
+		public double getBusyPower() {
+			return busyPower;
+		}
+
+		public double getIdlePower() {
+			return idlePower;
+		}
+
+		/**
+		 * @return the type of the devices if they are MicroserviceFogDevices, null otherwise
+		 */
+		public String getDeviceType() {
+			return deviceType;
+		}
+
+		public double getClusterLinkBandwidth() {
+			return clusterLinkBandwidth;
+		}
+
+	}
+
+	/** The sensors attached to each device of a level. */
+	static class SensorGroup {
+
+		final String prefix;
+		final String tupleType;
+		final int count;
+		final int distributionType;
+		final double first;
+		final double second;
+		final double latency;
+
+		SensorGroup(String prefix, String tupleType, int count, int distributionType, double first, double second,
+				double latency) {
+			this.prefix = prefix;
+			this.tupleType = tupleType;
+			this.count = count;
+			this.distributionType = distributionType;
+			this.first = first;
+			this.second = second;
+			this.latency = latency;
+			// fails now on an unknown type
+			createDistribution();
+		}
+
+		static double[] parameters(Distribution distribution) {
+			if (distribution instanceof DeterministicDistribution)
+				return new double[] {((DeterministicDistribution) distribution).getValue(), 0};
+			if (distribution instanceof NormalDistribution)
+				return new double[] {((NormalDistribution) distribution).getMean(), ((NormalDistribution) distribution).getStdDev()};
+			if (distribution instanceof UniformDistribution)
+				return new double[] {((UniformDistribution) distribution).getMin(), ((UniformDistribution) distribution).getMax()};
+			throw new IllegalArgumentException("Unsupported distribution " + distribution.getClass().getName());
+		}
+
+		/** Creates the distribution of a sensor of the group. */
+		Distribution createDistribution() {
+			if (distributionType == Distribution.DETERMINISTIC)
+				return new DeterministicDistribution(first);
+			if (distributionType == Distribution.NORMAL)
+				return new NormalDistribution(first, second);
+			if (distributionType == Distribution.UNIFORM)
+				return new UniformDistribution(first, second);
+			throw new IllegalArgumentException("Unsupported distribution type " + distributionType);
+		}
+
+	}
+
+	/** The actuators attached to each device of a level. */
+	static class ActuatorGroup {
+
+		final String prefix;
+		final String actuatorType;
+		final int count;
+		final double latency;
+
+		ActuatorGroup(String prefix, String actuatorType, int count, double latency) {
+			this.prefix = prefix;
+			this.actuatorType = actuatorType;
+			this.count = count;
+			this.latency = latency;
+		}
+
+	}
+
+}